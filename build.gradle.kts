@@ -17,6 +17,7 @@ val logbackVersion: String by project
 val apacheCommonsVersion: String by project
 val apacheCommonsCsvVersion: String by project
 val jsoupVersion: String by project
+val xzVersion: String by project
 
 dependencies {
 	// Quarkus
@@ -27,6 +28,7 @@ dependencies {
 	implementation("io.quarkus:quarkus-hibernate-validator")
 	implementation("io.quarkus:quarkus-smallrye-openapi")
 	implementation("io.quarkus:quarkus-mongodb-client")
+	implementation("io.quarkus:quarkus-micrometer-registry-prometheus")
 	// Logging
 	implementation("org.slf4j:slf4j-api:${slf4jVersion}")
 	implementation("ch.qos.logback:logback-classic:${logbackVersion}")
@@ -34,6 +36,9 @@ dependencies {
 	implementation("org.apache.commons:commons-lang3:${apacheCommonsVersion}")
 	implementation("org.apache.commons:commons-csv:${apacheCommonsCsvVersion}")
 	implementation("org.jsoup:jsoup:${jsoupVersion}")
+	implementation("org.tukaani:xz:${xzVersion}")
+	// Testing
+	testImplementation("io.quarkus:quarkus-junit5")
 }
 
 group = "io.github.fandreuz"
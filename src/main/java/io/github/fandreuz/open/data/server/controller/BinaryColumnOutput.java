@@ -0,0 +1,98 @@
+package io.github.fandreuz.open.data.server.controller;
+
+import io.github.fandreuz.open.data.server.database.DatabaseCursor;
+import io.github.fandreuz.open.data.server.model.dataset.ColumnType;
+import jakarta.ws.rs.core.StreamingOutput;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes the values of a numeric or boolean column as a packed little-endian
+ * array, as they're read from the database. Keys are not written, values are
+ * in the same order as in the JSON representation of the column.
+ * <p>
+ * {@code INT64} values are written as 64-bit signed integers ({@code null} is
+ * {@link Long#MIN_VALUE}), {@code DOUBLE} values as IEEE 754 doubles
+ * ({@code null} is {@code NaN}) and {@code BOOL} values as bytes ({@code 0} or
+ * {@code 1}, {@code null} is {@code -1}). Values which don't match the type of
+ * the column are written as {@code null}. If the values come from a
+ * {@link DatabaseCursor}, the cursor is closed when the response is over.
+ *
+ * @author fandreuz
+ */
+final class BinaryColumnOutput implements StreamingOutput {
+
+   static final String MEDIA_TYPE = "application/octet-stream";
+   static final String COLUMN_TYPE_HEADER = "X-Column-Type";
+   static final long NULL_INT64 = Long.MIN_VALUE;
+   static final byte NULL_BOOL = -1;
+
+   // Values are written in blocks of this size
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final Iterator<Map.Entry<String, Object>> values;
+   private final ColumnType type;
+
+   BinaryColumnOutput(@NonNull Iterator<Map.Entry<String, Object>> values, @NonNull ColumnType type) {
+      if (!isSupported(type)) {
+         throw new IllegalArgumentException("Unsupported column type: " + type);
+      }
+      this.values = values;
+      this.type = type;
+   }
+
+   /**
+    * Check whether the values of the given type can be written.
+    *
+    * @param type
+    *            type of the column.
+    * @return {@code true} if the type is numeric or boolean.
+    */
+   static boolean isSupported(@NonNull ColumnType type) {
+      return type != ColumnType.STRING;
+   }
+
+   @Override
+   public void write(OutputStream output) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      try {
+         while (values.hasNext()) {
+            if (buffer.remaining() < Long.BYTES) {
+               output.write(buffer.array(), 0, buffer.position());
+               buffer.clear();
+            }
+            put(buffer, values.next().getValue());
+         }
+         output.write(buffer.array(), 0, buffer.position());
+         output.flush();
+      } finally {
+         if (values instanceof DatabaseCursor) {
+            ((DatabaseCursor<?>) values).close();
+         }
+      }
+   }
+
+   // Values which don't match the type of the column are written as null
+   private void put(ByteBuffer buffer, Object value) {
+      switch (type) {
+         case INT64 :
+            buffer.putLong(value instanceof Long || value instanceof Integer ? ((Number) value).longValue()
+                  : NULL_INT64);
+            break;
+         case DOUBLE :
+            buffer.putDouble(value instanceof Number ? ((Number) value).doubleValue() : Double.NaN);
+            break;
+         case BOOL :
+            buffer.put(value instanceof Boolean ? (byte) ((Boolean) value ? 1 : 0) : NULL_BOOL);
+            break;
+         default :
+            throw new IllegalStateException("Unsupported column type: " + type);
+      }
+   }
+}
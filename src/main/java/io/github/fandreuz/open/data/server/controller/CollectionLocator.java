@@ -0,0 +1,32 @@
+package io.github.fandreuz.open.data.server.controller;
+
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import jakarta.annotation.Nullable;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * DTO for collection locations.
+ *
+ * @author fandreuz
+ */
+@AllArgsConstructor
+@Getter
+@NonNull
+public class CollectionLocator {
+
+   @NotBlank
+   @Digits(integer = 10, fraction = 0)
+   private String collectionId;
+
+   // ROW if not given
+   @Nullable
+   private StorageLayout storageLayout;
+
+   public CollectionLocator() {
+      // Required by the serialization layer
+   }
+}
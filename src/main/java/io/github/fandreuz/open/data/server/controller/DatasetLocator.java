@@ -1,5 +1,7 @@
 package io.github.fandreuz.open.data.server.controller;
 
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
@@ -23,6 +25,10 @@ public class DatasetLocator {
    @NotBlank
    private String fileName;
 
+   // ROW if not given
+   @Nullable
+   private StorageLayout storageLayout;
+
    public DatasetLocator() {
       // Required by the serialization layer
    }
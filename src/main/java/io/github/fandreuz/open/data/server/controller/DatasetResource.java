@@ -1,20 +1,38 @@
 package io.github.fandreuz.open.data.server.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.fandreuz.open.data.server.controller.validation.InputValidationService;
 import io.github.fandreuz.open.data.server.controller.validation.ValidDatasetLocator;
-import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
+import io.github.fandreuz.open.data.server.database.DatabaseCursor;
+import io.github.fandreuz.open.data.server.database.DatabaseNotFoundException;
 import io.github.fandreuz.open.data.server.model.DatasetService;
+import io.github.fandreuz.open.data.server.model.dataset.AggregationResult;
+import io.github.fandreuz.open.data.server.model.dataset.ColumnType;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetPage;
+import io.github.fandreuz.open.data.server.model.job.CollectionImportStatus;
+import io.github.fandreuz.open.data.server.model.job.ImportJobService;
+import io.github.fandreuz.open.data.server.model.job.ImportJobStatus;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotAcceptableException;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
+import java.util.stream.Collectors;
 
 /**
  * Dataset resource controller.
@@ -24,38 +42,173 @@ import java.util.SortedMap;
 @Path("/v1")
 public final class DatasetResource {
 
+   private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+   // Lower server quality of the alternative representations, thus JSON is
+   // chosen when the client accepts anything (e.g. no Accept header)
+   private static final String ALTERNATIVE_QUALITY = ";qs=0.5";
+
    @Inject
    private InputValidationService inputValidationService;
 
    @Inject
    private DatasetService datasetService;
 
-   @Tag(name = "importDataset", description = "Import the given dataset to the database (idempotent)")
+   @Inject
+   private ImportJobService importJobService;
+
+   @Inject
+   private ObjectMapper objectMapper;
+
+   @Tag(name = "importDataset", description = "Submit the import of the given dataset to the database (idempotent)")
    @PUT
-   public DatasetMetadata create( //
+   public Response create( //
          @Valid @ValidDatasetLocator DatasetLocator datasetLocator //
    ) {
-      return datasetService.createDataset(datasetLocator.getCollectionId(), datasetLocator.getFileName());
+      ImportJobStatus jobStatus = importJobService.submit(datasetLocator.getCollectionId(),
+            datasetLocator.getFileName(), datasetLocator.getStorageLayout());
+      return Response.accepted(jobStatus) //
+            .header("Location", "/v1/jobs/" + jobStatus.getJobId()) //
+            .build();
+   }
+
+   @Tag(name = "importCollection", description = "Submit the import of all the datasets of the given collection")
+   @PUT
+   @Path("/collections")
+   public Response createCollection( //
+         @Valid CollectionLocator collectionLocator //
+   ) {
+      CollectionImportStatus importStatus = importJobService.submitCollection(collectionLocator.getCollectionId(),
+            collectionLocator.getStorageLayout());
+      return Response.accepted(importStatus) //
+            .header("Location", "/v1/jobs/collections/" + importStatus.getCollectionImportId()) //
+            .build();
+   }
+
+   @Tag(name = "aggregate", description = "Aggregate the entries matching the given query, optionally by group")
+   @GET
+   @Path("/{id}/aggregate")
+   @Produces(MediaType.APPLICATION_JSON)
+   public List<AggregationResult> aggregate( //
+         @PathParam("id") @NotBlank String id, //
+         @QueryParam("groupBy") List<String> groupBy, //
+         @QueryParam("aggregations") List<String> aggregations, //
+         String query //
+   ) {
+      return datasetService.aggregateDataset(id, query, parseFields(groupBy), parseFields(aggregations));
    }
 
    @Tag(name = "getColumn", description = "List the content of the given column")
    @GET
    @Path("/{id}/{columnName}")
-   public SortedMap<String, String> getColumn( //
+   @Produces(MediaType.APPLICATION_JSON)
+   public SortedMap<String, Object> getColumn( //
          @PathParam("id") @NotBlank String id, //
          @PathParam("columnName") @NotBlank String columnName //
    ) {
       return datasetService.getDatasetColumn(id, columnName);
    }
 
+   @Tag(name = "streamColumn", description = "Stream the content of the given column as NDJSON, one entry per line")
+   @GET
+   @Path("/{id}/{columnName}")
+   @Produces(NdjsonOutput.MEDIA_TYPE + ALTERNATIVE_QUALITY)
+   public Response streamColumn( //
+         @PathParam("id") @NotBlank String id, //
+         @PathParam("columnName") @NotBlank String columnName //
+   ) {
+      // The cursor is opened here, thus errors are reported with the right status
+      DatabaseCursor<Map.Entry<String, Object>> cursor = datasetService.openDatasetColumn(id, columnName);
+      return Response.ok(new NdjsonOutput<>(cursor, objectMapper,
+            entry -> Collections.singletonMap(entry.getKey(), entry.getValue()))) //
+            .type(NdjsonOutput.MEDIA_TYPE) //
+            .build();
+   }
+
+   @Tag(name = "getColumnBinary", description = "Stream the values of the given numeric or boolean column as a packed "
+         + "little-endian array")
+   @GET
+   @Path("/{id}/{columnName}")
+   @Produces(BinaryColumnOutput.MEDIA_TYPE + ALTERNATIVE_QUALITY)
+   public Response getColumnBinary( //
+         @PathParam("id") @NotBlank String id, //
+         @PathParam("columnName") @NotBlank String columnName //
+   ) {
+      ColumnType type = datasetService.getDatasetColumnType(id, columnName);
+      if (type == null) {
+         String msg = String.format("Column '%s' not found in dataset with ID=%s", columnName, id);
+         throw new DatabaseNotFoundException(msg);
+      }
+      if (!BinaryColumnOutput.isSupported(type)) {
+         String msg = String.format("The column '%s' of dataset with ID=%s is not available as binary (type: %s)",
+               columnName, id, type);
+         throw new NotAcceptableException(msg);
+      }
+      DatabaseCursor<Map.Entry<String, Object>> cursor = datasetService.openDatasetColumn(id, columnName);
+      return Response.ok(new BinaryColumnOutput(cursor, type)) //
+            .type(BinaryColumnOutput.MEDIA_TYPE) //
+            .header(BinaryColumnOutput.COLUMN_TYPE_HEADER, type) //
+            .build();
+   }
+
    @Tag(name = "getEntriesMatching", description = "List the entries matching the given query")
    @GET
    @Path("/{id}")
-   public Set<SortedMap<String, String>> getEntriesMatching( //
+   @Produces(MediaType.APPLICATION_JSON)
+   public Response getEntriesMatching( //
          @PathParam("id") @NotBlank String id, //
+         @QueryParam("fields") List<String> fields, //
+         @QueryParam("cursor") String cursor, //
+         @QueryParam("limit") @Positive Integer limit, //
          @NotBlank String query //
    ) {
-      return datasetService.getDatasetEntriesMatching(id, query);
+      if (cursor == null && limit == null) {
+         return Response.ok(datasetService.getDatasetEntriesMatching(id, query, parseFields(fields))).build();
+      }
+      DatasetPage page = datasetService.getDatasetEntriesPage(id, query, parseFields(fields), cursor, limit);
+      return withNextCursor(Response.ok(page.getEntries()), page).build();
+   }
+
+   @Tag(name = "streamEntriesMatching", description = "Stream the entries matching the given query as NDJSON")
+   @GET
+   @Path("/{id}")
+   @Produces(NdjsonOutput.MEDIA_TYPE + ALTERNATIVE_QUALITY)
+   public Response streamEntriesMatching( //
+         @PathParam("id") @NotBlank String id, //
+         @QueryParam("fields") List<String> fields, //
+         @QueryParam("cursor") String cursor, //
+         @QueryParam("limit") @Positive Integer limit, //
+         @NotBlank String query //
+   ) {
+      if (cursor == null && limit == null) {
+         DatabaseCursor<SortedMap<String, Object>> entries = datasetService.openDatasetEntriesMatching(id, query,
+               parseFields(fields));
+         return Response.ok(new NdjsonOutput<>(entries, objectMapper, entry -> entry)) //
+               .type(NdjsonOutput.MEDIA_TYPE) //
+               .build();
+      }
+      // Pages are bounded, the next cursor is sent before the entries
+      DatasetPage page = datasetService.getDatasetEntriesPage(id, query, parseFields(fields), cursor, limit);
+      return withNextCursor(
+            Response.ok(new NdjsonOutput<>(page.getEntries().iterator(), objectMapper, entry -> entry)), page) //
+            .type(NdjsonOutput.MEDIA_TYPE) //
+            .build();
+   }
+
+   private static Response.ResponseBuilder withNextCursor(Response.ResponseBuilder response, DatasetPage page) {
+      return page.getNextCursor() == null ? response : response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+   }
+
+   // Both ?fields=a&fields=b and ?fields=a,b are accepted
+   private static List<String> parseFields(List<String> fields) {
+      if (fields == null) {
+         return List.of();
+      }
+      return fields.stream() //
+            .flatMap(field -> Arrays.stream(field.split(","))) //
+            .map(String::strip) //
+            .filter(field -> !field.isEmpty()) //
+            .distinct() //
+            .collect(Collectors.toUnmodifiableList());
    }
 
 }
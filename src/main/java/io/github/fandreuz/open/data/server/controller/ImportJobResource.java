@@ -0,0 +1,75 @@
+package io.github.fandreuz.open.data.server.controller;
+
+import io.github.fandreuz.open.data.server.model.job.CollectionImportStatus;
+import io.github.fandreuz.open.data.server.model.job.ImportJobService;
+import io.github.fandreuz.open.data.server.model.job.ImportJobStatus;
+import jakarta.inject.Inject;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import java.util.List;
+
+/**
+ * Import job resource controller.
+ *
+ * @author fandreuz
+ */
+@Path("/v1/jobs")
+public final class ImportJobResource {
+
+   @Inject
+   private ImportJobService importJobService;
+
+   @Tag(name = "getJobs", description = "List the import jobs")
+   @GET
+   public List<ImportJobStatus> getJobs() {
+      return importJobService.getJobs();
+   }
+
+   @Tag(name = "getCollectionImports", description = "List the imports of collections")
+   @GET
+   @Path("collections")
+   public List<CollectionImportStatus> getCollectionImports() {
+      return importJobService.getCollectionImports();
+   }
+
+   @Tag(name = "getCollectionImport", description = "Get the status of the given import of a collection")
+   @GET
+   @Path("collections/{id}")
+   public CollectionImportStatus getCollectionImport( //
+         @PathParam("id") @NotBlank String id //
+   ) {
+      return importJobService.getCollectionImport(id);
+   }
+
+   @Tag(name = "cancelCollectionImport", description = "Cancel the given import of a collection")
+   @DELETE
+   @Path("collections/{id}")
+   public CollectionImportStatus cancelCollectionImport( //
+         @PathParam("id") @NotBlank String id //
+   ) {
+      return importJobService.cancelCollectionImport(id);
+   }
+
+   @Tag(name = "getJob", description = "Get the status of the given import job")
+   @GET
+   @Path("{id}")
+   public ImportJobStatus getJob( //
+         @PathParam("id") @NotBlank String id //
+   ) {
+      return importJobService.getJob(id);
+   }
+
+   @Tag(name = "cancelJob", description = "Cancel the given import job")
+   @DELETE
+   @Path("{id}")
+   public ImportJobStatus cancelJob( //
+         @PathParam("id") @NotBlank String id //
+   ) {
+      return importJobService.cancel(id);
+   }
+}
@@ -0,0 +1,68 @@
+package io.github.fandreuz.open.data.server.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.fandreuz.open.data.server.database.DatabaseCursor;
+import jakarta.ws.rs.core.StreamingOutput;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Writes results as newline-delimited JSON, one result per line, as they're
+ * read from the database. If the results come from a {@link DatabaseCursor},
+ * the cursor is closed when the response is over.
+ *
+ * @param <T>
+ *            type of the results.
+ * @author fandreuz
+ */
+final class NdjsonOutput<T> implements StreamingOutput {
+
+   static final String MEDIA_TYPE = "application/x-ndjson";
+
+   // Results written between two flushes of the response
+   private static final int FLUSH_INTERVAL = 1024;
+
+   private final Iterator<T> results;
+   private final ObjectWriter writer;
+   private final Function<T, Object> serializer;
+
+   NdjsonOutput(@NonNull Iterator<T> results, @NonNull ObjectMapper objectMapper,
+         @NonNull Function<T, Object> serializer) {
+      this.results = results;
+      // Results are separated by newlines, the response is flushed periodically
+      this.writer = objectMapper.writer() //
+            .withRootValueSeparator("\n") //
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+      this.serializer = serializer;
+   }
+
+   @Override
+   public void write(OutputStream output) throws IOException {
+      try (JsonGenerator generator = writer.getFactory().createGenerator(output)) {
+         // The response stream is owned by the container
+         generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+         long count = 0;
+         while (results.hasNext()) {
+            writer.writeValue(generator, serializer.apply(results.next()));
+            if (++count % FLUSH_INTERVAL == 0) {
+               generator.flush();
+            }
+         }
+         if (count > 0) {
+            // The last line is terminated too
+            generator.writeRaw('\n');
+         }
+      } finally {
+         if (results instanceof DatabaseCursor) {
+            ((DatabaseCursor<?>) results).close();
+         }
+      }
+   }
+}
@@ -0,0 +1,25 @@
+package io.github.fandreuz.open.data.server.controller.exception.mapper;
+
+import io.github.fandreuz.open.data.server.model.job.ImportRejectedException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of {@link ExceptionMapper} for {@link ImportRejectedException}.
+ *
+ * @author fandreuz
+ */
+@Provider
+@Slf4j
+public class ImportRejectedExceptionMapper implements ExceptionMapper<ImportRejectedException> {
+
+   @Override
+   public Response toResponse(ImportRejectedException exception) {
+      log.error("ImportRejectedException caught", exception);
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE) //
+            .entity(exception.getMessage()) //
+            .build();
+   }
+}
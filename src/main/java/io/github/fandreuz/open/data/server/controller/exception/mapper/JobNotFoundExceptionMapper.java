@@ -0,0 +1,25 @@
+package io.github.fandreuz.open.data.server.controller.exception.mapper;
+
+import io.github.fandreuz.open.data.server.model.job.JobNotFoundException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of {@link ExceptionMapper} for {@link JobNotFoundException}.
+ *
+ * @author fandreuz
+ */
+@Provider
+@Slf4j
+public class JobNotFoundExceptionMapper implements ExceptionMapper<JobNotFoundException> {
+
+   @Override
+   public Response toResponse(JobNotFoundException exception) {
+      log.error("JobNotFoundException caught", exception);
+      return Response.status(Response.Status.NOT_FOUND) //
+            .entity(exception.getMessage()) //
+            .build();
+   }
+}
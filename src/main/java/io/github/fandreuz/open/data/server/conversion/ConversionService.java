@@ -1,23 +1,66 @@
 package io.github.fandreuz.open.data.server.conversion;
 
-import java.nio.file.Path;
-
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
 import lombok.NonNull;
 
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
 /**
  * Interface for services providing conversion from supported dataset types to
- * CSV.
+ * tabular records.
+ * <p>
+ * Records are produced while the conversion is running, no intermediate file is
+ * created.
  *
  * @author fandreuz
  */
 public interface ConversionService {
 
    /**
-    * Convert the source file to CSV.
+    * Convert the source file.
     *
     * @param source
     *            original file.
-    * @return path to the converted file if available.
+    * @return a stream of the converted records. Closing the stream releases the
+    *         resources associated with the conversion.
+    */
+   DatasetRecordStream convert(@NonNull Path source);
+
+   /**
+    * List the tables contained in the source file, e.g. the trees of a ROOT
+    * file. Files containing a single table may be reported as an empty list.
+    *
+    * @param source
+    *            original file.
+    * @return names of the tables, each one can be converted with
+    *         {@link #convert(Path, String)}.
+    */
+   default List<String> listTables(@NonNull Path source) {
+      return List.of();
+   }
+
+   /**
+    * Convert one table of the source file.
+    *
+    * @param source
+    *            original file.
+    * @param table
+    *            name of the table, see {@link #listTables(Path)}.
+    * @return a stream of the converted records.
+    */
+   default DatasetRecordStream convert(@NonNull Path source, @NonNull String table) {
+      throw new ConversionServiceException("Files of this type contain a single table");
+   }
+
+   /**
+    * Convert the content of the given stream while it's being read. Not
+    * available for dataset types which need random access to the file.
+    *
+    * @param source
+    *            content of the original file, owned by the returned stream.
+    * @return a stream of the converted records.
     */
-   Path convert(@NonNull Path source);
+   DatasetRecordStream convert(@NonNull InputStream source);
 }
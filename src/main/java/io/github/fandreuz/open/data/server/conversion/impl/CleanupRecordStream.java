@@ -0,0 +1,52 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Decorator of {@link DatasetRecordStream} which releases the resources of the
+ * conversion (e.g. a scratch directory) when the stream is closed. The cleanup
+ * runs only once, even if the stream is closed multiple times.
+ *
+ * @author fandreuz
+ */
+final class CleanupRecordStream implements DatasetRecordStream {
+
+   private final DatasetRecordStream delegate;
+   private final Closeable cleanup;
+   private boolean closed;
+
+   CleanupRecordStream(@NonNull DatasetRecordStream delegate, @NonNull Closeable cleanup) {
+      this.delegate = delegate;
+      this.cleanup = cleanup;
+   }
+
+   @Override
+   public List<String> getColumnNames() {
+      return delegate.getColumnNames();
+   }
+
+   @Nullable
+   @Override
+   public Object[] next() throws IOException {
+      return delegate.next();
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (closed) {
+         return;
+      }
+      closed = true;
+      try {
+         delegate.close();
+      } finally {
+         cleanup.close();
+      }
+   }
+}
@@ -0,0 +1,290 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
+import jakarta.annotation.Nullable;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of conversion results, stored as CSV files.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the source file and by the version
+ * of the converter, thus a file is converted again only if its content or the
+ * converter changed. The total size of the cache is bounded, least recently
+ * used entries are evicted first (the last-modified time of an entry is
+ * updated when it's read).
+ *
+ * @author fandreuz
+ */
+@Singleton
+@Slf4j
+final class ConversionCache {
+
+   private static final String CACHE_PATH_KEY = "conversion.cache.path";
+   private static final Path CACHE_PATH = Path.of(System.getProperty(CACHE_PATH_KEY,
+         Path.of(System.getProperty("java.io.tmpdir"), "conversion-cache").toString()));
+   private static final String MAX_SIZE_MB_KEY = "conversion.cache.max.size.mb";
+   private static final long MAX_SIZE_BYTES = Math.max(0, Long.getLong(MAX_SIZE_MB_KEY, 10240L)) * 1024 * 1024;
+   private static final String ENTRY_EXTENSION = ".csv";
+   private static final String PENDING_EXTENSION = ".pending";
+   private static final int HASH_BUFFER_SIZE = 1 << 20;
+   private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT;
+
+   /**
+    * Check whether the cache is enabled, i.e. its maximum size is not zero.
+    *
+    * @return {@code true} if the cache is enabled.
+    */
+   boolean isEnabled() {
+      return MAX_SIZE_BYTES > 0;
+   }
+
+   /**
+    * Compute the key of the conversion of a file.
+    *
+    * @param source
+    *            the file to be converted.
+    * @param converterVersion
+    *            version of the converter, any change invalidates the previous
+    *            conversions.
+    * @return the key.
+    */
+   String computeKey(@NonNull Path source, @NonNull String converterVersion) throws IOException {
+      MessageDigest digest = newDigest();
+      try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+         ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+         while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+         }
+      }
+      String contentHash = toHex(digest.digest());
+      String converterHash = toHex(newDigest().digest(converterVersion.getBytes(StandardCharsets.UTF_8)));
+      return contentHash + "-" + converterHash.substring(0, 16);
+   }
+
+   /**
+    * Open a cached conversion.
+    *
+    * @param key
+    *            key of the conversion.
+    * @return the cached records, or {@code null} if the conversion is not in the
+    *         cache.
+    */
+   @Nullable
+   DatasetRecordStream open(@NonNull String key) {
+      Path entry = CACHE_PATH.resolve(key + ENTRY_EXTENSION);
+      try {
+         var recordStream = new CsvRecordStream(Files.newBufferedReader(entry));
+         Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+         log.info("Conversion cache hit: {}", key);
+         return recordStream;
+      } catch (IOException exception) {
+         // Not cached, or evicted in the meantime
+         log.info("Conversion cache miss: {}", key);
+         return null;
+      }
+   }
+
+   /**
+    * Store the records of a conversion while they're being read. The entry is
+    * added to the cache only if the stream is read until the end.
+    *
+    * @param key
+    *            key of the conversion.
+    * @param recordStream
+    *            records of the conversion.
+    * @return a stream of the same records.
+    */
+   DatasetRecordStream store(@NonNull String key, @NonNull DatasetRecordStream recordStream) {
+      try {
+         Files.createDirectories(CACHE_PATH);
+         Path pending = Files.createTempFile(CACHE_PATH, key, PENDING_EXTENSION);
+         return new CachingRecordStream(recordStream, new PendingEntry(key, pending, recordStream.getColumnNames()));
+      } catch (IOException exception) {
+         log.warn("Conversion {} will not be cached", key, exception);
+         return recordStream;
+      }
+   }
+
+   private synchronized void commit(String key, Path pending) throws IOException {
+      Files.move(pending, CACHE_PATH.resolve(key + ENTRY_EXTENSION), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      log.info("Conversion {} added to the cache", key);
+      evict();
+   }
+
+   private void evict() throws IOException {
+      List<Path> entries;
+      try (Stream<Path> paths = Files.list(CACHE_PATH)) {
+         entries = paths.filter(path -> path.getFileName().toString().endsWith(ENTRY_EXTENSION))
+               .collect(Collectors.toCollection(ArrayList::new));
+      }
+      long totalSize = 0;
+      List<CachedFile> files = new ArrayList<>(entries.size());
+      for (Path entry : entries) {
+         try {
+            CachedFile file = new CachedFile(entry, Files.size(entry), Files.getLastModifiedTime(entry).toMillis());
+            files.add(file);
+            totalSize += file.size;
+         } catch (IOException exception) {
+            log.debug("Could not read the attributes of {}", entry, exception);
+         }
+      }
+
+      files.sort(Comparator.comparingLong(file -> file.lastModified));
+      for (CachedFile file : files) {
+         if (totalSize <= MAX_SIZE_BYTES) {
+            break;
+         }
+         // Readers of the entry keep reading the unlinked file
+         Files.deleteIfExists(file.path);
+         totalSize -= file.size;
+         log.info("Evicted {} from the conversion cache", file.path.getFileName());
+      }
+   }
+
+   private static String toHex(byte[] bytes) {
+      StringBuilder builder = new StringBuilder(2 * bytes.length);
+      for (byte value : bytes) {
+         builder.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+      }
+      return builder.toString();
+   }
+
+   private static MessageDigest newDigest() {
+      try {
+         return MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException exception) {
+         throw new IllegalStateException("SHA-256 not available", exception);
+      }
+   }
+
+   private static final class CachedFile {
+      private final Path path;
+      private final long size;
+      private final long lastModified;
+
+      private CachedFile(Path path, long size, long lastModified) {
+         this.path = path;
+         this.size = size;
+         this.lastModified = lastModified;
+      }
+   }
+
+   // Entry being written, failures never affect the conversion
+   private final class PendingEntry {
+      private final String key;
+      private final Path path;
+      private CSVPrinter printer;
+
+      private PendingEntry(String key, Path path, List<String> columnNames) throws IOException {
+         this.key = key;
+         this.path = path;
+         this.printer = new CSVPrinter(Files.newBufferedWriter(path), CSV_FORMAT);
+         try {
+            printer.printRecord(columnNames);
+         } catch (IOException exception) {
+            abort();
+            throw exception;
+         }
+      }
+
+      private void write(Object[] row) {
+         if (printer == null) {
+            return;
+         }
+         try {
+            printer.printRecord(row);
+         } catch (IOException exception) {
+            log.warn("Conversion {} will not be cached", key, exception);
+            abort();
+         }
+      }
+
+      private void commit() {
+         if (printer == null) {
+            return;
+         }
+         try {
+            printer.close();
+            printer = null;
+            ConversionCache.this.commit(key, path);
+         } catch (IOException exception) {
+            log.warn("Conversion {} could not be cached", key, exception);
+            abort();
+         }
+      }
+
+      private void abort() {
+         try {
+            if (printer != null) {
+               printer.close();
+               printer = null;
+            }
+            Files.deleteIfExists(path);
+         } catch (IOException exception) {
+            log.warn("Could not delete {}", path, exception);
+         }
+      }
+   }
+
+   // Writes the records to a pending entry while they're read
+   private static final class CachingRecordStream implements DatasetRecordStream {
+      private final DatasetRecordStream delegate;
+      private final PendingEntry pendingEntry;
+
+      private CachingRecordStream(DatasetRecordStream delegate, PendingEntry pendingEntry) {
+         this.delegate = delegate;
+         this.pendingEntry = pendingEntry;
+      }
+
+      @Override
+      public List<String> getColumnNames() {
+         return delegate.getColumnNames();
+      }
+
+      @Nullable
+      @Override
+      public Object[] next() throws IOException {
+         Object[] row = delegate.next();
+         if (row == null) {
+            pendingEntry.commit();
+         } else {
+            pendingEntry.write(row);
+         }
+         return row;
+      }
+
+      @Override
+      public void close() throws IOException {
+         try {
+            delegate.close();
+         } finally {
+            // No-op if the entry was committed
+            pendingEntry.abort();
+         }
+      }
+   }
+}
@@ -1,9 +1,16 @@
 package io.github.fandreuz.open.data.server.conversion.impl;
 
 import io.github.fandreuz.open.data.server.conversion.ConversionService;
+import io.github.fandreuz.open.data.server.conversion.ConversionServiceException;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
 
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 /**
@@ -15,8 +22,21 @@ import java.nio.file.Path;
 class CsvConversionService implements ConversionService {
 
    @Override
-   public Path convert(@NonNull Path source) {
-      // Path is not immutable
-      return Path.of(source.toUri());
+   public DatasetRecordStream convert(@NonNull Path source) {
+      try {
+         return new CsvRecordStream(Files.newBufferedReader(source));
+      } catch (Exception exception) {
+         String msg = String.format("An exception occurred while reading the CSV file '%s'", source);
+         throw new ConversionServiceException(msg, exception);
+      }
+   }
+
+   @Override
+   public DatasetRecordStream convert(@NonNull InputStream source) {
+      try {
+         return new CsvRecordStream(new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8)));
+      } catch (Exception exception) {
+         throw new ConversionServiceException("An exception occurred while reading the CSV stream", exception);
+      }
    }
 }
@@ -0,0 +1,86 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Implementation of {@link DatasetRecordStream} for CSV content with a header
+ * line.
+ *
+ * @author fandreuz
+ */
+class CsvRecordStream implements DatasetRecordStream {
+
+   private static final CSVFormat csvFormat = CSVFormat.Builder.create().setHeader().build();
+
+   private final CSVParser parser;
+   private final Iterator<CSVRecord> iterator;
+   private final List<String> columnNames;
+   private final int[] columnIndexes;
+
+   /**
+    * Parse the header of the given CSV content.
+    *
+    * @param reader
+    *            CSV content, closed when this stream is closed or if the header
+    *            could not be parsed.
+    * @throws IOException
+    *             if the header could not be parsed.
+    */
+   CsvRecordStream(@NonNull Reader reader) throws IOException {
+      try {
+         parser = csvFormat.parse(reader);
+      } catch (IOException | RuntimeException exception) {
+         try {
+            reader.close();
+         } catch (IOException closeException) {
+            exception.addSuppressed(closeException);
+         }
+         throw exception;
+      }
+      iterator = parser.iterator();
+
+      var headers = parser.getHeaderMap();
+      columnNames = new ArrayList<>(headers.keySet());
+      columnIndexes = headers.values().stream().mapToInt(Integer::intValue).toArray();
+   }
+
+   @Override
+   public List<String> getColumnNames() {
+      return columnNames;
+   }
+
+   @Nullable
+   @Override
+   public String[] next() throws IOException {
+      try {
+         if (!iterator.hasNext()) {
+            return null;
+         }
+         CSVRecord record = iterator.next();
+         String[] row = new String[columnIndexes.length];
+         for (int i = 0; i < columnIndexes.length; ++i) {
+            row[i] = record.get(columnIndexes[i]);
+         }
+         return row;
+      } catch (UncheckedIOException exception) {
+         throw exception.getCause();
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      parser.close();
+   }
+}
@@ -0,0 +1,82 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A process started by {@link ProcessRunner}.
+ * <p>
+ * The exit code is available asynchronously. The process (and its
+ * descendants) is killed if it does not exit within the timeout, in which case
+ * the exit code completes with a {@link TimeoutException}.
+ *
+ * @author fandreuz
+ */
+@Slf4j
+@Getter(AccessLevel.PACKAGE)
+final class ProcessExecution {
+
+   private final Process process;
+   private final String command;
+   // File where stderr is redirected
+   private final Path stderr;
+   private final CompletableFuture<Integer> exitCode;
+
+   ProcessExecution(@NonNull Process process, @NonNull String command, @NonNull Path stderr,
+         @NonNull Duration timeout) {
+      this.process = process;
+      this.command = command;
+      this.stderr = stderr;
+      this.exitCode = process.onExit() //
+            .thenApply(Process::exitValue) //
+            .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      exitCode.whenComplete((value, exception) -> {
+         if (exception instanceof TimeoutException) {
+            log.warn("The command '{}' did not complete within {}, killing it", command, timeout);
+            kill();
+         }
+      });
+   }
+
+   /**
+    * Wait for the process to exit.
+    *
+    * @return the exit code.
+    * @throws IOException
+    *             if the process was killed after the timeout.
+    * @throws InterruptedException
+    *             if the current thread was interrupted while waiting.
+    */
+   int waitFor() throws IOException, InterruptedException {
+      try {
+         return exitCode.get();
+      } catch (ExecutionException exception) {
+         throw new IOException(String.format("The command '%s' timed out", command), exception.getCause());
+      }
+   }
+
+   /**
+    * Kill the process and its descendants, if they're still running.
+    *
+    * @return {@code true} if the process was still running.
+    */
+   boolean kill() {
+      if (!process.isAlive()) {
+         return false;
+      }
+      log.info("Killing the process for the command '{}'", command);
+      process.descendants().forEach(ProcessHandle::destroyForcibly);
+      process.destroyForcibly();
+      return true;
+   }
+}
@@ -0,0 +1,78 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Implementation of {@link DatasetRecordStream} for the CSV content written by
+ * a process to its stdout.
+ * <p>
+ * The end of the stream is reported only if the process exited successfully,
+ * otherwise the tail of its stderr is reported. Closing the stream before the
+ * end kills the process. If the process is killed after the timeout, reading
+ * the stream fails.
+ *
+ * @author fandreuz
+ */
+@Slf4j
+final class ProcessRecordStream implements DatasetRecordStream {
+
+   private final ProcessExecution execution;
+   private final CsvRecordStream csvRecordStream;
+
+   ProcessRecordStream(@NonNull ProcessExecution execution) throws IOException {
+      this.execution = execution;
+      try {
+         this.csvRecordStream = new CsvRecordStream(new BufferedReader(
+               new InputStreamReader(execution.getProcess().getInputStream(), StandardCharsets.UTF_8)));
+      } catch (IOException exception) {
+         execution.kill();
+         throw exception;
+      }
+   }
+
+   @Override
+   public List<String> getColumnNames() {
+      return csvRecordStream.getColumnNames();
+   }
+
+   @Nullable
+   @Override
+   public String[] next() throws IOException {
+      String[] row = csvRecordStream.next();
+      if (row == null) {
+         checkExitCode();
+      }
+      return row;
+   }
+
+   @Override
+   public void close() throws IOException {
+      execution.kill();
+      csvRecordStream.close();
+   }
+
+   private void checkExitCode() throws IOException {
+      String command = execution.getCommand();
+      int exitCode;
+      try {
+         exitCode = execution.waitFor();
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+         throw new IOException(String.format("The command was interrupted: '%s'", command), exception);
+      }
+      if (exitCode != 0) {
+         throw new IOException(String.format("Exit code for the command '%s' is %s (stderr: '%s')", command, exitCode,
+               ProcessRunner.readStderrTail(execution.getStderr())));
+      }
+      log.info("Command '{}' ran successfully", command);
+   }
+}
@@ -1,13 +1,36 @@
 package io.github.fandreuz.open.data.server.conversion.impl;
 
 import io.github.fandreuz.open.data.server.conversion.ConversionServiceException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Utility class to run commands in {@link ProcessBuilder}.
+ * <p>
+ * Commands are given as argument lists and run without a shell, thus arguments
+ * are never interpreted. Executables are looked up in the bin directory.
+ * Processes are killed if they do not exit within the configured timeout. The
+ * time spent in each external tool is recorded by the timer
+ * {@value #PROCESS_TIMER_NAME}, tagged by tool and outcome.
  *
  * @author fandreuz
  */
@@ -16,29 +39,130 @@ import lombok.extern.slf4j.Slf4j;
 @NonNull
 final class ProcessRunner {
 
+   static final String PROCESS_TIMER_NAME = "conversion.process.duration";
+   // Only the tail of stderr is reported in error messages
+   private static final int STDERR_TAIL_SIZE = 2048;
+
    private final String binDirectory;
+   private final Duration timeout;
+   private final MeterRegistry meterRegistry;
+
+   // Drains stdout while the process is running, so that it never blocks on a
+   // full pipe
+   private final ExecutorService outputExecutor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "process-output");
+      thread.setDaemon(true);
+      return thread;
+   });
 
    /**
-    * Run the given command redirecting stderr to the given filename in the current
-    * working directory.
+    * Run the given command in the given working directory and wait for its
+    * completion. If the current thread is interrupted the process is killed.
     *
     * @param command
     *            command to be run.
+    * @param workingDirectory
+    *            working directory of the process.
     * @param stderrFilename
     *            file where stderr should be redirected.
     * @return process stdout content.
+    * @see #runCommandAsync(List, Path, String)
+    */
+   String runCommand(@NonNull List<String> command, @NonNull Path workingDirectory, @NonNull String stderrFilename) {
+      CompletableFuture<String> stdout = runCommandAsync(command, workingDirectory, stderrFilename);
+      try {
+         return stdout.get();
+      } catch (InterruptedException exception) {
+         stdout.cancel(true);
+         Thread.currentThread().interrupt();
+         String msg = String.format("The command was interrupted: '%s'", command);
+         throw new ConversionServiceException(msg, exception);
+      } catch (ExecutionException exception) {
+         if (exception.getCause() instanceof ConversionServiceException) {
+            throw (ConversionServiceException) exception.getCause();
+         }
+         String msg = String.format("An exception occurred while running the command '%s'", command);
+         throw new ConversionServiceException(msg, exception.getCause());
+      }
+   }
+
+   /**
+    * Run the given command in the given working directory, redirecting stderr to
+    * the given filename in the same directory. Stdout is collected while the
+    * process is running.
+    *
+    * @param command
+    *            command to be run.
+    * @param workingDirectory
+    *            working directory of the process.
+    * @param stderrFilename
+    *            file where stderr should be redirected.
+    * @return process stdout content. The future fails if the exit code is not
+    *         {@code 0} or if the process timed out, cancelling the future kills
+    *         the process.
+    */
+   CompletableFuture<String> runCommandAsync(@NonNull List<String> command, @NonNull Path workingDirectory,
+         @NonNull String stderrFilename) {
+      ProcessExecution execution = startCommand(command, workingDirectory, stderrFilename);
+      CompletableFuture<String> stdout = CompletableFuture.supplyAsync(() -> {
+         try {
+            return new String(execution.getProcess().getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+         } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+         }
+      }, outputExecutor);
+
+      CompletableFuture<String> result = execution.getExitCode().thenCombine(stdout, (exitCode, output) -> {
+         if (exitCode != 0) {
+            String msg = String.format("Exit code for the command '%s' is %s (output: '%s', stderr: '%s')",
+                  command, exitCode, output, readStderrTail(execution.getStderr()));
+            throw new ConversionServiceException(msg);
+         }
+         log.info("Command '{}' ran successfully", command);
+         return output;
+      });
+      result.whenComplete((output, exception) -> {
+         if (exception != null) {
+            execution.kill();
+         }
+      });
+      return result;
+   }
+
+   /**
+    * Start the given command in the given working directory, redirecting stderr
+    * to the given filename in the same directory. The caller is responsible for
+    * consuming the stdout of the process.
+    *
+    * @param command
+    *            command to be run.
+    * @param workingDirectory
+    *            working directory of the process.
+    * @param stderrFilename
+    *            file where stderr should be redirected.
+    * @return the running process.
     */
-   String runCommand(@NonNull String command, @NonNull String stderrFilename) {
-      log.info("Running command '{}'", command);
-      Path processStderr = Path.of(".").resolve(stderrFilename);
+   ProcessExecution startCommand(@NonNull List<String> command, @NonNull Path workingDirectory,
+         @NonNull String stderrFilename) {
+      if (command.isEmpty()) {
+         throw new IllegalArgumentException("The command is empty");
+      }
+      log.info("Running command {} in {}", command, workingDirectory);
+      Path processStderr = workingDirectory.resolve(stderrFilename);
 
       Process process;
       try {
-         var builder = new ProcessBuilder("sh", "-c", command) //
+         // Stderr goes straight to a file, thus it never fills a pipe
+         var builder = new ProcessBuilder(new ArrayList<>(command)) //
+               .directory(workingDirectory.toFile()) //
                .redirectError(ProcessBuilder.Redirect.appendTo(processStderr.toFile()));
-         // Set the location of the executables
+         // Set the location of the executables. The executable itself is
+         // resolved against the PATH of this process, thus its path is given
          log.info("bin is {}", binDirectory);
-         builder.environment().put("PATH", binDirectory);
+         if (binDirectory != null) {
+            builder.command().set(0, Path.of(binDirectory, command.get(0)).toString());
+            builder.environment().put("PATH", binDirectory);
+         }
          log.info("env is {}", builder.environment());
 
          process = builder.start();
@@ -47,30 +171,65 @@ final class ProcessRunner {
          throw new ConversionServiceException(msg, exception);
       }
 
-      int exitCode;
-      try {
-         exitCode = process.waitFor();
-      } catch (InterruptedException exception) {
-         String msg = String.format("The command was interrupted: '%s'", command);
-         throw new ConversionServiceException(msg, exception);
-      }
+      long start = System.nanoTime();
+      ProcessExecution execution = new ProcessExecution(process, command.toString(), processStderr, timeout);
+      execution.getExitCode().whenComplete((exitCode, exception) -> Timer.builder(PROCESS_TIMER_NAME) //
+            .description("Time spent in external tools") //
+            .tag("tool", command.get(0)) //
+            .tag("outcome", describeOutcome(exitCode, exception)) //
+            .register(meterRegistry) //
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+      return execution;
+   }
 
-      String stdout;
+   /**
+    * Describe an executable in the bin directory, the description changes when
+    * the executable is replaced.
+    *
+    * @param executable
+    *            name of the executable.
+    * @return name, size and last-modified time of the executable.
+    */
+   String fingerprint(@NonNull String executable) {
+      Path path = Path.of(binDirectory, executable);
       try {
-         stdout = new String(process.getInputStream().readAllBytes());
-      } catch (Exception exception) {
-         String msg = String.format("An exception occurred while reading process output for the command '%s'",
-               command);
-         throw new ConversionServiceException(msg, exception);
+         return String.format("%s:%s:%s", executable, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+      } catch (IOException exception) {
+         log.warn("Could not read the attributes of {}", path, exception);
+         return executable;
       }
+   }
 
-      if (exitCode != 0) {
-         String msg = String.format("Exit code for the command '%s' is %s (output: '%s')", command, exitCode,
-               stdout);
-         throw new ConversionServiceException(msg);
+   /**
+    * Read the last part of the stderr of a process.
+    *
+    * @param stderr
+    *            file where stderr was redirected.
+    * @return the tail of the file, or an empty string if it could not be read.
+    */
+   static String readStderrTail(@NonNull Path stderr) {
+      if (!Files.exists(stderr)) {
+         return "";
+      }
+      try (var file = new RandomAccessFile(stderr.toFile(), "r")) {
+         long start = Math.max(0, file.length() - STDERR_TAIL_SIZE);
+         byte[] tail = new byte[(int) (file.length() - start)];
+         file.seek(start);
+         file.readFully(tail);
+         return new String(tail, StandardCharsets.UTF_8).strip();
+      } catch (IOException exception) {
+         log.warn("Could not read {}", stderr, exception);
+         return "";
       }
-      log.info("Command '{}' ran successfully", command);
+   }
 
-      return stdout;
+   private static String describeOutcome(Integer exitCode, Throwable exception) {
+      if (exception instanceof CompletionException) {
+         exception = exception.getCause();
+      }
+      if (exception instanceof TimeoutException) {
+         return "timeout";
+      }
+      return exception == null && exitCode == 0 ? "success" : "failure";
    }
 }
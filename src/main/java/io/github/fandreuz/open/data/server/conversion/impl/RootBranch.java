@@ -0,0 +1,159 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Branch of a flat tree: one or more scalar leaves, whose values are stored
+ * one entry after the other in baskets. Nested branches and baskets which were
+ * not written to the file (e.g. recovered trees) are not supported.
+ *
+ * @author fandreuz
+ */
+@Getter(AccessLevel.PACKAGE)
+final class RootBranch {
+
+   private static final String BRANCH_CLASS = "TBranch";
+   private static final int MIN_VERSION = 12;
+   private static final int MAX_VERSION = 13;
+
+   private final String name;
+   private final List<RootLeaf> leaves;
+   // Size of the values of an entry, sum of the sizes of the leaves
+   private final int entrySize;
+   private final long[] basketSeeks;
+   private final int[] basketSizes;
+   // First entry of each basket, followed by the number of entries
+   private final long[] basketFirstEntries;
+
+   private RootBranch(String name, List<RootLeaf> leaves, long[] basketSeeks, int[] basketSizes,
+         long[] basketFirstEntries) {
+      this.name = name;
+      this.leaves = List.copyOf(leaves);
+      this.entrySize = leaves.stream().mapToInt(leaf -> leaf.getType().getSize()).sum();
+      this.basketSeeks = basketSeeks;
+      this.basketSizes = basketSizes;
+      this.basketFirstEntries = basketFirstEntries;
+   }
+
+   /**
+    * Read a branch, to be used as {@link RootBuffer.ObjectReader}.
+    *
+    * @param className
+    *            class of the branch.
+    * @param buffer
+    *            buffer positioned at the beginning of the branch.
+    * @return the branch.
+    * @throws RootFormatException
+    *             if the branch is not supported.
+    */
+   static RootBranch read(@NonNull String className, @NonNull RootBuffer buffer) throws RootFormatException {
+      if (!BRANCH_CLASS.equals(className)) {
+         throw new RootFormatException("Unsupported branch class: " + className);
+      }
+      RootBuffer.VersionHeader header = buffer.readVersion();
+      if (header.version < MIN_VERSION || header.version > MAX_VERSION) {
+         throw new RootFormatException("Unsupported version of TBranch: " + header.version);
+      }
+      String name = buffer.readTNamed();
+      // TAttFill
+      buffer.skipObject();
+      // fCompress, fBasketSize, fEntryOffsetLen
+      buffer.skip(3 * Integer.BYTES);
+      int writeBasket = buffer.readInt();
+      // fEntryNumber
+      buffer.readLong();
+      if (header.version >= 13) {
+         // fIOFeatures
+         buffer.skipObject();
+      }
+      // fOffset
+      buffer.readInt();
+      int maxBaskets = buffer.readInt();
+      // fSplitLevel
+      buffer.readInt();
+      long entries = buffer.readLong();
+      // fFirstEntry, fTotBytes, fZipBytes
+      buffer.skip(3 * Long.BYTES);
+
+      List<Object> branches = buffer.readObjArray(RootBranch::read);
+      if (!branches.isEmpty()) {
+         throw new RootFormatException("Nested branches are not supported: " + name);
+      }
+      List<RootLeaf> leaves = new ArrayList<>();
+      for (Object leaf : buffer.readObjArray(RootLeaf::read)) {
+         if (!(leaf instanceof RootLeaf)) {
+            throw new RootFormatException("Invalid leaf in branch " + name);
+         }
+         leaves.add((RootLeaf) leaf);
+      }
+      if (leaves.isEmpty()) {
+         throw new RootFormatException("Branch without leaves: " + name);
+      }
+      // Baskets kept in memory, only relevant for trees which were not closed
+      buffer.readObjArray((basketClassName, basketBuffer) -> null);
+
+      if (writeBasket < 0 || maxBaskets < writeBasket) {
+         throw new RootFormatException("Invalid number of baskets in branch " + name);
+      }
+      buffer.skip(1);
+      int[] basketSizes = new int[writeBasket];
+      for (int i = 0; i < maxBaskets; ++i) {
+         int size = buffer.readInt();
+         if (i < writeBasket) {
+            basketSizes[i] = size;
+         }
+      }
+      buffer.skip(1);
+      // The first entry of the next basket is the number of entries on disk
+      long[] basketFirstEntries = new long[writeBasket + 1];
+      basketFirstEntries[writeBasket] = entries;
+      for (int i = 0; i < maxBaskets; ++i) {
+         long firstEntry = buffer.readLong();
+         if (i <= writeBasket) {
+            basketFirstEntries[i] = firstEntry;
+         }
+      }
+      buffer.skip(1);
+      long[] basketSeeks = new long[writeBasket];
+      for (int i = 0; i < maxBaskets; ++i) {
+         long seek = buffer.readLong();
+         if (i < writeBasket) {
+            basketSeeks[i] = seek;
+         }
+      }
+      buffer.seekEnd(header);
+
+      for (int i = 0; i < writeBasket; ++i) {
+         if (basketSeeks[i] <= 0 || basketSizes[i] <= 0 || basketFirstEntries[i] > basketFirstEntries[i + 1]) {
+            throw new RootFormatException("Invalid basket in branch " + name);
+         }
+      }
+      if (basketFirstEntries[0] != 0 || basketFirstEntries[writeBasket] != entries) {
+         throw new RootFormatException("Some baskets were not written to the file in branch " + name);
+      }
+      return new RootBranch(name, leaves, basketSeeks, basketSizes, basketFirstEntries);
+   }
+
+   /**
+    * Get the number of entries written to the file.
+    *
+    * @return number of entries.
+    */
+   long getEntries() {
+      return basketFirstEntries[basketFirstEntries.length - 1];
+   }
+
+   /**
+    * Get the number of baskets written to the file.
+    *
+    * @return number of baskets.
+    */
+   int getBasketCount() {
+      return basketSeeks.length;
+   }
+}
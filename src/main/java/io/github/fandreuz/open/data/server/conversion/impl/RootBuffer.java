@@ -0,0 +1,307 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cursor over the (uncompressed) payload of a ROOT key, which decodes the
+ * building blocks of the ROOT serialization format: big-endian primitives,
+ * strings, versioned objects with byte counts, and object pointers.
+ * <p>
+ * Pointers to objects and classes which were already read are encoded as
+ * offsets from the beginning of the key, thus the length of the key header is
+ * needed to resolve them.
+ *
+ * @author fandreuz
+ */
+final class RootBuffer {
+
+   private static final long BYTE_COUNT_MASK = 0x40000000L;
+   private static final long NEW_CLASS_TAG = 0xFFFFFFFFL;
+   private static final long CLASS_MASK = 0x80000000L;
+   private static final int MAP_OFFSET = 2;
+   private static final int BYTE_COUNT_VERSION_MASK = 0x4000;
+   private static final long IS_REFERENCED = 1L << 4;
+
+   // Marks objects of classes not known by the caller, which were skipped
+   static final Object SKIPPED = new Object();
+
+   /** Reads an object of the given class, or returns {@code null} to skip it. */
+   @FunctionalInterface
+   interface ObjectReader {
+      @Nullable
+      Object read(@NonNull String className, @NonNull RootBuffer buffer) throws RootFormatException;
+   }
+
+   private final ByteBuffer buffer;
+   private final int keyLength;
+   // Objects and classes read so far, by offset from the beginning of the key
+   private final Map<Long, Object> references = new HashMap<>();
+
+   RootBuffer(@NonNull byte[] payload, int keyLength) {
+      this.buffer = ByteBuffer.wrap(payload);
+      this.keyLength = keyLength;
+   }
+
+   int position() {
+      return buffer.position();
+   }
+
+   void seek(int position) throws RootFormatException {
+      if (position < 0 || position > buffer.limit()) {
+         throw new RootFormatException("Invalid position in the buffer: " + position);
+      }
+      buffer.position(position);
+   }
+
+   void skip(int bytes) throws RootFormatException {
+      seek(buffer.position() + bytes);
+   }
+
+   byte readByte() throws RootFormatException {
+      try {
+         return buffer.get();
+      } catch (BufferUnderflowException exception) {
+         throw new RootFormatException("Unexpected end of the buffer", exception);
+      }
+   }
+
+   boolean readBoolean() throws RootFormatException {
+      return readByte() != 0;
+   }
+
+   short readShort() throws RootFormatException {
+      try {
+         return buffer.getShort();
+      } catch (BufferUnderflowException exception) {
+         throw new RootFormatException("Unexpected end of the buffer", exception);
+      }
+   }
+
+   int readInt() throws RootFormatException {
+      try {
+         return buffer.getInt();
+      } catch (BufferUnderflowException exception) {
+         throw new RootFormatException("Unexpected end of the buffer", exception);
+      }
+   }
+
+   long readUnsignedInt() throws RootFormatException {
+      return Integer.toUnsignedLong(readInt());
+   }
+
+   long readLong() throws RootFormatException {
+      try {
+         return buffer.getLong();
+      } catch (BufferUnderflowException exception) {
+         throw new RootFormatException("Unexpected end of the buffer", exception);
+      }
+   }
+
+   /** {@code TString}: one byte for the length (or 255 followed by an int). */
+   String readString() throws RootFormatException {
+      int length = readByte() & 0xFF;
+      if (length == 255) {
+         length = readInt();
+      }
+      return readChars(length);
+   }
+
+   /** Null-terminated string. */
+   String readCString() throws RootFormatException {
+      int start = buffer.position();
+      while (readByte() != 0) {
+         // Find the terminator
+      }
+      int end = buffer.position();
+      buffer.position(start);
+      String value = readChars(end - start - 1);
+      buffer.position(end);
+      return value;
+   }
+
+   /**
+    * Read the header of a versioned object.
+    *
+    * @return version and end of the object.
+    */
+   VersionHeader readVersion() throws RootFormatException {
+      int start = buffer.position();
+      long byteCount = readUnsignedInt();
+      if ((byteCount & BYTE_COUNT_MASK) != 0) {
+         int end = start + Integer.BYTES + (int) (byteCount & ~BYTE_COUNT_MASK);
+         return new VersionHeader(readShort(), end);
+      }
+      // Old objects without byte count
+      buffer.position(start);
+      return new VersionHeader(readShort(), -1);
+   }
+
+   /** Skip a versioned object, it must have a byte count. */
+   void skipObject() throws RootFormatException {
+      VersionHeader header = readVersion();
+      seekEnd(header);
+   }
+
+   /** Move to the end of a versioned object, it must have a byte count. */
+   void seekEnd(@NonNull VersionHeader header) throws RootFormatException {
+      if (header.end < 0) {
+         throw new RootFormatException("Objects without byte count are not supported");
+      }
+      seek(header.end);
+   }
+
+   /** {@code TObject}: version, unique ID and bits. */
+   void readTObject() throws RootFormatException {
+      short version = readShort();
+      if ((version & BYTE_COUNT_VERSION_MASK) != 0) {
+         skip(2 * Short.BYTES);
+      }
+      readInt();
+      long bits = readUnsignedInt();
+      if ((bits & IS_REFERENCED) != 0) {
+         skip(Short.BYTES);
+      }
+   }
+
+   /**
+    * Read a {@code TNamed}.
+    *
+    * @return the name.
+    */
+   String readTNamed() throws RootFormatException {
+      VersionHeader header = readVersion();
+      readTObject();
+      String name = readString();
+      // Title
+      readString();
+      if (header.end >= 0) {
+         seek(header.end);
+      }
+      return name;
+   }
+
+   /**
+    * Read a {@code TObjArray} streamed as a member of another object.
+    *
+    * @param reader
+    *            reader of the elements.
+    * @return the elements of the array, {@code null} elements are kept.
+    */
+   List<Object> readObjArray(@NonNull ObjectReader reader) throws RootFormatException {
+      VersionHeader header = readVersion();
+      if (header.version > 2) {
+         readTObject();
+      }
+      if (header.version > 1) {
+         // Name
+         readString();
+      }
+      int size = readInt();
+      // Lower bound
+      readInt();
+      if (size < 0) {
+         throw new RootFormatException("Invalid size of TObjArray: " + size);
+      }
+
+      List<Object> elements = new ArrayList<>(size);
+      for (int i = 0; i < size; ++i) {
+         elements.add(readObjectAny(reader));
+      }
+      if (header.end >= 0) {
+         seek(header.end);
+      }
+      return elements;
+   }
+
+   /**
+    * Read a pointer to an object, preceded by the class of the object.
+    *
+    * @param reader
+    *            reader of the object.
+    * @return the object, {@code null} for null pointers, or {@link #SKIPPED} if
+    *         the object was not read.
+    */
+   @Nullable
+   Object readObjectAny(@NonNull ObjectReader reader) throws RootFormatException {
+      int start = buffer.position();
+      long byteCount = readUnsignedInt();
+      long tag;
+      int classTagPosition;
+      if ((byteCount & BYTE_COUNT_MASK) == 0 || byteCount == NEW_CLASS_TAG) {
+         tag = byteCount;
+         byteCount = 0;
+         classTagPosition = start;
+      } else {
+         classTagPosition = buffer.position();
+         tag = readUnsignedInt();
+         byteCount &= ~BYTE_COUNT_MASK;
+      }
+
+      if ((tag & CLASS_MASK) == 0) {
+         // Null, or an object which was already read
+         if (tag == 0) {
+            return null;
+         }
+         Object reference = references.get(tag);
+         return reference == null ? SKIPPED : reference;
+      }
+
+      String className;
+      if (tag == NEW_CLASS_TAG) {
+         className = readCString();
+         references.put((long) classTagPosition + keyLength + MAP_OFFSET, className);
+      } else {
+         Object reference = references.get(tag & ~CLASS_MASK);
+         if (!(reference instanceof String)) {
+            throw new RootFormatException("Invalid class reference: " + (tag & ~CLASS_MASK));
+         }
+         className = (String) reference;
+      }
+
+      int objectStart = buffer.position();
+      Object object = reader.read(className, this);
+      if (object == null) {
+         if (byteCount == 0) {
+            throw new RootFormatException("Cannot skip an object of class " + className);
+         }
+         object = SKIPPED;
+      }
+      if (byteCount != 0) {
+         references.put((long) start + keyLength + MAP_OFFSET, object);
+         seek(start + Integer.BYTES + (int) byteCount);
+      } else if (buffer.position() == objectStart) {
+         throw new RootFormatException("Object of class " + className + " was not read");
+      }
+      return object;
+   }
+
+   private String readChars(int length) throws RootFormatException {
+      if (length < 0 || length > buffer.remaining()) {
+         throw new RootFormatException("Invalid string length: " + length);
+      }
+      String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+            StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+      return value;
+   }
+
+   /** Version and end position of a versioned object ({@code -1} if unknown). */
+   static final class VersionHeader {
+      final int version;
+      final int end;
+
+      private VersionHeader(int version, int end) {
+         this.version = version;
+         this.end = end;
+      }
+   }
+}
@@ -2,15 +2,34 @@ package io.github.fandreuz.open.data.server.conversion.impl;
 
 import io.github.fandreuz.open.data.server.conversion.ConversionService;
 import io.github.fandreuz.open.data.server.conversion.ConversionServiceException;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
+import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Implementation of {@link ConversionService} for ROOT files.
+ * <p>
+ * Flat trees are decoded by {@link RootRecordStream}, other files are converted
+ * by {@code root2csv}. Conversions run concurrently up to a configurable limit,
+ * each {@code root2csv} conversion has its own scratch directory which is used
+ * as working directory and to capture stderr. The output of {@code root2csv}
+ * is cached by {@link ConversionCache}. Each tree of a file can be converted
+ * separately, see {@link #listTables(Path)}.
  *
  * @author fandreuz
  */
@@ -18,46 +37,217 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 class RootConversionService implements ConversionService {
 
-   private static final String ROOT_TREE_READER_COMMAND_PATTERN = "root-ls '%s'";
-   private static final String ROOT_CONVERTER_COMMAND_PATTERN = "root2csv -f '%s' -o '%s' -t '%s'";
+   private static final String ROOT_LS = "root-ls";
    private static final String ROOT_LS_ERR = "root-ls.err";
+   private static final String ROOT_2_CSV = "root2csv";
    private static final String ROOT_2_CSV_ERR = "root2csv.err";
+   private static final String STDOUT = "/dev/stdout";
+   private static final Set<String> ROOT_TREE_CLASSES = Set.of("TTree", "TNtuple", "TNtupleD");
+   private static final String NATIVE_READER_KEY = "root.native.reader";
+   private static final boolean NATIVE_READER = Boolean
+         .parseBoolean(System.getProperty(NATIVE_READER_KEY, Boolean.TRUE.toString()));
+   private static final String PARALLELISM_KEY = "root.conversion.parallelism";
+   private static final int PARALLELISM = Math.max(1,
+         Integer.getInteger(PARALLELISM_KEY, Runtime.getRuntime().availableProcessors()));
+   private static final String SCRATCH_PATH_KEY = "root.conversion.scratch.path";
+   private static final String SCRATCH_PATH = System.getProperty(SCRATCH_PATH_KEY,
+         System.getProperty("java.io.tmpdir"));
+   private static final String SCRATCH_DIRECTORY_PREFIX = "root-conversion-";
 
    @Inject
    @Named(RootProcessRunnerConfiguration.ROOT_PROCESS_RUNNER_BEAN_NAME)
    private ProcessRunner processRunner;
 
+   @Inject
+   private ConversionCache conversionCache;
+
+   // Each conversion holds a slot until its record stream is closed
+   private final Semaphore conversionSlots = new Semaphore(PARALLELISM, true);
+
    @Override
-   public synchronized Path convert(@NonNull Path source) {
-      String rootLsCommand = String.format(ROOT_TREE_READER_COMMAND_PATTERN, source);
-      String rootLsOutput = processRunner.runCommand(rootLsCommand, ROOT_LS_ERR);
-      log.info("root-ls output: {}", rootLsOutput);
-      String rootTreeName = extractRootTreeName(rootLsOutput);
+   public DatasetRecordStream convert(@NonNull Path source) {
+      return convertTree(source, null);
+   }
+
+   @Override
+   public List<String> listTables(@NonNull Path source) {
+      Path absoluteSource = source.toAbsolutePath();
+      if (NATIVE_READER) {
+         try (RootFile file = RootFile.open(absoluteSource)) {
+            return file.listTrees();
+         } catch (RootFormatException exception) {
+            log.warn("The native reader cannot list the trees of '{}', falling back to root-ls", source, exception);
+         } catch (IOException exception) {
+            String msg = String.format("An exception occurred while reading '%s'", source);
+            throw new ConversionServiceException(msg, exception);
+         }
+      }
+
+      Path scratchDirectory = createScratchDirectory();
+      try {
+         return extractRootTreeNames(runRootLs(absoluteSource, scratchDirectory));
+      } finally {
+         deleteScratchDirectory(scratchDirectory);
+      }
+   }
+
+   @Override
+   public DatasetRecordStream convert(@NonNull Path source, @NonNull String table) {
+      return convertTree(source, table);
+   }
+
+   private DatasetRecordStream convertTree(Path source, @Nullable String treeName) {
+      acquireConversionSlot(source);
+      try {
+         return new CleanupRecordStream(doConvert(source.toAbsolutePath(), treeName), conversionSlots::release);
+      } catch (RuntimeException exception) {
+         conversionSlots.release();
+         throw exception;
+      }
+   }
+
+   private DatasetRecordStream doConvert(Path source, @Nullable String treeName) {
+      if (NATIVE_READER) {
+         try {
+            return RootRecordStream.open(source, treeName);
+         } catch (RootFormatException exception) {
+            log.warn("The native reader cannot read '{}', falling back to root2csv", source, exception);
+         } catch (IOException exception) {
+            String msg = String.format("An exception occurred while reading '%s'", source);
+            throw new ConversionServiceException(msg, exception);
+         }
+      }
+
+      String cacheKey = null;
+      if (conversionCache.isEnabled()) {
+         cacheKey = computeCacheKey(source, treeName);
+         DatasetRecordStream cachedRecords = conversionCache.open(cacheKey);
+         if (cachedRecords != null) {
+            return cachedRecords;
+         }
+      }
+
+      Path scratchDirectory = createScratchDirectory();
+      DatasetRecordStream records;
+      try {
+         records = new CleanupRecordStream(convertWithRoot2Csv(source, treeName, scratchDirectory),
+               () -> deleteScratchDirectory(scratchDirectory));
+      } catch (RuntimeException exception) {
+         deleteScratchDirectory(scratchDirectory);
+         throw exception;
+      }
+      return cacheKey == null ? records : conversionCache.store(cacheKey, records);
+   }
+
+   private String computeCacheKey(Path source, @Nullable String treeName) {
+      // The source is hashed separately
+      String converterVersion = String.format("%s %s", processRunner.fingerprint(ROOT_2_CSV),
+            root2CsvCommand("", treeName == null ? "" : treeName));
+      try {
+         return conversionCache.computeKey(source, converterVersion);
+      } catch (IOException exception) {
+         String msg = String.format("An exception occurred while hashing '%s'", source);
+         throw new ConversionServiceException(msg, exception);
+      }
+   }
+
+   private DatasetRecordStream convertWithRoot2Csv(Path source, @Nullable String treeName, Path scratchDirectory) {
+      String rootTreeName = treeName == null
+            ? extractRootTreeNames(runRootLs(source, scratchDirectory)).get(0)
+            : treeName;
       log.info("ROOT tree name: {}", rootTreeName);
-      String destName = getFileNameAsCsv(source);
-      String root2CsvCommand = String.format(ROOT_CONVERTER_COMMAND_PATTERN, source, destName, rootTreeName);
-      String root2CsvOutput = processRunner.runCommand(root2CsvCommand, ROOT_2_CSV_ERR);
-      log.info("root2csv output: {}", root2CsvOutput);
-      return Path.of(destName);
+
+      // The CSV content is read from the stdout of root2csv. Tree names come
+      // from the file, they're passed as a single argument and never reach a
+      // shell
+      List<String> root2CsvCommand = root2CsvCommand(source.toString(), rootTreeName);
+      ProcessExecution execution = processRunner.startCommand(root2CsvCommand, scratchDirectory, ROOT_2_CSV_ERR);
+      try {
+         return new ProcessRecordStream(execution);
+      } catch (Exception exception) {
+         String msg = String.format("An exception occurred while reading the output of %s", root2CsvCommand);
+         throw new ConversionServiceException(msg, exception);
+      }
    }
 
-   private static String extractRootTreeName(@NonNull String rootLsOutput) {
+   private static List<String> root2CsvCommand(String source, String treeName) {
+      return List.of(ROOT_2_CSV, "-f", source, "-o", STDOUT, "-t", treeName);
+   }
+
+   private void acquireConversionSlot(Path source) {
+      if (!conversionSlots.tryAcquire()) {
+         log.info("Waiting for a free conversion slot to convert '{}'", source);
+         try {
+            conversionSlots.acquire();
+         } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            String msg = String.format("Interrupted while waiting to convert '%s'", source);
+            throw new ConversionServiceException(msg, exception);
+         }
+      }
+   }
+
+   private static Path createScratchDirectory() {
+      try {
+         Path scratchRoot = Path.of(SCRATCH_PATH);
+         Files.createDirectories(scratchRoot);
+         return Files.createTempDirectory(scratchRoot, SCRATCH_DIRECTORY_PREFIX);
+      } catch (IOException exception) {
+         String msg = String.format("Could not create a scratch directory in '%s'", SCRATCH_PATH);
+         throw new ConversionServiceException(msg, exception);
+      }
+   }
+
+   private static void deleteScratchDirectory(Path scratchDirectory) {
+      try (Stream<Path> paths = Files.walk(scratchDirectory)) {
+         // Children first
+         for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+            Files.deleteIfExists(path);
+         }
+      } catch (IOException exception) {
+         log.warn("Could not delete the scratch directory {}", scratchDirectory, exception);
+      }
+   }
+
+   @Override
+   public DatasetRecordStream convert(@NonNull InputStream source) {
+      try {
+         source.close();
+      } catch (Exception exception) {
+         log.warn("Could not close the source stream", exception);
+      }
+      throw new ConversionServiceException("ROOT files can be converted only when completely available");
+   }
+
+   private String runRootLs(Path source, Path scratchDirectory) {
+      String rootLsOutput = processRunner.runCommand(List.of(ROOT_LS, source.toString()), scratchDirectory,
+            ROOT_LS_ERR);
+      log.info("root-ls output: {}", rootLsOutput);
+      return rootLsOutput;
+   }
+
+   private static List<String> extractRootTreeNames(@NonNull String rootLsOutput) {
       // Typical root-ls output
       // === [1685895641024.root] ===
       // version: 53201
       // TTree events (cycle=1)
+      // TTree runs (cycle=1)
       var splitLines = rootLsOutput.split("\\n");
-      if (splitLines.length < 2) {
+      if (splitLines.length < 3) {
          throw malformedRootLsOutputException(rootLsOutput);
       }
 
-      var splitSpaces = splitLines[2] // Drop first 2 lines
-            .split("\\s+");
-      if (splitSpaces.length < 2) {
+      var treeNames = Arrays.stream(splitLines) //
+            .skip(2) // Drop first 2 lines
+            .map(line -> line.strip().split("\\s+")) //
+            .filter(splitSpaces -> splitSpaces.length >= 2 && ROOT_TREE_CLASSES.contains(splitSpaces[0])) //
+            .map(splitSpaces -> splitSpaces[1]) //
+            .distinct() //
+            .collect(Collectors.toUnmodifiableList());
+      if (treeNames.isEmpty()) {
          throw malformedRootLsOutputException(rootLsOutput);
       }
-
-      return splitSpaces[1];
+      return treeNames;
    }
 
    private static ConversionServiceException malformedRootLsOutputException(String output) {
@@ -65,8 +255,4 @@ class RootConversionService implements ConversionService {
             output);
       return new ConversionServiceException(msg);
    }
-
-   private static String getFileNameAsCsv(@NonNull Path path) {
-      return path.toFile().getName().split("\\.")[0] + ".csv";
-   }
 }
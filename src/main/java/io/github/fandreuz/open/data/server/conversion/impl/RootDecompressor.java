@@ -0,0 +1,176 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import lombok.NonNull;
+import org.tukaani.xz.XZInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompressor for the payload of ROOT keys.
+ * <p>
+ * A compressed payload is a sequence of blocks, each one preceded by a 9-byte
+ * header: algorithm (2 bytes), method (1 byte), compressed and uncompressed
+ * size (3 bytes each, little-endian). ZLIB, LZMA and LZ4 blocks are supported,
+ * ZSTD blocks are not.
+ *
+ * @author fandreuz
+ */
+final class RootDecompressor {
+
+   private static final int HEADER_SIZE = 9;
+   // LZ4 blocks start with a checksum of the compressed content
+   private static final int LZ4_CHECKSUM_SIZE = 8;
+   private static final int LZ4_MIN_MATCH = 4;
+
+   private RootDecompressor() {
+      throw new UnsupportedOperationException("Instances not allowed");
+   }
+
+   /**
+    * Decompress the payload of a key.
+    *
+    * @param source
+    *            the compressed payload.
+    * @param uncompressedSize
+    *            size of the uncompressed payload.
+    * @return the uncompressed payload.
+    */
+   static byte[] decompress(@NonNull byte[] source, int uncompressedSize) throws RootFormatException {
+      if (source.length == uncompressedSize) {
+         // Small payloads are not compressed
+         return source;
+      }
+
+      byte[] target = new byte[uncompressedSize];
+      int sourcePosition = 0;
+      int targetPosition = 0;
+      while (targetPosition < uncompressedSize) {
+         if (sourcePosition + HEADER_SIZE > source.length) {
+            throw new RootFormatException("Truncated compressed block");
+         }
+         String algorithm = new String(source, sourcePosition, 2, StandardCharsets.US_ASCII);
+         int compressedBlockSize = readSize(source, sourcePosition + 3);
+         int uncompressedBlockSize = readSize(source, sourcePosition + 6);
+         sourcePosition += HEADER_SIZE;
+         if (sourcePosition + compressedBlockSize > source.length
+               || targetPosition + uncompressedBlockSize > uncompressedSize) {
+            throw new RootFormatException("Invalid size of compressed block");
+         }
+
+         switch (algorithm) {
+            case "ZL" :
+               inflate(source, sourcePosition, compressedBlockSize, target, targetPosition, uncompressedBlockSize);
+               break;
+            case "XZ" :
+               unxz(source, sourcePosition, compressedBlockSize, target, targetPosition, uncompressedBlockSize);
+               break;
+            case "L4" :
+               decompressLz4(source, sourcePosition + LZ4_CHECKSUM_SIZE, compressedBlockSize - LZ4_CHECKSUM_SIZE,
+                     target, targetPosition, uncompressedBlockSize);
+               break;
+            default :
+               throw new RootFormatException("Unsupported compression algorithm: " + algorithm);
+         }
+         sourcePosition += compressedBlockSize;
+         targetPosition += uncompressedBlockSize;
+      }
+      return target;
+   }
+
+   private static int readSize(byte[] source, int position) {
+      return (source[position] & 0xFF) | (source[position + 1] & 0xFF) << 8 | (source[position + 2] & 0xFF) << 16;
+   }
+
+   private static void inflate(byte[] source, int sourcePosition, int sourceLength, byte[] target, int targetPosition,
+         int targetLength) throws RootFormatException {
+      Inflater inflater = new Inflater();
+      try {
+         inflater.setInput(source, sourcePosition, sourceLength);
+         int inflated = inflater.inflate(target, targetPosition, targetLength);
+         if (inflated != targetLength) {
+            throw new RootFormatException("Unexpected size of ZLIB block: " + inflated);
+         }
+      } catch (DataFormatException exception) {
+         throw new RootFormatException("Malformed ZLIB block", exception);
+      } finally {
+         inflater.end();
+      }
+   }
+
+   private static void unxz(byte[] source, int sourcePosition, int sourceLength, byte[] target, int targetPosition,
+         int targetLength) throws RootFormatException {
+      try (InputStream input = new XZInputStream(new ByteArrayInputStream(source, sourcePosition, sourceLength))) {
+         int read = input.readNBytes(target, targetPosition, targetLength);
+         if (read != targetLength) {
+            throw new RootFormatException("Unexpected size of LZMA block: " + read);
+         }
+      } catch (RootFormatException exception) {
+         throw exception;
+      } catch (IOException exception) {
+         throw new RootFormatException("Malformed LZMA block", exception);
+      }
+   }
+
+   // Raw LZ4 block: sequences of literals followed by a back-reference
+   private static void decompressLz4(byte[] source, int sourcePosition, int sourceLength, byte[] target,
+         int targetPosition, int targetLength) throws RootFormatException {
+      int sourceEnd = sourcePosition + sourceLength;
+      int targetEnd = targetPosition + targetLength;
+      int position = sourcePosition;
+      int output = targetPosition;
+      try {
+         while (position < sourceEnd) {
+            int token = source[position++] & 0xFF;
+
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+               int next;
+               do {
+                  next = source[position++] & 0xFF;
+                  literalLength += next;
+               } while (next == 255);
+            }
+            if (position + literalLength > sourceEnd || output + literalLength > targetEnd) {
+               throw new RootFormatException("Malformed LZ4 block");
+            }
+            System.arraycopy(source, position, target, output, literalLength);
+            position += literalLength;
+            output += literalLength;
+            if (position == sourceEnd) {
+               // The last sequence has no back-reference
+               break;
+            }
+
+            int offset = (source[position] & 0xFF) | (source[position + 1] & 0xFF) << 8;
+            position += 2;
+            int matchLength = token & 0x0F;
+            if (matchLength == 15) {
+               int next;
+               do {
+                  next = source[position++] & 0xFF;
+                  matchLength += next;
+               } while (next == 255);
+            }
+            matchLength += LZ4_MIN_MATCH;
+            int match = output - offset;
+            if (offset == 0 || match < targetPosition || output + matchLength > targetEnd) {
+               throw new RootFormatException("Malformed LZ4 block");
+            }
+            // The match may overlap with the output
+            for (int i = 0; i < matchLength; ++i) {
+               target[output++] = target[match + i];
+            }
+         }
+      } catch (ArrayIndexOutOfBoundsException exception) {
+         throw new RootFormatException("Truncated LZ4 block", exception);
+      }
+      if (output != targetEnd) {
+         throw new RootFormatException("Unexpected size of LZ4 block: " + (output - targetPosition));
+      }
+   }
+}
@@ -0,0 +1,257 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import jakarta.annotation.Nullable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Random access to the keys of a ROOT file. Only the keys of the top directory
+ * are listed.
+ * <p>
+ * Reads are positional, thus the file is never loaded in memory as a whole.
+ * This class is not thread-safe.
+ *
+ * @author fandreuz
+ */
+@Slf4j
+final class RootFile implements Closeable {
+
+   private static final byte[] MAGIC = "root".getBytes(StandardCharsets.US_ASCII);
+   // Files and keys with versions above these thresholds use 64-bit pointers
+   private static final int LARGE_FILE_VERSION = 1000000;
+   private static final int LARGE_KEY_VERSION = 1000;
+   private static final int FILE_HEADER_SIZE = 64;
+   private static final int DIRECTORY_HEADER_SIZE = 42;
+   private static final Set<String> TREE_CLASSES = Set.of("TTree", "TNtuple", "TNtupleD");
+
+   private final Path path;
+   private final FileChannel channel;
+   private final List<Key> keys;
+
+   private RootFile(Path path, FileChannel channel) throws IOException {
+      this.path = path;
+      this.channel = channel;
+      this.keys = readKeys();
+   }
+
+   /**
+    * Open a ROOT file and read the list of its keys.
+    *
+    * @param path
+    *            the file.
+    * @return the opened file, to be closed by the caller.
+    * @throws RootFormatException
+    *             if the file is not a valid ROOT file.
+    */
+   static RootFile open(@NonNull Path path) throws IOException {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+         return new RootFile(path, channel);
+      } catch (IOException | RuntimeException exception) {
+         channel.close();
+         throw exception;
+      }
+   }
+
+   /**
+    * List the trees in the top directory.
+    *
+    * @return names of the trees, sorted as in the file.
+    */
+   List<String> listTrees() {
+      return keys.stream() //
+            .filter(key -> TREE_CLASSES.contains(key.className)) //
+            .map(key -> key.name) //
+            .distinct() //
+            .collect(Collectors.toUnmodifiableList());
+   }
+
+   /**
+    * Find a tree in the top directory, the latest cycle of the tree is chosen.
+    *
+    * @param name
+    *            name of the tree, or {@code null} for the first tree.
+    * @return key of the tree.
+    * @throws RootFormatException
+    *             if the tree is not in the top directory.
+    */
+   Key findTree(@Nullable String name) throws RootFormatException {
+      Key tree = null;
+      for (Key key : keys) {
+         if (!TREE_CLASSES.contains(key.className) || (name != null && !name.equals(key.name))) {
+            continue;
+         }
+         if (tree == null) {
+            tree = key;
+         } else if (tree.name.equals(key.name) && tree.cycle < key.cycle) {
+            tree = key;
+         }
+      }
+      if (tree == null) {
+         throw new RootFormatException(String.format("Tree %s not found in %s", name == null ? "" : name, path));
+      }
+      log.info("ROOT tree name: {} (cycle={})", tree.name, tree.cycle);
+      return tree;
+   }
+
+   /**
+    * Read the object stored in the given key.
+    *
+    * @param key
+    *            a key of this file.
+    * @return the uncompressed object.
+    */
+   RootBuffer readObject(@NonNull Key key) throws IOException {
+      return new RootBuffer(readPayload(key.seek, key.size), key.keyLength);
+   }
+
+   /**
+    * Read the payload of the key at the given position, e.g. a basket.
+    *
+    * @param seek
+    *            position of the key in the file.
+    * @param size
+    *            size of the key (header and compressed payload).
+    * @return the uncompressed payload.
+    */
+   byte[] readPayload(long seek, int size) throws IOException {
+      byte[] bytes = read(seek, size);
+      Key key = readKeyHeader(new RootBuffer(bytes, 0));
+      if (key.keyLength > size || key.size != size) {
+         throw new RootFormatException("Unexpected size of the key at " + seek);
+      }
+      return RootDecompressor.decompress(Arrays.copyOfRange(bytes, key.keyLength, size), key.objectLength);
+   }
+
+   @Override
+   public void close() throws IOException {
+      channel.close();
+   }
+
+   private List<Key> readKeys() throws IOException {
+      RootBuffer header = new RootBuffer(read(0, (int) Math.min(FILE_HEADER_SIZE, channel.size())), 0);
+      for (byte expected : MAGIC) {
+         if (header.readByte() != expected) {
+            throw new RootFormatException("Not a ROOT file: " + path);
+         }
+      }
+      int version = header.readInt();
+      int begin = header.readInt();
+      boolean largeFile = version >= LARGE_FILE_VERSION;
+      // fEND, fSeekFree
+      header.skip(largeFile ? 2 * Long.BYTES : 2 * Integer.BYTES);
+      // fNbytesFree, nfree
+      header.skip(2 * Integer.BYTES);
+      int nameSize = header.readInt();
+
+      // Top directory
+      RootBuffer directory = new RootBuffer(read(begin + nameSize, DIRECTORY_HEADER_SIZE), 0);
+      int directoryVersion = directory.readShort();
+      // fDatimeC, fDatimeM
+      directory.skip(2 * Integer.BYTES);
+      int keysSize = directory.readInt();
+      // fNbytesName
+      directory.readInt();
+      long keysSeek;
+      if (directoryVersion > LARGE_KEY_VERSION) {
+         // fSeekDir, fSeekParent
+         directory.skip(2 * Long.BYTES);
+         keysSeek = directory.readLong();
+      } else {
+         directory.skip(2 * Integer.BYTES);
+         keysSeek = directory.readUnsignedInt();
+      }
+
+      // The list of keys is never compressed
+      RootBuffer keysList = new RootBuffer(read(keysSeek, keysSize), 0);
+      readKeyHeader(keysList);
+      int count = keysList.readInt();
+      if (count < 0) {
+         throw new RootFormatException("Invalid number of keys: " + count);
+      }
+      List<Key> output = new ArrayList<>(count);
+      for (int i = 0; i < count; ++i) {
+         output.add(readKeyHeader(keysList));
+      }
+      return output;
+   }
+
+   private static Key readKeyHeader(RootBuffer buffer) throws RootFormatException {
+      int size = buffer.readInt();
+      int version = buffer.readShort();
+      int objectLength = buffer.readInt();
+      // fDatime
+      buffer.readInt();
+      int keyLength = buffer.readShort();
+      int cycle = buffer.readShort();
+      long seek;
+      if (version > LARGE_KEY_VERSION) {
+         seek = buffer.readLong();
+         // fSeekPdir
+         buffer.readLong();
+      } else {
+         seek = buffer.readUnsignedInt();
+         buffer.readInt();
+      }
+      String className = buffer.readString();
+      String name = buffer.readString();
+      // fTitle
+      buffer.readString();
+      if (size < 0 || objectLength < 0 || keyLength < 0) {
+         throw new RootFormatException("Invalid key header: " + name);
+      }
+      return new Key(className, name, cycle, seek, size, keyLength, objectLength);
+   }
+
+   private byte[] read(long position, int size) throws IOException {
+      if (size < 0) {
+         throw new RootFormatException("Invalid size: " + size);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(size);
+      while (buffer.hasRemaining()) {
+         if (channel.read(buffer, position + buffer.position()) < 0) {
+            throw new RootFormatException(String.format("Unexpected end of file at %s: %s", position, path));
+         }
+      }
+      return buffer.array();
+   }
+
+   /** Header of a key. */
+   @Getter(AccessLevel.PACKAGE)
+   static final class Key {
+      private final String className;
+      private final String name;
+      private final int cycle;
+      private final long seek;
+      // Header and compressed payload
+      private final int size;
+      private final int keyLength;
+      // Uncompressed payload
+      private final int objectLength;
+
+      private Key(String className, String name, int cycle, long seek, int size, int keyLength, int objectLength) {
+         this.className = className;
+         this.name = name;
+         this.cycle = cycle;
+         this.seek = seek;
+         this.size = size;
+         this.keyLength = keyLength;
+         this.objectLength = objectLength;
+      }
+   }
+}
@@ -0,0 +1,22 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import java.io.IOException;
+
+/**
+ * Marks a ROOT file which cannot be read by the native reader, since it's
+ * malformed or it uses features which are not supported.
+ *
+ * @author fandreuz
+ */
+class RootFormatException extends IOException {
+
+   private static final long serialVersionUID = 0L;
+
+   RootFormatException(String message) {
+      super(message);
+   }
+
+   RootFormatException(String message, Throwable cause) {
+      super(message, cause);
+   }
+}
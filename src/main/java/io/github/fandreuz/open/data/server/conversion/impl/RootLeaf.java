@@ -0,0 +1,139 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Scalar leaf of a branch, i.e. a typed column. Arrays and variable-length
+ * leaves are not supported.
+ * <p>
+ * {@code float} values are widened to {@code double} exactly, thus they may
+ * differ from the shortest decimal printed by text-based converters (e.g.
+ * {@code 0.1f} is decoded as {@code 0.10000000149011612}). Formatting and
+ * parsing each value would slow down the decoding considerably.
+ *
+ * @author fandreuz
+ */
+@Getter(AccessLevel.PACKAGE)
+final class RootLeaf {
+
+   private final String name;
+   private final Type type;
+   private final boolean unsigned;
+
+   private RootLeaf(String name, Type type, boolean unsigned) {
+      this.name = name;
+      this.type = type;
+      this.unsigned = unsigned;
+   }
+
+   /**
+    * Read a leaf, to be used as {@link RootBuffer.ObjectReader}.
+    *
+    * @param className
+    *            class of the leaf (e.g. {@code TLeafF}).
+    * @param buffer
+    *            buffer positioned at the beginning of the leaf.
+    * @return the leaf.
+    * @throws RootFormatException
+    *             if the leaf is not supported.
+    */
+   static RootLeaf read(@NonNull String className, @NonNull RootBuffer buffer) throws RootFormatException {
+      Type type = Type.fromClassName(className);
+      RootBuffer.VersionHeader header = buffer.readVersion();
+      RootBuffer.VersionHeader leafHeader = buffer.readVersion();
+      String name = buffer.readTNamed();
+      int length = buffer.readInt();
+      // fLenType, fOffset, fIsRange
+      buffer.skip(2 * Integer.BYTES + 1);
+      boolean unsigned = buffer.readBoolean();
+      Object leafCount = buffer.readObjectAny((leafCountClassName, leafCountBuffer) -> null);
+      if (length != 1 || leafCount != null) {
+         throw new RootFormatException("Array leaves are not supported: " + name);
+      }
+      buffer.seekEnd(leafHeader);
+      // fMinimum, fMaximum
+      buffer.seekEnd(header);
+      return new RootLeaf(name, type, unsigned);
+   }
+
+   /**
+    * Decode the value of this leaf.
+    *
+    * @param data
+    *            uncompressed content of a basket.
+    * @param position
+    *            position of the value in the basket.
+    * @return the value as {@link Long}, {@link Double} or {@link Boolean}.
+    */
+   Object decode(@NonNull ByteBuffer data, int position) {
+      switch (type) {
+         case INT8 :
+            byte byteValue = data.get(position);
+            return unsigned ? Byte.toUnsignedLong(byteValue) : (long) byteValue;
+         case INT16 :
+            short shortValue = data.getShort(position);
+            return unsigned ? Short.toUnsignedLong(shortValue) : (long) shortValue;
+         case INT32 :
+            int intValue = data.getInt(position);
+            return unsigned ? Integer.toUnsignedLong(intValue) : (long) intValue;
+         case INT64 :
+            long longValue = data.getLong(position);
+            if (unsigned && longValue < 0) {
+               // Does not fit in a signed long
+               return new BigInteger(Long.toUnsignedString(longValue)).doubleValue();
+            }
+            return longValue;
+         case FLOAT :
+            return (double) data.getFloat(position);
+         case DOUBLE :
+            return data.getDouble(position);
+         default :
+            return data.get(position) != 0;
+      }
+   }
+
+   /** Supported types of leaves. */
+   enum Type {
+      INT8(Byte.BYTES), //
+      INT16(Short.BYTES), //
+      INT32(Integer.BYTES), //
+      INT64(Long.BYTES), //
+      FLOAT(Float.BYTES), //
+      DOUBLE(Double.BYTES), //
+      BOOL(1);
+
+      @Getter(AccessLevel.PACKAGE)
+      private final int size;
+
+      Type(int size) {
+         this.size = size;
+      }
+
+      private static Type fromClassName(String className) throws RootFormatException {
+         switch (className) {
+            case "TLeafB" :
+               return INT8;
+            case "TLeafS" :
+               return INT16;
+            case "TLeafI" :
+               return INT32;
+            case "TLeafL" :
+            case "TLeafG" :
+               return INT64;
+            case "TLeafF" :
+               return FLOAT;
+            case "TLeafD" :
+               return DOUBLE;
+            case "TLeafO" :
+               return BOOL;
+            default :
+               throw new RootFormatException("Unsupported leaf class: " + className);
+         }
+      }
+   }
+}
@@ -1,8 +1,11 @@
 package io.github.fandreuz.open.data.server.conversion.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
+import java.time.Duration;
 
 /**
  * Configuration class for {@link ProcessRunner} for ROOT datasets.
@@ -14,10 +17,16 @@ class RootProcessRunnerConfiguration {
 
    public static final String ROOT_PROCESS_RUNNER_BEAN_NAME = "rootProcessRunner";
    private static final String ROOT_BIN_DIRECTORY_ENV_PROPERTY = "root.executables.path";
+   private static final String ROOT_PROCESS_TIMEOUT_MINUTES_PROPERTY = "root.process.timeout.minutes";
+
+   @Inject
+   private MeterRegistry meterRegistry;
 
    @Produces
    @Named(RootProcessRunnerConfiguration.ROOT_PROCESS_RUNNER_BEAN_NAME)
    ProcessRunner getProcessRunner() {
-      return new ProcessRunner(System.getProperty(ROOT_BIN_DIRECTORY_ENV_PROPERTY));
+      Duration timeout = Duration
+            .ofMinutes(Math.max(1, Integer.getInteger(ROOT_PROCESS_TIMEOUT_MINUTES_PROPERTY, 240)));
+      return new ProcessRunner(System.getProperty(ROOT_BIN_DIRECTORY_ENV_PROPERTY), timeout, meterRegistry);
    }
 }
@@ -0,0 +1,156 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementation of {@link DatasetRecordStream} which decodes the baskets of a
+ * flat ROOT tree directly, without external tools. Values are typed.
+ * <p>
+ * Each branch is read one basket at a time, thus the memory needed does not
+ * depend on the size of the tree.
+ *
+ * @author fandreuz
+ */
+@Slf4j
+final class RootRecordStream implements DatasetRecordStream {
+
+   private final RootFile file;
+   private final List<String> columnNames;
+   private final BranchCursor[] cursors;
+   private final long entries;
+   private long entry;
+
+   private RootRecordStream(RootFile file, RootTree tree) throws IOException {
+      this.file = file;
+      this.entries = tree.getEntries();
+
+      List<String> names = new ArrayList<>();
+      Set<String> uniqueNames = new HashSet<>();
+      cursors = new BranchCursor[tree.getBranches().size()];
+      for (int i = 0; i < cursors.length; ++i) {
+         RootBranch branch = tree.getBranches().get(i);
+         if (branch.getEntries() != entries) {
+            throw new RootFormatException("Unexpected number of entries in branch " + branch.getName());
+         }
+         cursors[i] = new BranchCursor(branch, names.size());
+         for (RootLeaf leaf : branch.getLeaves()) {
+            // Leaf lists are flattened
+            String name = branch.getLeaves().size() == 1 ? branch.getName() : leaf.getName();
+            if (!uniqueNames.add(name)) {
+               throw new RootFormatException("Duplicated column: " + name);
+            }
+            names.add(name);
+         }
+         if (entries > 0) {
+            // Fail early if the compression is not supported
+            cursors[i].load(0);
+         }
+      }
+      this.columnNames = List.copyOf(names);
+   }
+
+   /**
+    * Open a tree of a ROOT file.
+    *
+    * @param path
+    *            the ROOT file.
+    * @param treeName
+    *            name of the tree, or {@code null} for the first tree.
+    * @return a stream of the entries of the tree.
+    * @throws RootFormatException
+    *             if the file cannot be read by this implementation.
+    */
+   static RootRecordStream open(@NonNull Path path, @Nullable String treeName) throws IOException {
+      RootFile file = RootFile.open(path);
+      try {
+         RootFile.Key key = file.findTree(treeName);
+         RootTree tree = RootTree.read(key.getClassName(), file.readObject(key));
+         log.info("ROOT tree '{}' has {} entries and {} branches", tree.getName(), tree.getEntries(),
+               tree.getBranches().size());
+         return new RootRecordStream(file, tree);
+      } catch (IOException | RuntimeException exception) {
+         file.close();
+         throw exception;
+      }
+   }
+
+   @Override
+   public List<String> getColumnNames() {
+      return columnNames;
+   }
+
+   @Nullable
+   @Override
+   public Object[] next() throws IOException {
+      if (entry == entries) {
+         return null;
+      }
+      Object[] row = new Object[columnNames.size()];
+      for (BranchCursor cursor : cursors) {
+         cursor.read(entry, row);
+      }
+      ++entry;
+      return row;
+   }
+
+   @Override
+   public void close() throws IOException {
+      file.close();
+   }
+
+   // Position of the stream in the baskets of a branch
+   private final class BranchCursor {
+      private final RootBranch branch;
+      private final int firstColumn;
+      private final int[] leafOffsets;
+      private int basket = -1;
+      private ByteBuffer data;
+      private long basketFirstEntry;
+      private long basketEndEntry;
+
+      private BranchCursor(RootBranch branch, int firstColumn) {
+         this.branch = branch;
+         this.firstColumn = firstColumn;
+         // Leaves are stored one after the other in each entry
+         leafOffsets = new int[branch.getLeaves().size()];
+         for (int i = 1; i < leafOffsets.length; ++i) {
+            leafOffsets[i] = leafOffsets[i - 1] + branch.getLeaves().get(i - 1).getType().getSize();
+         }
+      }
+
+      private void read(long entry, Object[] row) throws IOException {
+         while (entry >= basketEndEntry) {
+            load(basket + 1);
+         }
+         int position = (int) (entry - basketFirstEntry) * branch.getEntrySize();
+         List<RootLeaf> leaves = branch.getLeaves();
+         for (int i = 0; i < leafOffsets.length; ++i) {
+            row[firstColumn + i] = leaves.get(i).decode(data, position + leafOffsets[i]);
+         }
+      }
+
+      private void load(int index) throws IOException {
+         if (index >= branch.getBasketCount()) {
+            throw new RootFormatException("Missing basket in branch " + branch.getName());
+         }
+         basket = index;
+         data = ByteBuffer.wrap(file.readPayload(branch.getBasketSeeks()[index], branch.getBasketSizes()[index]));
+         basketFirstEntry = branch.getBasketFirstEntries()[index];
+         basketEndEntry = branch.getBasketFirstEntries()[index + 1];
+         if ((basketEndEntry - basketFirstEntry) * branch.getEntrySize() > data.capacity()) {
+            throw new RootFormatException("Basket too small in branch " + branch.getName());
+         }
+      }
+   }
+}
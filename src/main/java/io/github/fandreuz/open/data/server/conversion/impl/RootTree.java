@@ -0,0 +1,89 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flat tree, i.e. a table whose columns are the leaves of its branches.
+ *
+ * @author fandreuz
+ */
+@Getter(AccessLevel.PACKAGE)
+final class RootTree {
+
+   private static final String TREE_CLASS = "TTree";
+   private static final int MIN_VERSION = 16;
+   private static final int MAX_VERSION = 20;
+
+   private final String name;
+   private final long entries;
+   private final List<RootBranch> branches;
+
+   private RootTree(String name, long entries, List<RootBranch> branches) {
+      this.name = name;
+      this.entries = entries;
+      this.branches = List.copyOf(branches);
+   }
+
+   /**
+    * Read a tree. Only the members needed to locate the baskets are decoded.
+    *
+    * @param className
+    *            class of the tree ({@code TTree} or a subclass like
+    *            {@code TNtuple}).
+    * @param buffer
+    *            buffer positioned at the beginning of the tree.
+    * @return the tree.
+    * @throws RootFormatException
+    *             if the tree is not supported.
+    */
+   static RootTree read(@NonNull String className, @NonNull RootBuffer buffer) throws RootFormatException {
+      if (!TREE_CLASS.equals(className)) {
+         // Header of the subclass, which extends TTree with trailing members
+         buffer.readVersion();
+      }
+      RootBuffer.VersionHeader header = buffer.readVersion();
+      if (header.version < MIN_VERSION || header.version > MAX_VERSION) {
+         throw new RootFormatException("Unsupported version of TTree: " + header.version);
+      }
+      String name = buffer.readTNamed();
+      // TAttLine, TAttFill, TAttMarker
+      buffer.skipObject();
+      buffer.skipObject();
+      buffer.skipObject();
+      long entries = buffer.readLong();
+
+      // fTotBytes, fZipBytes, fSavedBytes, (fFlushedBytes), fWeight
+      int longCount = header.version >= 18 ? 4 : 3;
+      buffer.skip(longCount * Long.BYTES + Double.BYTES);
+      // fTimerInterval, fScanField, fUpdate, (fDefaultEntryOffsetLen)
+      buffer.skip((header.version >= 17 ? 4 : 3) * Integer.BYTES);
+      int clusterRanges = header.version >= 19 ? buffer.readInt() : 0;
+      // fMaxEntries, fMaxEntryLoop, fMaxVirtualSize, fAutoSave, (fAutoFlush),
+      // fEstimate
+      buffer.skip((header.version >= 17 ? 6 : 5) * Long.BYTES);
+      if (header.version >= 19) {
+         // fClusterRangeEnd, fClusterSize
+         buffer.skip(1 + clusterRanges * Long.BYTES);
+         buffer.skip(1 + clusterRanges * Long.BYTES);
+      }
+      if (header.version >= 20) {
+         // fIOFeatures
+         buffer.skipObject();
+      }
+
+      List<RootBranch> branches = new ArrayList<>();
+      for (Object branch : buffer.readObjArray(RootBranch::read)) {
+         if (!(branch instanceof RootBranch)) {
+            throw new RootFormatException("Invalid branch in tree " + name);
+         }
+         branches.add((RootBranch) branch);
+      }
+      // The remaining members are not needed
+      return new RootTree(name, entries, branches);
+   }
+}
@@ -0,0 +1,18 @@
+package io.github.fandreuz.open.data.server.database;
+
+import java.util.Iterator;
+
+/**
+ * Iterator over the results of a query, which are fetched from the database in
+ * batches as they're consumed. The cursor must be closed.
+ *
+ * @param <T>
+ *            type of the results.
+ * @author fandreuz
+ */
+public interface DatabaseCursor<T> extends Iterator<T>, AutoCloseable {
+
+   /** Release the resources held by the cursor. */
+   @Override
+   void close();
+}
@@ -1,5 +1,11 @@
 package io.github.fandreuz.open.data.server.database;
 
+import io.github.fandreuz.open.data.server.model.dataset.AggregationResult;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetAggregation;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetPage;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetQuery;
+
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -15,17 +21,29 @@ import lombok.NonNull;
  *
  * @param <I>
  *            input type.
+ * @param <S>
+ *            type of the summary of a create operation.
  * @author fandreuz
  */
-public interface MonolithicDatabaseTypedClient<I> {
+public interface MonolithicDatabaseTypedClient<I, S> {
 
    /**
     * Create a new object in the database.
     *
     * @param input
     *            the object to be inserted.
+    * @return a summary of the operation.
     */
-   void create(@NonNull I input);
+   S create(@NonNull I input);
+
+   /**
+    * Delete all the entries of the given entity. Nothing happens if the entity
+    * does not exist.
+    *
+    * @param id
+    *            identifier of the entity.
+    */
+   void delete(@NonNull String id);
 
    /**
     * Get the content of the given column.
@@ -34,18 +52,70 @@ public interface MonolithicDatabaseTypedClient<I> {
     *            identifier of the entity.
     * @param columnName
     *            name of the column to be extracted.
-    * @return the content of the column for the given ID if found.
+    * @return the content of the column for the given ID if found, sorted by key.
+    */
+   SortedMap<String, Object> getColumn(@NonNull String id, @NonNull String columnName);
+
+   /**
+    * Get the entries which satisfy the query. The projection, the cursor and
+    * the limit of the query are applied.
+    *
+    * @param id
+    *            identifier of the entity.
+    * @param query
+    *            query to be matched.
+    * @return the entries satisfying the query.
+    */
+   Set<SortedMap<String, Object>> getEntriesMatching(@NonNull String id, @NonNull DatasetQuery query);
+
+   /**
+    * Open a cursor over the content of the given column, the content is not
+    * loaded in memory at once.
+    *
+    * @param id
+    *            identifier of the entity.
+    * @param columnName
+    *            name of the column to be extracted.
+    * @return a cursor over the content of the column (key -> value), sorted by
+    *         key.
     */
-   Map<String, String> getColumn(@NonNull String id, @NonNull String columnName);
+   DatabaseCursor<Map.Entry<String, Object>> openColumn(@NonNull String id, @NonNull String columnName);
 
    /**
-    * Get the IDS of the entries which satisfy the query.
+    * Open a cursor over the entries which satisfy the query, the entries are not
+    * loaded in memory at once. The projection, the cursor and the limit of the
+    * query are applied.
     *
     * @param id
     *            identifier of the entity.
     * @param query
     *            query to be matched.
-    * @return the IDs satisfying the query.
+    * @return a cursor over the entries satisfying the query.
+    */
+   DatabaseCursor<SortedMap<String, Object>> openEntriesMatching(@NonNull String id, @NonNull DatasetQuery query);
+
+   /**
+    * Get a page of the entries which satisfy the query. Entries are sorted by
+    * ID, the page starts after the cursor of the query and contains at most
+    * {@link DatasetQuery#getLimit()} entries.
+    *
+    * @param id
+    *            identifier of the entity.
+    * @param query
+    *            paginated query to be matched.
+    * @return the page of entries, and the cursor of the next page.
+    */
+   DatasetPage getEntriesPage(@NonNull String id, @NonNull DatasetQuery query);
+
+   /**
+    * Compute an aggregation of the entries of the given entity in the database,
+    * only the results are returned.
+    *
+    * @param id
+    *            identifier of the entity.
+    * @param aggregation
+    *            the aggregation.
+    * @return one result per group, sorted by group.
     */
-   Set<SortedMap<String, String>> getEntriesMatching(@NonNull String id, @NonNull String query);
+   List<AggregationResult> aggregate(@NonNull String id, @NonNull DatasetAggregation aggregation);
 }
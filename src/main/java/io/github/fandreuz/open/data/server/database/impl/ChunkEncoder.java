@@ -0,0 +1,30 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import lombok.NonNull;
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * Turns chunks of rows into the documents which represent them in a storage
+ * layout.
+ * <p>
+ * Implementations are expected to be thread-safe.
+ *
+ * @author fandreuz
+ */
+interface ChunkEncoder {
+
+   /**
+    * Encode the given chunk of rows.
+    *
+    * @param firstRow
+    *            index of the first row of the chunk in the dataset.
+    * @param rows
+    *            values of the rows (textual or typed), sorted as the columns.
+    * @param statistics
+    *            receives the typed values of the rows.
+    * @return documents to be written.
+    */
+   List<Document> encode(long firstRow, @NonNull List<Object[]> rows, @NonNull StatisticsAccumulator statistics);
+}
@@ -9,13 +9,17 @@ import io.github.fandreuz.open.data.server.database.DatabaseNotFoundException;
 import io.github.fandreuz.open.data.server.database.DatabaseTypedClient;
 import io.github.fandreuz.open.data.server.model.collection.CollectionMetadata;
 import io.github.fandreuz.open.data.server.model.collection.CollectionMetadataDO;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -31,11 +35,20 @@ final class CollectionMetadataMongoDatabaseClient
          DatabaseTypedClient<CollectionMetadataDO, CollectionMetadataDO> {
 
    private static final String DATASET_NAME = "dataset-db";
-   private static final String COLLECTION_NAME = "collections-metadata";
+   static final String COLLECTION_NAME = "collections-metadata";
 
    @Inject
    private MongoClientSetup databaseClientSetup;
 
+   @Inject
+   private MongoTransactionService transactionService;
+
+   private final IdRegistry<Boolean> ids = new IdRegistry<>("collection metadata", this::loadIds);
+
+   void onStart(@Observes StartupEvent event) {
+      ids.preload();
+   }
+
    @Override
    public void create(@NonNull CollectionMetadataDO metadata) {
       log.info("Storing collection metadata '{}' in the DB ...", metadata);
@@ -47,11 +60,17 @@ final class CollectionMetadataMongoDatabaseClient
       var collection = getMetadataCollection();
       var result = collection.replaceOne(Filters.eq("_id", metadata.getId()), metadata, options);
 
+      // A failed import must not leave the ID marked as known
+      transactionService.afterCommit(() -> ids.put(metadata.getId(), Boolean.TRUE));
       log.info("Stored collection metadata '{}' in the DB (old was {})", metadata, result);
    }
 
    @Override
    public CollectionMetadataDO getEntry(@NonNull String id) {
+      if (!ids.contains(id)) {
+         String msg = String.format("Metadata not found for ID=%s", id);
+         throw new DatabaseNotFoundException(msg);
+      }
       return getEntriesMatching(String.format("{_id: \"%s\"}", id)).stream() //
             .findFirst() //
             .orElseThrow(() -> {
@@ -66,10 +85,7 @@ final class CollectionMetadataMongoDatabaseClient
       var collection = getMetadataCollection();
       log.info("Querying collection metadata database, query: '{}'...", query);
 
-      if (collection.find(Filters.empty()) //
-            .projection(Projections.include()) //
-            .into(new HashSet<>()).isEmpty() //
-      ) {
+      if (ids.isEmpty()) {
          throw new DatabaseNotFoundException("The database is empty");
       }
 
@@ -85,6 +101,18 @@ final class CollectionMetadataMongoDatabaseClient
       return collection.find(parsedQuery).into(new HashSet<>());
    }
 
+   private Map<String, Boolean> loadIds() {
+      Map<String, Boolean> loaded = new HashMap<>();
+      for (Document document : databaseClientSetup.getMongoClient() //
+            .getDatabase(DATASET_NAME) //
+            .getCollection(COLLECTION_NAME) //
+            .find() //
+            .projection(Projections.include("_id"))) {
+         loaded.put(String.valueOf(document.get("_id")), Boolean.TRUE);
+      }
+      return loaded;
+   }
+
    private MongoCollection<CollectionMetadataDO> getMetadataCollection() {
       return databaseClientSetup.getMongoClient() //
             .getDatabase(DATASET_NAME) //
@@ -0,0 +1,199 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.ColumnType;
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementation of {@link ChunkEncoder} for {@link StorageLayout#COLUMNAR}.
+ * <p>
+ * A chunk of rows is turned into one document per column. Numeric and boolean
+ * values are packed in a little-endian binary array ({@code 8} bytes per
+ * number, {@code 1} byte per boolean), string values are stored as an array.
+ * Missing values are tracked by a bitmap, which is omitted when the chunk has
+ * no missing value.
+ * <p>
+ * The type of a chunk is the widest type of its values, thus chunks of the same
+ * column may have different types if the column was widened during the import.
+ * Such chunks are converted with {@link #convert(Document, ColumnType)} once the
+ * import is over.
+ *
+ * @author fandreuz
+ */
+final class ColumnarChunkEncoder implements ChunkEncoder {
+
+   static final String COLUMN_FIELD = "column";
+   static final String FIRST_ROW_FIELD = "firstRow";
+   static final String COUNT_FIELD = "count";
+   static final String TYPE_FIELD = "type";
+   static final String VALUES_FIELD = "values";
+   static final String NULLS_FIELD = "nulls";
+   private static final String ID_FIELD = "_id";
+
+   private final List<String> columnNames;
+   private final InferredSchema schema;
+
+   ColumnarChunkEncoder(@NonNull List<String> columnNames, @NonNull InferredSchema schema) {
+      this.columnNames = List.copyOf(columnNames);
+      this.schema = schema;
+   }
+
+   @Override
+   public List<Document> encode(long firstRow, @NonNull List<Object[]> rows,
+         @NonNull StatisticsAccumulator statistics) {
+      List<Document> documents = new ArrayList<>(columnNames.size());
+      Object[] values = new Object[rows.size()];
+      for (int column = 0; column < columnNames.size(); ++column) {
+         ColumnType type = null;
+         for (int i = 0; i < values.length; ++i) {
+            values[i] = schema.convert(column, rows.get(i)[column]);
+            statistics.observe(column, values[i]);
+            type = widen(type, values[i]);
+         }
+
+         Document document = new Document() //
+               .append(COLUMN_FIELD, columnNames.get(column)) //
+               .append(FIRST_ROW_FIELD, firstRow) //
+               .append(COUNT_FIELD, values.length);
+         encodeValues(document, type == null ? ColumnType.STRING : type, values);
+         documents.add(document);
+      }
+      return documents;
+   }
+
+   /**
+    * Decode the values of a chunk document.
+    *
+    * @param document
+    *            a chunk document written by this encoder.
+    * @param column
+    *            output map, values are keyed by the index of their row.
+    */
+   static void decode(@NonNull Document document, @NonNull Map<String, Object> column) {
+      long firstRow = ((Number) document.get(FIRST_ROW_FIELD)).longValue();
+      int count = document.getInteger(COUNT_FIELD);
+      ColumnType type = ColumnType.valueOf(document.getString(TYPE_FIELD));
+      Binary nullsBinary = document.get(NULLS_FIELD, Binary.class);
+      BitSet nulls = nullsBinary == null ? new BitSet(0) : BitSet.valueOf(nullsBinary.getData());
+
+      if (type == ColumnType.STRING) {
+         List<String> values = document.getList(VALUES_FIELD, String.class);
+         for (int i = 0; i < count; ++i) {
+            column.put(String.valueOf(firstRow + i), values.get(i));
+         }
+         return;
+      }
+
+      ByteBuffer buffer = ByteBuffer.wrap(document.get(VALUES_FIELD, Binary.class).getData())
+            .order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = 0; i < count; ++i) {
+         Object value;
+         switch (type) {
+            case INT64 :
+               value = buffer.getLong();
+               break;
+            case DOUBLE :
+               value = buffer.getDouble();
+               break;
+            default :
+               value = buffer.get() != 0;
+               break;
+         }
+         column.put(String.valueOf(firstRow + i), nulls.get(i) ? null : value);
+      }
+   }
+
+   /**
+    * Convert the values of a chunk document to a wider type.
+    *
+    * @param document
+    *            a chunk document written by this encoder.
+    * @param type
+    *            the wider type.
+    * @return the converted chunk, with the same ID.
+    */
+   static Document convert(@NonNull Document document, @NonNull ColumnType type) {
+      Map<String, Object> decoded = new LinkedHashMap<>();
+      decode(document, decoded);
+      Object[] values = new Object[decoded.size()];
+      int index = 0;
+      for (Object value : decoded.values()) {
+         values[index++] = value == null ? null : InferredSchema.coerce(type, value);
+      }
+
+      Document converted = new Document() //
+            .append(ID_FIELD, document.get(ID_FIELD)) //
+            .append(COLUMN_FIELD, document.get(COLUMN_FIELD)) //
+            .append(FIRST_ROW_FIELD, document.get(FIRST_ROW_FIELD)) //
+            .append(COUNT_FIELD, document.get(COUNT_FIELD));
+      encodeValues(converted, type, values);
+      return converted;
+   }
+
+   private static void encodeValues(Document document, ColumnType type, Object[] values) {
+      document.append(TYPE_FIELD, type.name());
+      if (type == ColumnType.STRING) {
+         List<String> strings = new ArrayList<>(values.length);
+         for (Object value : values) {
+            strings.add(value == null ? null : value.toString());
+         }
+         document.append(VALUES_FIELD, strings);
+         return;
+      }
+
+      int valueSize = type == ColumnType.BOOL ? 1 : Long.BYTES;
+      ByteBuffer buffer = ByteBuffer.allocate(values.length * valueSize).order(ByteOrder.LITTLE_ENDIAN);
+      BitSet nulls = new BitSet(values.length);
+      for (int i = 0; i < values.length; ++i) {
+         Object value = values[i];
+         if (value == null) {
+            nulls.set(i);
+         }
+         switch (type) {
+            case INT64 :
+               buffer.putLong(value == null ? 0 : ((Number) value).longValue());
+               break;
+            case DOUBLE :
+               // Values converted before the column was widened are still integers
+               buffer.putDouble(value == null ? 0 : ((Number) value).doubleValue());
+               break;
+            default :
+               buffer.put((byte) (Boolean.TRUE.equals(value) ? 1 : 0));
+               break;
+         }
+      }
+      document.append(VALUES_FIELD, new Binary(buffer.array()));
+      if (!nulls.isEmpty()) {
+         document.append(NULLS_FIELD, new Binary(Arrays.copyOf(nulls.toByteArray(), (values.length + 7) / 8)));
+      }
+   }
+
+   private static ColumnType widen(@Nullable ColumnType type, @Nullable Object value) {
+      if (value == null) {
+         return type;
+      }
+      ColumnType valueType;
+      if (value instanceof Long) {
+         valueType = ColumnType.INT64;
+      } else if (value instanceof Double) {
+         valueType = ColumnType.DOUBLE;
+      } else if (value instanceof Boolean) {
+         valueType = ColumnType.BOOL;
+      } else {
+         valueType = ColumnType.STRING;
+      }
+      return type == null ? valueType : type.widen(valueType);
+   }
+}
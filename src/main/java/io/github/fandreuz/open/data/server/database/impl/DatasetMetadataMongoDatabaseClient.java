@@ -10,10 +10,14 @@ import io.github.fandreuz.open.data.server.database.DatabaseException;
 import io.github.fandreuz.open.data.server.database.DatabaseNotFoundException;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadataDO;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -30,11 +34,20 @@ import org.bson.Document;
 final class DatasetMetadataMongoDatabaseClient implements DatabaseTypedClient<DatasetMetadataDO, DatasetMetadataDO> {
 
    private static final String DATASET_NAME = "dataset-db";
-   private static final String COLLECTION_NAME = "datasets-metadata";
+   static final String COLLECTION_NAME = "datasets-metadata";
 
    @Inject
    private MongoClientSetup databaseClientSetup;
 
+   @Inject
+   private MongoTransactionService transactionService;
+
+   private final IdRegistry<Boolean> ids = new IdRegistry<>("dataset metadata", this::loadIds);
+
+   void onStart(@Observes StartupEvent event) {
+      ids.preload();
+   }
+
    @Override
    public void create(@NonNull DatasetMetadataDO metadata) {
       log.info("Storing dataset metadata '{}' in the DB ...", metadata);
@@ -46,17 +59,24 @@ final class DatasetMetadataMongoDatabaseClient implements DatabaseTypedClient<Da
          throw new DatabaseException(msg);
       }
 
+      // The insert is not part of the session, it's undone if the import fails
+      transactionService.afterCompletion(() -> ids.put(metadata.getDatasetId(), Boolean.TRUE),
+            () -> collection.deleteOne(Filters.eq("_id", result.getInsertedId())));
       log.info("Stored dataset metadata '{}' in the DB", metadata);
    }
 
    @Override
    public DatasetMetadataDO getEntry(@NonNull String id) {
-      return getEntriesMatching(String.format("{ _id: \"%s\"}", id)).stream() //
-            .findFirst() //
-            .orElseThrow(() -> {
-               String msg = String.format("Metadata not found for ID=%s", id);
-               return new DatabaseNotFoundException(msg);
-            });
+      if (!ids.contains(id)) {
+         String msg = String.format("Metadata not found for ID=%s", id);
+         throw new DatabaseNotFoundException(msg);
+      }
+      DatasetMetadataDO metadata = getMetadataCollection().find(Filters.eq("datasetId", id)).first();
+      if (metadata == null) {
+         String msg = String.format("Metadata not found for ID=%s", id);
+         throw new DatabaseNotFoundException(msg);
+      }
+      return metadata;
    }
 
    // TODO Unify with CollectionMetadata code
@@ -65,10 +85,7 @@ final class DatasetMetadataMongoDatabaseClient implements DatabaseTypedClient<Da
       var collection = getMetadataCollection();
       log.info("Querying dataset metadata database, query: '{}'...", query);
 
-      if (collection.find(Filters.empty()) //
-            .projection(Projections.include()) //
-            .into(new HashSet<>()).isEmpty() //
-      ) {
+      if (ids.isEmpty()) {
          throw new DatabaseNotFoundException("The database is empty");
       }
 
@@ -84,6 +101,18 @@ final class DatasetMetadataMongoDatabaseClient implements DatabaseTypedClient<Da
       return collection.find(parsedQuery).into(new HashSet<>());
    }
 
+   private Map<String, Boolean> loadIds() {
+      Map<String, Boolean> loaded = new HashMap<>();
+      for (Document document : databaseClientSetup.getMongoClient() //
+            .getDatabase(DATASET_NAME) //
+            .getCollection(COLLECTION_NAME) //
+            .find() //
+            .projection(Projections.include("datasetId"))) {
+         loaded.put(String.valueOf(document.get("datasetId")), Boolean.TRUE);
+      }
+      return loaded;
+   }
+
    private MongoCollection<DatasetMetadataDO> getMetadataCollection() {
       return databaseClientSetup.getMongoClient() //
             .getDatabase(DATASET_NAME) //
@@ -1,30 +1,68 @@
 package io.github.fandreuz.open.data.server.database.impl;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BsonField;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import io.github.fandreuz.open.data.server.database.DatabaseBadQueryException;
+import io.github.fandreuz.open.data.server.database.DatabaseCursor;
 import io.github.fandreuz.open.data.server.database.DatabaseException;
 import io.github.fandreuz.open.data.server.database.DatabaseNotFoundException;
 import io.github.fandreuz.open.data.server.database.DatabaseTypedClient;
 import io.github.fandreuz.open.data.server.database.MonolithicDatabaseTypedClient;
+import io.github.fandreuz.open.data.server.model.dataset.Aggregation;
+import io.github.fandreuz.open.data.server.model.dataset.AggregationFunction;
+import io.github.fandreuz.open.data.server.model.dataset.AggregationResult;
+import io.github.fandreuz.open.data.server.model.dataset.ColumnType;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetAggregation;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetCoordinates;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetPage;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetQuery;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
+import io.github.fandreuz.open.data.server.model.dataset.IngestionSummary;
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
+import org.bson.BsonType;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * MongoDB implementation of {@link DatabaseTypedClient} for dataset objects.
@@ -33,102 +71,486 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Singleton
-final class DatasetMongoDatabaseClient implements MonolithicDatabaseTypedClient<DatasetCoordinates> {
+final class DatasetMongoDatabaseClient implements MonolithicDatabaseTypedClient<DatasetCoordinates, IngestionSummary> {
 
    private static final String DATASET_NAME = "dataset-db";
-   private static final CSVFormat csvFormat = CSVFormat.Builder.create().setHeader().build();
+   // Datasets stored with the columnar layout, one collection per dataset
+   private static final String COLUMNAR_DATASET_NAME = "dataset-columnar-db";
+   // Stored next to the datasets
+   private static final Set<String> METADATA_COLLECTION_NAMES = Set.of(
+         DatasetMetadataMongoDatabaseClient.COLLECTION_NAME, CollectionMetadataMongoDatabaseClient.COLLECTION_NAME);
+   private static final String ID_FIELD = "_id";
+   private static final String GROUP_FIELD_PREFIX = "g";
+   private static final String RESULT_FIELD_PREFIX = "r";
+   private static final Comparator<String> ROW_INDEX_COMPARATOR = Comparator.comparingLong(Long::parseLong);
 
    @Inject
    private MongoClientSetup databaseClientSetup;
 
+   @Inject
+   private IngestionConfiguration ingestionConfiguration;
+
+   private final ExecutorService writerExecutor = Executors.newCachedThreadPool();
+
+   // Layout of the datasets stored in the database
+   private final IdRegistry<StorageLayout> datasets = new IdRegistry<>("datasets", this::loadDatasets);
+
+   void onStart(@Observes StartupEvent event) {
+      datasets.preload();
+   }
+
    @Override
-   public void create(@NonNull DatasetCoordinates datasetCoordinates) {
+   public IngestionSummary create(@NonNull DatasetCoordinates datasetCoordinates) {
       log.info("Storing dataset '{}' in the DB ...", datasetCoordinates);
 
-      MongoCollection<Document> collection = getDatasetCollection(datasetCoordinates.getId());
+      StorageLayout storageLayout = datasetCoordinates.getStorageLayout();
+      MongoCollection<Document> collection = storageLayout == StorageLayout.COLUMNAR
+            ? getColumnarDatasetCollection(datasetCoordinates.getId())
+            : getDatasetCollection(datasetCoordinates.getId());
       log.info("DB Collection: {}", collection.getNamespace());
 
-      try (BufferedReader reader = Files.newBufferedReader(datasetCoordinates.getLocalFileLocation());
-            CSVParser parser = csvFormat.parse(reader)) {
-         var iterator = parser.iterator();
-         if (!iterator.hasNext()) {
+      long start = System.nanoTime();
+      long writtenRows;
+      StatisticsAccumulator statistics;
+      List<String> columnNames;
+      InferredSchema schema;
+      try {
+         DatasetRecordStream records = datasetCoordinates.getRecords();
+         columnNames = records.getColumnNames();
+
+         // Infer column types from the first rows
+         schema = new InferredSchema(columnNames);
+         List<Object[]> sample = new ArrayList<>();
+         Object[] row;
+         while (sample.size() < ingestionConfiguration.getSchemaSampleSize() && (row = records.next()) != null) {
+            schema.observe(row);
+            sample.add(row);
+         }
+         if (sample.isEmpty()) {
             throw new IllegalArgumentException("The dataset is empty");
          }
+         log.info("Inferred column types from {} rows: {}", sample.size(), schema.getColumnTypes());
 
-         var headers = parser.getHeaderMap();
-         while (iterator.hasNext()) {
-            var record = iterator.next();
-            Document document = new Document();
-            for (var headerEntry : headers.entrySet()) {
-               document.append(headerEntry.getKey(), record.get(headerEntry.getValue()));
+         IngestionPipeline pipeline;
+         if (storageLayout == StorageLayout.COLUMNAR) {
+            collection.createIndex(Indexes.ascending(ColumnarChunkEncoder.COLUMN_FIELD,
+                  ColumnarChunkEncoder.FIRST_ROW_FIELD));
+            pipeline = new IngestionPipeline(collection, columnNames.size(),
+                  new ColumnarChunkEncoder(columnNames, schema), ingestionConfiguration.getColumnarChunkSize(),
+                  ingestionConfiguration.getColumnarChunkMaxBytes(), datasetCoordinates.getIngestionProgressListener(),
+                  ingestionConfiguration, writerExecutor);
+         } else {
+            pipeline = new IngestionPipeline(collection, columnNames.size(),
+                  new RowChunkEncoder(columnNames, schema), ingestionConfiguration.getBatchSize(), Long.MAX_VALUE,
+                  datasetCoordinates.getIngestionProgressListener(), ingestionConfiguration, writerExecutor);
+         }
+         try {
+            for (Object[] sampleRow : sample) {
+               pipeline.submit(sampleRow);
             }
-            collection.insertOne(document);
+            sample = null;
+            while ((row = records.next()) != null) {
+               pipeline.submit(row);
+            }
+            writtenRows = pipeline.finish();
+            statistics = pipeline.getStatistics();
+         } catch (IOException | RuntimeException exception) {
+            pipeline.abort();
+            throw exception;
          }
-      } catch (IOException exception) {
-         // Delete all entries written so far
+
+         // Values written before their column was widened have the old type
+         try {
+            convertWidenedColumns(collection, storageLayout, schema.getWidenedColumns());
+         } catch (MongoException exception) {
+            throw new DatabaseException("An error occurred while converting the widened columns", exception);
+         }
+      } catch (IOException | DatabaseException exception) {
+         deleteWrittenEntries(collection);
+         throw new DatabaseException("An error occurred while transferring records to the DB", exception);
+      } catch (RuntimeException exception) {
+         // e.g. a malformed record, or a failure of the converter
+         deleteWrittenEntries(collection);
+         throw exception;
+      }
+
+      double elapsedSeconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+      log.info("Stored dataset '{}' in the database ({} rows in {} s, {} rows/s)", datasetCoordinates,
+            writtenRows, String.format("%.3f", elapsedSeconds),
+            String.format("%.1f", writtenRows / elapsedSeconds));
+      // Same rule as loadDatasets, collections without documents are not datasets
+      if (writtenRows > 0) {
+         datasets.put(datasetCoordinates.getId(), storageLayout);
+      }
+      Map<String, ColumnType> columnTypes = schema.getColumnTypes();
+      return new IngestionSummary(writtenRows, columnNames, columnTypes, statistics.toColumnStatistics(columnTypes),
+            storageLayout);
+   }
+
+   // Delete all entries written so far. The driver fails on interrupted threads,
+   // the interrupt is restored after the cleanup
+   private static void deleteWrittenEntries(MongoCollection<Document> collection) {
+      boolean interrupted = Thread.interrupted();
+      try {
          var deleteResult = collection.deleteMany(Filters.empty());
          log.warn("Cleaned {} entries", deleteResult.getDeletedCount());
-         throw new DatabaseException("An error occurred while transferring CSV records to the DB", exception);
+      } finally {
+         if (interrupted) {
+            Thread.currentThread().interrupt();
+         }
       }
+   }
 
-      log.info("Stored dataset '{}' in the database", datasetCoordinates);
+   @Override
+   public void delete(@NonNull String id) {
+      log.info("Deleting dataset with ID={} ...", id);
+      datasets.remove(id);
+      getDatasetCollection(id).drop();
+      getColumnarDatasetCollection(id).drop();
+   }
+
+   @Override
+   public SortedMap<String, Object> getColumn(@NonNull String id, @NonNull String columnName) {
+      // Row indexes of columnar datasets are sorted numerically
+      SortedMap<String, Object> column = findLayout(id) == StorageLayout.COLUMNAR
+            ? new TreeMap<>(ROW_INDEX_COMPARATOR)
+            : new TreeMap<>();
+      try (DatabaseCursor<Map.Entry<String, Object>> cursor = openColumn(id, columnName)) {
+         while (cursor.hasNext()) {
+            Map.Entry<String, Object> entry = cursor.next();
+            column.put(entry.getKey(), entry.getValue());
+         }
+      }
+      return column;
+   }
+
+   @Override
+   public Set<SortedMap<String, Object>> getEntriesMatching(@NonNull String id, @NonNull DatasetQuery query) {
+      Set<SortedMap<String, Object>> entries = new HashSet<>();
+      try (DatabaseCursor<SortedMap<String, Object>> cursor = openEntriesMatching(id, query)) {
+         cursor.forEachRemaining(entries::add);
+      }
+      return entries;
    }
 
    @Override
-   public SortedMap<String, String> getColumn(@NonNull String id, @NonNull String columnName) {
+   public DatabaseCursor<Map.Entry<String, Object>> openColumn(@NonNull String id, @NonNull String columnName) {
+      if (findLayout(id) == StorageLayout.COLUMNAR) {
+         return openColumnarColumn(id, columnName);
+      }
+
       var collection = getDatasetCollection(id);
       log.info("Querying dataset with ID={}, column: '{}' ...", id, columnName);
 
+      // The order of ObjectIds matches the order of their hex representation
       var projection = Projections.fields(Projections.include(columnName));
-      var entries = collection.find(Filters.empty()) //
+      return new MongoDatabaseCursor<>(collection.find(Filters.empty()) //
             .projection(projection) //
-            .into(new HashSet<>());
-      if (entries.isEmpty()) {
-         String msg = String.format("Dataset with ID=%s not found", id);
-         throw new DatabaseNotFoundException(msg);
-      }
+            .sort(Sorts.ascending(ID_FIELD)) //
+            .iterator(), //
+            document -> Collections.singletonList(toColumnEntry(document, columnName)).iterator());
+   }
 
-      return entries.stream() //
-            .collect(Collectors.toMap( //
-                  document -> document.getObjectId("_id").toString(), //
-                  document -> document.get(columnName, String.class), //
-                  (value1, value2) -> { //
-                     throw new RuntimeException(
-                           String.format("Duplicate key for values %s and %s", value1, value2));
-                  }, //
-                  TreeMap::new) //
-            );
+   @Override
+   public DatabaseCursor<SortedMap<String, Object>> openEntriesMatching(@NonNull String id,
+         @NonNull DatasetQuery query) {
+      return new MongoDatabaseCursor<>(find(id, query, query.getLimit()).iterator(),
+            document -> Collections.singletonList(toEntry(document)).iterator());
    }
 
    @Override
-   public Set<SortedMap<String, String>> getEntriesMatching(@NonNull String id, @NonNull String query) {
+   public DatasetPage getEntriesPage(@NonNull String id, @NonNull DatasetQuery query) {
+      if (!query.isPaginated()) {
+         throw new IllegalArgumentException("The query is not paginated: " + query);
+      }
+
+      // One more entry is read to find out whether this is the last page
+      List<SortedMap<String, Object>> entries = new ArrayList<>(query.getLimit());
+      ObjectId lastId = null;
+      boolean hasNextPage = false;
+      try (MongoCursor<Document> cursor = find(id, query, query.getLimit() + 1).iterator()) {
+         while (cursor.hasNext()) {
+            Document document = cursor.next();
+            if (entries.size() == query.getLimit()) {
+               hasNextPage = true;
+               break;
+            }
+            lastId = document.getObjectId(ID_FIELD);
+            entries.add(toEntry(document));
+         }
+      }
+      return new DatasetPage(entries, hasNextPage ? encodeCursor(lastId) : null);
+   }
+
+   // The limit is not read from the query, 0 if not bounded
+   private FindIterable<Document> find(String id, DatasetQuery query, int limit) {
       var collection = getDatasetCollection(id);
       log.info("Querying dataset with ID={}, query: '{}'...", id, query);
 
-      if (collection.find(Filters.empty()) //
-            .projection(Projections.include()) //
-            .into(new HashSet<>()).isEmpty() //
-      ) {
-         String msg = String.format("Dataset with ID=%s not found", id);
-         throw new DatabaseNotFoundException(msg);
+      if (findLayout(id) == StorageLayout.COLUMNAR) {
+         String msg = String.format("Queries are not supported on dataset with ID=%s (columnar layout)", id);
+         throw new DatabaseBadQueryException(msg);
       }
 
-      Document parsedQuery;
+      Bson filter = parseFilter(query.getFilter());
+      if (query.getCursor() != null) {
+         filter = Filters.and(filter, Filters.gt(ID_FIELD, decodeCursor(query.getCursor())));
+      }
+
+      FindIterable<Document> documents = collection.find(filter);
+      if (query.getFields() != null && !query.getFields().isEmpty()) {
+         // The ID is always included
+         documents = documents.projection(Projections.include(query.getFields()));
+      }
+      if (query.isPaginated() || query.getCursor() != null) {
+         // Served by the default index on the ID
+         documents = documents.sort(Sorts.ascending(ID_FIELD));
+      }
+      return documents.limit(limit);
+   }
+
+   @Override
+   public List<AggregationResult> aggregate(@NonNull String id, @NonNull DatasetAggregation aggregation) {
+      log.info("Aggregating dataset with ID={}, aggregation: '{}'...", id, aggregation);
+      if (findLayout(id) == StorageLayout.COLUMNAR) {
+         String msg = String.format("Aggregations are not supported on dataset with ID=%s (columnar layout)", id);
+         throw new DatabaseBadQueryException(msg);
+      }
+
+      // Groups and results are stored with positional names, column names may
+      // contain characters which are not allowed in field names
+      List<String> groupBy = aggregation.getGroupBy();
+      Document groupId = new Document();
+      for (int i = 0; i < groupBy.size(); ++i) {
+         groupId.append(GROUP_FIELD_PREFIX + i, toFieldPath(groupBy.get(i)));
+      }
+      List<Aggregation> aggregations = aggregation.getAggregations();
+      List<BsonField> accumulators = new ArrayList<>(aggregations.size());
+      for (int i = 0; i < aggregations.size(); ++i) {
+         accumulators.add(toAccumulator(RESULT_FIELD_PREFIX + i, aggregations.get(i)));
+      }
+
+      List<Bson> pipeline = List.of( //
+            Aggregates.match(parseFilter(aggregation.getFilter())), //
+            Aggregates.group(groupBy.isEmpty() ? null : groupId, accumulators), //
+            Aggregates.sort(Sorts.ascending(ID_FIELD)), //
+            // One more group to detect whether the limit was exceeded
+            Aggregates.limit(aggregation.getMaxGroups() + 1));
+      List<AggregationResult> results = new ArrayList<>();
+      try (MongoCursor<Document> cursor = getDatasetCollection(id).aggregate(pipeline) //
+            .allowDiskUse(true) //
+            .iterator()) {
+         while (cursor.hasNext()) {
+            if (results.size() == aggregation.getMaxGroups()) {
+               String msg = String.format("The aggregation of dataset with ID=%s has more than %d groups", id,
+                     aggregation.getMaxGroups());
+               throw new DatabaseBadQueryException(msg);
+            }
+            results.add(toAggregationResult(cursor.next(), groupBy, aggregations));
+         }
+      }
+      if (results.isEmpty() && groupBy.isEmpty()) {
+         // No entry matched the filter
+         results.add(toAggregationResult(new Document(), groupBy, aggregations));
+      }
+      log.info("Aggregated dataset with ID={} ({} groups)", id, results.size());
+      return results;
+   }
+
+   private static BsonField toAccumulator(String name, Aggregation aggregation) {
+      switch (aggregation.getFunction()) {
+         case COUNT :
+            if (aggregation.getColumn() == null) {
+               return Accumulators.sum(name, 1);
+            }
+            // Null and missing values are the smallest values
+            return Accumulators.sum(name, new Document("$cond",
+                  List.of(new Document("$gt", Arrays.asList(toFieldPath(aggregation.getColumn()), null)), 1, 0)));
+         case SUM :
+            return Accumulators.sum(name, toFieldPath(aggregation.getColumn()));
+         case MEAN :
+            return Accumulators.avg(name, toFieldPath(aggregation.getColumn()));
+         case MIN :
+            return Accumulators.min(name, toFieldPath(aggregation.getColumn()));
+         case MAX :
+            return Accumulators.max(name, toFieldPath(aggregation.getColumn()));
+         default :
+            throw new IllegalArgumentException("Unexpected aggregation function: " + aggregation.getFunction());
+      }
+   }
+
+   private static String toFieldPath(String column) {
+      if (column.isEmpty() || column.startsWith("$")) {
+         throw new DatabaseBadQueryException(String.format("Invalid column name: '%s'", column));
+      }
+      return "$" + column;
+   }
+
+   private static AggregationResult toAggregationResult(Document document, List<String> groupBy,
+         List<Aggregation> aggregations) {
+      SortedMap<String, Object> group = new TreeMap<>();
+      Document groupId = document.get(ID_FIELD, Document.class);
+      for (int i = 0; i < groupBy.size(); ++i) {
+         group.put(groupBy.get(i), groupId.get(GROUP_FIELD_PREFIX + i));
+      }
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (int i = 0; i < aggregations.size(); ++i) {
+         Aggregation aggregation = aggregations.get(i);
+         Object value = document.get(RESULT_FIELD_PREFIX + i);
+         if (value == null && aggregation.getFunction() == AggregationFunction.COUNT) {
+            value = 0;
+         }
+         values.put(aggregation.getLabel(), value);
+      }
+      return new AggregationResult(group, values);
+   }
+
+   private static Bson parseFilter(String filter) {
       try {
          // See https://www.mongodb.com/docs/manual/tutorial/query-documents/ for valid
          // queries
-         parsedQuery = Document.parse(query);
+         return Document.parse(filter);
       } catch (Exception exception) {
-         String msg = String.format("An error occurred while parsing the query: '%s'", query);
+         String msg = String.format("An error occurred while parsing the query: '%s'", filter);
          throw new DatabaseBadQueryException(msg, exception);
       }
-      return collection.find(parsedQuery) //
-            .map(document -> {
-               SortedMap<String, String> map = new TreeMap<>();
-               document.forEach((key, value) -> map.put(key, value.toString()));
-               return map;
-            }) //
-            .into(new HashSet<>());
+   }
+
+   // The cursor is the URL-safe Base64 encoding of the last ID of the page
+   private static String encodeCursor(ObjectId lastId) {
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.toByteArray());
+   }
+
+   private static ObjectId decodeCursor(String cursor) {
+      try {
+         return new ObjectId(Base64.getUrlDecoder().decode(cursor));
+      } catch (IllegalArgumentException exception) {
+         throw new DatabaseBadQueryException(String.format("Invalid cursor: '%s'", cursor), exception);
+      }
+   }
+
+   private DatabaseCursor<Map.Entry<String, Object>> openColumnarColumn(@NonNull String id,
+         @NonNull String columnName) {
+      log.info("Querying columnar dataset with ID={}, column: '{}' ...", id, columnName);
+
+      // Only the chunk being read is decoded
+      DatabaseCursor<Map.Entry<String, Object>> cursor = new MongoDatabaseCursor<>(getColumnarDatasetCollection(id) //
+            .find(Filters.eq(ColumnarChunkEncoder.COLUMN_FIELD, columnName)) //
+            .sort(Sorts.ascending(ColumnarChunkEncoder.FIRST_ROW_FIELD)) //
+            .iterator(), //
+            chunk -> {
+               Map<String, Object> values = new LinkedHashMap<>();
+               ColumnarChunkEncoder.decode(chunk, values);
+               return values.entrySet().iterator();
+            });
+      if (!cursor.hasNext()) {
+         cursor.close();
+         String msg = String.format("Column '%s' not found in dataset with ID=%s", columnName, id);
+         throw new DatabaseNotFoundException(msg);
+      }
+      return cursor;
+   }
+
+   private void convertWidenedColumns(MongoCollection<Document> collection, StorageLayout storageLayout,
+         Map<String, ColumnType> widenedColumns) {
+      for (Map.Entry<String, ColumnType> widenedColumn : widenedColumns.entrySet()) {
+         String columnName = widenedColumn.getKey();
+         ColumnType type = widenedColumn.getValue();
+         log.info("Converting the values of column '{}' to {}", columnName, type);
+
+         long converted = 0;
+         List<WriteModel<Document>> updates = new ArrayList<>();
+         if (storageLayout == StorageLayout.COLUMNAR) {
+            for (Document chunk : collection.find(Filters.and(Filters.eq(ColumnarChunkEncoder.COLUMN_FIELD, columnName),
+                  Filters.ne(ColumnarChunkEncoder.TYPE_FIELD, type.name())))) {
+               updates.add(new ReplaceOneModel<>(Filters.eq(ID_FIELD, chunk.get(ID_FIELD)),
+                     ColumnarChunkEncoder.convert(chunk, type)));
+               converted += flushUpdates(collection, updates, false);
+            }
+         } else {
+            // Null and missing values are not converted
+            Bson mismatched = Filters.and(Filters.ne(columnName, null),
+                  Filters.not(Filters.type(columnName, toBsonType(type))));
+            for (Document document : collection.find(mismatched).projection(Projections.include(columnName))) {
+               updates.add(new UpdateOneModel<>(Filters.eq(ID_FIELD, document.get(ID_FIELD)),
+                     Updates.set(columnName, InferredSchema.coerce(type, document.get(columnName)))));
+               converted += flushUpdates(collection, updates, false);
+            }
+         }
+         converted += flushUpdates(collection, updates, true);
+         log.info("Converted {} documents of column '{}' to {}", converted, columnName, type);
+      }
+   }
+
+   private int flushUpdates(MongoCollection<Document> collection, List<WriteModel<Document>> updates,
+         boolean force) {
+      if (updates.isEmpty() || (!force && updates.size() < ingestionConfiguration.getBatchSize())) {
+         return 0;
+      }
+      int count = updates.size();
+      collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+      updates.clear();
+      return count;
+   }
+
+   private static BsonType toBsonType(ColumnType type) {
+      switch (type) {
+         case INT64 :
+            return BsonType.INT64;
+         case DOUBLE :
+            return BsonType.DOUBLE;
+         case BOOL :
+            return BsonType.BOOLEAN;
+         default :
+            return BsonType.STRING;
+      }
+   }
+
+   // Datasets which are not in the registry do not exist
+   private StorageLayout findLayout(@NonNull String datasetId) {
+      StorageLayout storageLayout = datasets.get(datasetId);
+      if (storageLayout == null) {
+         String msg = String.format("Dataset with ID=%s not found", datasetId);
+         throw new DatabaseNotFoundException(msg);
+      }
+      return storageLayout;
+   }
+
+   // Empty collections are left by failed imports
+   private Map<String, StorageLayout> loadDatasets() {
+      Map<String, StorageLayout> layouts = new HashMap<>();
+      MongoDatabase rowDatabase = databaseClientSetup.getMongoClient().getDatabase(DATASET_NAME);
+      for (String name : rowDatabase.listCollectionNames()) {
+         if (!METADATA_COLLECTION_NAMES.contains(name)
+               && rowDatabase.getCollection(name).estimatedDocumentCount() > 0) {
+            layouts.put(name, StorageLayout.ROW);
+         }
+      }
+      MongoDatabase columnarDatabase = databaseClientSetup.getMongoClient().getDatabase(COLUMNAR_DATASET_NAME);
+      for (String name : columnarDatabase.listCollectionNames()) {
+         if (columnarDatabase.getCollection(name).estimatedDocumentCount() > 0) {
+            layouts.put(name, StorageLayout.COLUMNAR);
+         }
+      }
+      return layouts;
+   }
+
+   @PreDestroy
+   void cleanUp() {
+      writerExecutor.shutdown();
+   }
+
+   private static Map.Entry<String, Object> toColumnEntry(Document document, String columnName) {
+      // Values may be null
+      return new AbstractMap.SimpleImmutableEntry<>(document.getObjectId(ID_FIELD).toString(),
+            document.get(columnName));
+   }
+
+   private static SortedMap<String, Object> toEntry(Document document) {
+      SortedMap<String, Object> entry = new TreeMap<>();
+      // Values keep their BSON type, except for the ObjectId
+      document.forEach((key, value) -> entry.put(key, value instanceof ObjectId ? value.toString() : value));
+      return entry;
    }
 
    private MongoCollection<Document> getDatasetCollection(@NonNull String datasetId) {
@@ -136,4 +558,10 @@ final class DatasetMongoDatabaseClient implements MonolithicDatabaseTypedClient<
             .getDatabase(DATASET_NAME) //
             .getCollection(datasetId);
    }
+
+   private MongoCollection<Document> getColumnarDatasetCollection(@NonNull String datasetId) {
+      return databaseClientSetup.getMongoClient() //
+            .getDatabase(COLUMNAR_DATASET_NAME) //
+            .getCollection(datasetId);
+   }
 }
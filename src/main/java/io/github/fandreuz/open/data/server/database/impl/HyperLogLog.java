@@ -0,0 +1,105 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import lombok.NonNull;
+
+/**
+ * HyperLogLog sketch to estimate the number of distinct values in a stream,
+ * with a standard error of about {@code 1.6%} (4096 registers).
+ * <p>
+ * Values are added via their 64-bit hash, sketches can be merged. This class is
+ * not thread-safe.
+ *
+ * @author fandreuz
+ */
+final class HyperLogLog {
+
+   private static final int PRECISION = 12;
+   private static final int REGISTERS = 1 << PRECISION;
+   private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+   private final byte[] registers = new byte[REGISTERS];
+
+   /**
+    * Add a value to the sketch.
+    *
+    * @param hash
+    *            a well-distributed 64-bit hash of the value.
+    */
+   void add(long hash) {
+      int index = (int) (hash >>> (Long.SIZE - PRECISION));
+      // The trailing bit bounds the rank when the remaining bits are zeros
+      long remaining = (hash << PRECISION) | (1L << (PRECISION - 1));
+      byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+      if (rank > registers[index]) {
+         registers[index] = rank;
+      }
+   }
+
+   /**
+    * Add all the values of another sketch to this sketch.
+    *
+    * @param other
+    *            the other sketch.
+    */
+   void merge(@NonNull HyperLogLog other) {
+      for (int i = 0; i < REGISTERS; ++i) {
+         if (other.registers[i] > registers[i]) {
+            registers[i] = other.registers[i];
+         }
+      }
+   }
+
+   /**
+    * Estimate the number of distinct values added to this sketch.
+    *
+    * @return the estimated number of distinct values.
+    */
+   long estimate() {
+      double sum = 0;
+      int zeros = 0;
+      for (byte register : registers) {
+         sum += 1.0 / (1L << register);
+         if (register == 0) {
+            ++zeros;
+         }
+      }
+      double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+      if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+         // Linear counting is more accurate for small cardinalities
+         estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+      }
+      return Math.round(estimate);
+   }
+
+   /**
+    * Hash a 64-bit value (finalizer of MurmurHash3).
+    *
+    * @param value
+    *            the value.
+    * @return the hash of the value.
+    */
+   static long hash(long value) {
+      value ^= value >>> 33;
+      value *= 0xff51afd7ed558ccdL;
+      value ^= value >>> 33;
+      value *= 0xc4ceb9fe1a85ec53L;
+      value ^= value >>> 33;
+      return value;
+   }
+
+   /**
+    * Hash a string (FNV-1a, followed by {@link #hash(long)}).
+    *
+    * @param value
+    *            the value.
+    * @return the hash of the value.
+    */
+   static long hash(@NonNull String value) {
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < value.length(); ++i) {
+         hash ^= value.charAt(i);
+         hash *= 0x100000001b3L;
+      }
+      return hash(hash);
+   }
+}
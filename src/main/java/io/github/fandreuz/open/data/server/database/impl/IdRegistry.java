@@ -0,0 +1,100 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-memory registry of the IDs stored in a database collection, used to check
+ * whether an entry exists without querying the database. Each ID may carry a
+ * value (e.g. the storage layout of a dataset).
+ * <p>
+ * The registry is loaded from the database once, at startup or at the first
+ * lookup if the database was not available at startup, and it's updated by the
+ * client which owns it. Entries written by other processes are not seen. This
+ * class is thread-safe.
+ *
+ * @param <V>
+ *            type of the values.
+ * @author fandreuz
+ */
+@Slf4j
+final class IdRegistry<V> {
+
+   private final String description;
+   private final Supplier<Map<String, V>> loader;
+   @Nullable
+   private volatile Map<String, V> ids;
+
+   /**
+    * @param description
+    *            what the IDs identify, used in logs.
+    * @param loader
+    *            reads all the IDs from the database.
+    */
+   IdRegistry(@NonNull String description, @NonNull Supplier<Map<String, V>> loader) {
+      this.description = description;
+      this.loader = loader;
+   }
+
+   /**
+    * Load the registry, failures are logged and the registry is loaded at the
+    * first lookup.
+    */
+   void preload() {
+      try {
+         ids();
+      } catch (RuntimeException exception) {
+         log.warn("Could not load the IDs of the {}, retrying at the first lookup", description, exception);
+      }
+   }
+
+   /**
+    * Find the value of an ID.
+    *
+    * @param id
+    *            the ID.
+    * @return the value of the ID, {@code null} if it's not known.
+    */
+   @Nullable
+   V get(@NonNull String id) {
+      return ids().get(id);
+   }
+
+   boolean contains(@NonNull String id) {
+      return ids().containsKey(id);
+   }
+
+   boolean isEmpty() {
+      return ids().isEmpty();
+   }
+
+   void put(@NonNull String id, @NonNull V value) {
+      ids().put(id, value);
+   }
+
+   void remove(@NonNull String id) {
+      ids().remove(id);
+   }
+
+   private Map<String, V> ids() {
+      Map<String, V> current = ids;
+      if (current != null) {
+         return current;
+      }
+      synchronized (this) {
+         if (ids == null) {
+            long start = System.nanoTime();
+            Map<String, V> loaded = new ConcurrentHashMap<>(loader.get());
+            log.info("Loaded {} IDs of the {} in {} ms", loaded.size(), description,
+                  (System.nanoTime() - start) / 1_000_000);
+            ids = loaded;
+         }
+         return ids;
+      }
+   }
+}
@@ -0,0 +1,198 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.ColumnType;
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * Column types of a dataset, inferred from the textual representation of its
+ * values, or from the type of its values when the source is typed (see
+ * {@link io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream}).
+ * <p>
+ * Types are first inferred from a sample of rows via {@link #observe(Object[])}.
+ * During the import, {@link #convert(int, Object)} turns textual values into
+ * typed values, and widens the type of the column when a value does not fit
+ * (e.g. {@code INT64} to {@code DOUBLE}, or {@code BOOL} to {@code STRING}).
+ * Values converted before the widening keep their old type: such columns are
+ * listed by {@link #getWidenedColumns()}, and their stored values must be
+ * converted with {@link #coerce(ColumnType, Object)} once the import is over.
+ * <p>
+ * Empty values are stored as {@code null}, unless the column is already known
+ * to be a string column. This class is thread-safe.
+ *
+ * @author fandreuz
+ */
+final class InferredSchema {
+
+   private static final Pattern INTEGER_PATTERN = Pattern.compile("[+-]?\\d{1,18}");
+   private static final Pattern DOUBLE_PATTERN = Pattern
+         .compile("[+-]?((\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?|NaN|Inf|Infinity)");
+
+   private final List<String> columnNames;
+   // null until a non-empty value is observed
+   private final AtomicReferenceArray<ColumnType> columnTypes;
+   // Columns widened after some of their values were converted
+   private final Set<Integer> widenedColumns = ConcurrentHashMap.newKeySet();
+
+   InferredSchema(@NonNull List<String> columnNames) {
+      this.columnNames = List.copyOf(columnNames);
+      this.columnTypes = new AtomicReferenceArray<>(columnNames.size());
+   }
+
+   /**
+    * Update the types of the columns with the values of the given row.
+    *
+    * @param row
+    *            values, in the same order of the column names.
+    */
+   void observe(@NonNull Object[] row) {
+      for (int i = 0; i < row.length; ++i) {
+         if (!isEmpty(row[i])) {
+            columnTypes.accumulateAndGet(i, inferType(row[i]), InferredSchema::widen);
+         }
+      }
+   }
+
+   /**
+    * Convert the given textual value to the type of the column.
+    *
+    * @param column
+    *            index of the column.
+    * @param value
+    *            textual or typed value.
+    * @return the typed value.
+    */
+   @Nullable
+   Object convert(int column, @Nullable Object value) {
+      ColumnType type = columnTypes.get(column);
+      if (isEmpty(value)) {
+         return type == ColumnType.STRING ? value : null;
+      }
+
+      ColumnType valueType = inferType(value);
+      if (type == null || type.widen(valueType) != type) {
+         ColumnType previous = columnTypes.getAndAccumulate(column, valueType, InferredSchema::widen);
+         type = widen(previous, valueType);
+         if (previous != null && previous != type) {
+            widenedColumns.add(column);
+         }
+      }
+      if (!(value instanceof String)) {
+         return convertTyped(type, value);
+      }
+      String text = (String) value;
+      switch (type) {
+         case INT64 :
+            return Long.parseLong(text);
+         case DOUBLE :
+            return parseDouble(text);
+         case BOOL :
+            return Boolean.parseBoolean(text);
+         default :
+            return text;
+      }
+   }
+
+   /**
+    * Get the type of each column, columns without values are considered string
+    * columns.
+    *
+    * @return column types sorted as the column names.
+    */
+   Map<String, ColumnType> getColumnTypes() {
+      Map<String, ColumnType> output = new LinkedHashMap<>();
+      for (int i = 0; i < columnNames.size(); ++i) {
+         ColumnType type = columnTypes.get(i);
+         output.put(columnNames.get(i), type == null ? ColumnType.STRING : type);
+      }
+      return output;
+   }
+
+   /**
+    * Find the columns whose type changed after some of their values were
+    * converted, these values have the old type.
+    *
+    * @return names of the widened columns, with their final type.
+    */
+   Map<String, ColumnType> getWidenedColumns() {
+      Map<String, ColumnType> output = new LinkedHashMap<>();
+      for (int i = 0; i < columnNames.size(); ++i) {
+         if (widenedColumns.contains(i)) {
+            output.put(columnNames.get(i), columnTypes.get(i));
+         }
+      }
+      return output;
+   }
+
+   /**
+    * Convert a typed value to a wider type.
+    *
+    * @param type
+    *            the wider type.
+    * @param value
+    *            a value returned by {@link #convert(int, Object)}.
+    * @return the converted value.
+    */
+   static Object coerce(@NonNull ColumnType type, @NonNull Object value) {
+      return convertTyped(type, value);
+   }
+
+   private static ColumnType widen(@Nullable ColumnType current, @NonNull ColumnType update) {
+      return current == null ? update : current.widen(update);
+   }
+
+   private static Object convertTyped(ColumnType type, Object value) {
+      switch (type) {
+         case DOUBLE :
+            return ((Number) value).doubleValue();
+         case STRING :
+            return value.toString();
+         default :
+            return value;
+      }
+   }
+
+   private static ColumnType inferType(@NonNull Object typedValue) {
+      if (typedValue instanceof Long) {
+         return ColumnType.INT64;
+      }
+      if (typedValue instanceof Double) {
+         return ColumnType.DOUBLE;
+      }
+      if (typedValue instanceof Boolean) {
+         return ColumnType.BOOL;
+      }
+
+      String value = typedValue.toString();
+      if (INTEGER_PATTERN.matcher(value).matches()) {
+         return ColumnType.INT64;
+      }
+      if (DOUBLE_PATTERN.matcher(value).matches()) {
+         return ColumnType.DOUBLE;
+      }
+      if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+         return ColumnType.BOOL;
+      }
+      return ColumnType.STRING;
+   }
+
+   private static double parseDouble(@NonNull String value) {
+      // Infinity is also written as Inf
+      if (value.endsWith("Inf")) {
+         return value.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+      }
+      return Double.parseDouble(value);
+   }
+
+   private static boolean isEmpty(@Nullable Object value) {
+      return value == null || "".equals(value);
+   }
+}
@@ -0,0 +1,64 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import jakarta.inject.Singleton;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tuning parameters for the ingestion of datasets, read from system properties.
+ *
+ * @author fandreuz
+ */
+@Singleton
+@Slf4j
+@Getter
+final class IngestionConfiguration {
+
+   private static final String BATCH_SIZE_KEY = "dataset.ingestion.batch.size";
+   private static final int DEFAULT_BATCH_SIZE = 1000;
+   private static final String MAX_IN_FLIGHT_BATCHES_KEY = "dataset.ingestion.max.inflight.batches";
+   private static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 4;
+   private static final String WRITERS_KEY = "dataset.ingestion.writers";
+   private static final int DEFAULT_WRITERS = 4;
+   private static final String SCHEMA_SAMPLE_SIZE_KEY = "dataset.ingestion.schema.sample.size";
+   private static final int DEFAULT_SCHEMA_SAMPLE_SIZE = 10000;
+   private static final String COLUMNAR_CHUNK_SIZE_KEY = "dataset.ingestion.columnar.chunk.size";
+   private static final int DEFAULT_COLUMNAR_CHUNK_SIZE = 65536;
+   // MongoDB documents can't exceed 16 MB
+   private static final String COLUMNAR_CHUNK_MAX_MB_KEY = "dataset.ingestion.columnar.chunk.max.mb";
+   private static final int DEFAULT_COLUMNAR_CHUNK_MAX_MB = 12;
+   private static final int MAX_COLUMNAR_CHUNK_MAX_MB = 15;
+
+   private final int batchSize;
+   private final int maxInFlightBatches;
+   private final int writers;
+   private final int schemaSampleSize;
+   private final int columnarChunkSize;
+   private final long columnarChunkMaxBytes;
+
+   IngestionConfiguration() {
+      batchSize = readPositiveInteger(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE);
+      maxInFlightBatches = readPositiveInteger(MAX_IN_FLIGHT_BATCHES_KEY, DEFAULT_MAX_IN_FLIGHT_BATCHES);
+      writers = readPositiveInteger(WRITERS_KEY, DEFAULT_WRITERS);
+      schemaSampleSize = readPositiveInteger(SCHEMA_SAMPLE_SIZE_KEY, DEFAULT_SCHEMA_SAMPLE_SIZE);
+      columnarChunkSize = readPositiveInteger(COLUMNAR_CHUNK_SIZE_KEY, DEFAULT_COLUMNAR_CHUNK_SIZE);
+      log.info("{}={}", BATCH_SIZE_KEY, batchSize);
+      log.info("{}={}", MAX_IN_FLIGHT_BATCHES_KEY, maxInFlightBatches);
+      log.info("{}={}", WRITERS_KEY, writers);
+      log.info("{}={}", SCHEMA_SAMPLE_SIZE_KEY, schemaSampleSize);
+      int columnarChunkMaxMb = Math.min(MAX_COLUMNAR_CHUNK_MAX_MB,
+            readPositiveInteger(COLUMNAR_CHUNK_MAX_MB_KEY, DEFAULT_COLUMNAR_CHUNK_MAX_MB));
+      columnarChunkMaxBytes = columnarChunkMaxMb * 1024L * 1024L;
+      log.info("{}={}", COLUMNAR_CHUNK_SIZE_KEY, columnarChunkSize);
+      log.info("{}={}", COLUMNAR_CHUNK_MAX_MB_KEY, columnarChunkMaxMb);
+   }
+
+   private static int readPositiveInteger(String key, int defaultValue) {
+      int value = Integer.getInteger(key, defaultValue);
+      if (value <= 0) {
+         log.warn("Invalid value for '{}': {}, using the default ({})", key, value, defaultValue);
+         return defaultValue;
+      }
+      return value;
+   }
+}
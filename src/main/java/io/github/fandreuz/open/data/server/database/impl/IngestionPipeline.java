@@ -0,0 +1,256 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import io.github.fandreuz.open.data.server.database.DatabaseException;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/**
+ * Producer/consumer pipeline which writes rows to a dataset collection.
+ * <p>
+ * The producer splits rows into chunks, which are put in a bounded queue. A
+ * chunk is closed when it reaches the maximum number of rows, or when the
+ * estimated encoded size of one of its columns reaches the maximum size.
+ * Writer workers take chunks from the queue, turn them into documents with a
+ * {@link ChunkEncoder} and write them with unordered bulk inserts. The producer
+ * blocks when the queue is full. Each writer computes the statistics of the
+ * rows it writes, which are merged when the writer terminates.
+ * <p>
+ * The first failure is reported by the next call to {@link #submit(Object[])}
+ * or {@link #finish()}, and makes the workers discard the remaining chunks. An
+ * interrupt of the producer thread is treated as a failure.
+ * Methods of this class should be called by a single producer thread, the
+ * writers are started by the constructor.
+ *
+ * @author fandreuz
+ */
+@Slf4j
+final class IngestionPipeline {
+
+   private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+   private static final long POLL_TIMEOUT_MILLIS = 100;
+   // Upper bound of the BSON size of an array element, without its payload
+   private static final long ELEMENT_OVERHEAD_BYTES = 12;
+   // Upper bound of the length of the textual representation of a typed value
+   private static final long TYPED_VALUE_BYTES = 28;
+
+   private final MongoCollection<Document> collection;
+   private final ChunkEncoder encoder;
+   private final int chunkSize;
+   private final long maxChunkBytes;
+   private final LongConsumer progressListener;
+   private final BlockingQueue<Chunk> chunks;
+   private final CountDownLatch terminatedWriters;
+   private final int columnCount;
+   // Guarded by itself while the writers are running
+   private final StatisticsAccumulator statistics;
+
+   private final AtomicLong writtenRows = new AtomicLong();
+   private final AtomicReference<Exception> failure = new AtomicReference<>();
+   private volatile boolean closed = false;
+
+   private List<Object[]> currentChunk;
+   // Estimated encoded size of each column of the current chunk
+   private final long[] currentChunkBytes;
+   private long submittedRows = 0;
+
+   IngestionPipeline(@NonNull MongoCollection<Document> collection, int columnCount, @NonNull ChunkEncoder encoder,
+         int chunkSize, long maxChunkBytes, @NonNull LongConsumer progressListener,
+         @NonNull IngestionConfiguration configuration, @NonNull Executor executor) {
+      this.collection = collection;
+      this.columnCount = columnCount;
+      this.statistics = new StatisticsAccumulator(columnCount);
+      this.encoder = encoder;
+      this.chunkSize = chunkSize;
+      this.maxChunkBytes = maxChunkBytes;
+      this.currentChunkBytes = new long[columnCount];
+      this.progressListener = progressListener;
+      this.chunks = new ArrayBlockingQueue<>(configuration.getMaxInFlightBatches());
+      this.currentChunk = new ArrayList<>(chunkSize);
+
+      int writers = configuration.getWriters();
+      this.terminatedWriters = new CountDownLatch(writers);
+      for (int i = 0; i < writers; ++i) {
+         try {
+            executor.execute(this::runWriter);
+         } catch (RuntimeException exception) {
+            // Writers which were not started will never count down
+            for (int j = i; j < writers; ++j) {
+               terminatedWriters.countDown();
+            }
+            abort();
+            throw new DatabaseException("Could not start the ingestion writers", exception);
+         }
+      }
+   }
+
+   /**
+    * Add a row to the current chunk, the chunk is queued when full.
+    *
+    * @param row
+    *            values of the row, in the same order of the column names.
+    */
+   void submit(@NonNull Object[] row) {
+      if (Thread.currentThread().isInterrupted()) {
+         failure.compareAndSet(null, new InterruptedException("The ingestion was interrupted"));
+      }
+      checkFailure();
+      currentChunk.add(row);
+      boolean full = currentChunk.size() >= chunkSize;
+      for (int i = 0; i < row.length && i < currentChunkBytes.length; ++i) {
+         currentChunkBytes[i] += estimateSize(row[i]);
+         full |= currentChunkBytes[i] >= maxChunkBytes;
+      }
+      if (full) {
+         enqueueCurrentChunk();
+         currentChunk = new ArrayList<>(chunkSize);
+         Arrays.fill(currentChunkBytes, 0);
+      }
+   }
+
+   /**
+    * Queue the pending chunk, and wait for the writers to complete.
+    *
+    * @return the number of rows written.
+    */
+   long finish() {
+      if (!currentChunk.isEmpty()) {
+         enqueueCurrentChunk();
+         currentChunk = new ArrayList<>(0);
+      }
+      closed = true;
+      awaitWriters();
+      checkFailure();
+      return writtenRows.get();
+   }
+
+   /**
+    * Get the statistics of the rows written, should be called after
+    * {@link #finish()}.
+    *
+    * @return the statistics of the rows written.
+    */
+   StatisticsAccumulator getStatistics() {
+      // Writers are terminated, no need to synchronize
+      return statistics;
+   }
+
+   /** Discard queued chunks and wait for the writers to complete. */
+   void abort() {
+      failure.compareAndSet(null, new DatabaseException("The ingestion was aborted"));
+      closed = true;
+      chunks.clear();
+      awaitWriters();
+   }
+
+   private void awaitWriters() {
+      boolean interrupted = false;
+      while (true) {
+         try {
+            terminatedWriters.await();
+            break;
+         } catch (InterruptedException exception) {
+            // Writers must be stopped anyway, make them discard pending chunks
+            interrupted = true;
+            failure.compareAndSet(null, exception);
+            chunks.clear();
+         }
+      }
+      if (interrupted) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   // Strings are written as UTF-8, which takes at most 3 bytes per char.
+   // Typed values may be converted to strings if their column is widened
+   private static long estimateSize(Object value) {
+      if (value instanceof String) {
+         return ELEMENT_OVERHEAD_BYTES + 3L * ((String) value).length();
+      }
+      return ELEMENT_OVERHEAD_BYTES + TYPED_VALUE_BYTES;
+   }
+
+   private void enqueueCurrentChunk() {
+      Chunk chunk = new Chunk(submittedRows, currentChunk);
+      submittedRows += currentChunk.size();
+      try {
+         while (failure.get() == null) {
+            if (chunks.offer(chunk, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+               return;
+            }
+         }
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+         failure.compareAndSet(null, exception);
+         throw new DatabaseException("Interrupted while queueing rows for ingestion", exception);
+      }
+   }
+
+   private void runWriter() {
+      StatisticsAccumulator writerStatistics = new StatisticsAccumulator(columnCount);
+      try {
+         while (true) {
+            Chunk chunk = chunks.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            if (chunk == null) {
+               // closed is set after the last chunk was queued
+               if (closed && chunks.isEmpty()) {
+                  return;
+               }
+            } else if (failure.get() == null) {
+               writeChunk(chunk, writerStatistics);
+            }
+         }
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+         failure.compareAndSet(null, exception);
+      } finally {
+         synchronized (statistics) {
+            statistics.merge(writerStatistics);
+         }
+         terminatedWriters.countDown();
+      }
+   }
+
+   private void writeChunk(Chunk chunk, StatisticsAccumulator writerStatistics) {
+      try {
+         List<Document> documents = encoder.encode(chunk.firstRow, chunk.rows, writerStatistics);
+         collection.insertMany(documents, UNORDERED);
+         writtenRows.addAndGet(chunk.rows.size());
+         progressListener.accept(chunk.rows.size());
+      } catch (Exception exception) {
+         log.error("An error occurred while writing a chunk of {} rows", chunk.rows.size(), exception);
+         failure.compareAndSet(null, exception);
+      }
+   }
+
+   private void checkFailure() {
+      Exception exception = failure.get();
+      if (exception != null) {
+         throw new DatabaseException("An error occurred while writing rows to the DB", exception);
+      }
+   }
+
+   private static final class Chunk {
+      private final long firstRow;
+      private final List<Object[]> rows;
+
+      private Chunk(long firstRow, List<Object[]> rows) {
+         this.firstRow = firstRow;
+         this.rows = rows;
+      }
+   }
+}
@@ -0,0 +1,56 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import com.mongodb.client.MongoCursor;
+import io.github.fandreuz.open.data.server.database.DatabaseCursor;
+import lombok.NonNull;
+import org.bson.Document;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Implementation of {@link DatabaseCursor} over a {@link MongoCursor}. Each
+ * document is expanded into zero or more results, only the results of the
+ * current document are kept in memory.
+ *
+ * @param <T>
+ *            type of the results.
+ * @author fandreuz
+ */
+final class MongoDatabaseCursor<T> implements DatabaseCursor<T> {
+
+   private final MongoCursor<Document> cursor;
+   private final Function<Document, Iterator<T>> expander;
+   private Iterator<T> current = Collections.emptyIterator();
+
+   MongoDatabaseCursor(@NonNull MongoCursor<Document> cursor, @NonNull Function<Document, Iterator<T>> expander) {
+      this.cursor = cursor;
+      this.expander = expander;
+   }
+
+   @Override
+   public boolean hasNext() {
+      while (!current.hasNext()) {
+         if (!cursor.hasNext()) {
+            return false;
+         }
+         current = expander.apply(cursor.next());
+      }
+      return true;
+   }
+
+   @Override
+   public T next() {
+      if (!hasNext()) {
+         throw new NoSuchElementException();
+      }
+      return current.next();
+   }
+
+   @Override
+   public void close() {
+      cursor.close();
+   }
+}
@@ -2,11 +2,19 @@ package io.github.fandreuz.open.data.server.database.impl;
 
 import com.mongodb.client.ClientSession;
 import io.github.fandreuz.open.data.server.database.TransactionController;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * Implementation of {@link TransactionController}.
+ * <p>
+ * {@code onFinish} is run as soon as the transaction is committed or aborted,
+ * e.g. to unbind it from the thread which started it.
  *
  * @author fandreuz
  */
@@ -15,22 +23,38 @@ import lombok.extern.slf4j.Slf4j;
 final class MongoTransactionController implements TransactionController {
 
    private final ClientSession session;
+   private final Consumer<MongoTransactionController> onFinish;
 
    private boolean committed = false;
+   private boolean finished = false;
+   private final List<Runnable> commitActions = new ArrayList<>();
+   private final List<Runnable> abortActions = new ArrayList<>();
 
    @Override
    public synchronized void commit() {
       log.info("Committing the transaction");
       committed = true;
-      session.commitTransaction();
-      session.close();
+      finish();
+      try {
+         session.commitTransaction();
+         session.close();
+      } catch (RuntimeException exception) {
+         runActions(abortActions);
+         throw exception;
+      }
+      runActions(commitActions);
    }
 
    @Override
    public synchronized void abort() {
       log.info("Aborting the transaction");
-      session.abortTransaction();
-      session.close();
+      finish();
+      try {
+         session.abortTransaction();
+         session.close();
+      } finally {
+         runActions(abortActions);
+      }
    }
 
    @Override
@@ -41,4 +65,61 @@ final class MongoTransactionController implements TransactionController {
          }
       }
    }
+
+   /**
+    * Run actions once the transaction is over.
+    *
+    * @param onCommit
+    *            run if the transaction is committed.
+    * @param onAbort
+    *            run if the transaction is aborted, or if the commit fails.
+    * @return {@code false} if the transaction is already over, the actions are
+    *         then not run.
+    */
+   synchronized boolean afterCompletion(@NonNull Runnable onCommit, @NonNull Runnable onAbort) {
+      if (finished) {
+         return false;
+      }
+      commitActions.add(onCommit);
+      abortActions.add(onAbort);
+      return true;
+   }
+
+   /**
+    * Check whether the transaction was committed or aborted.
+    *
+    * @return {@code true} if the transaction is over.
+    */
+   synchronized boolean isFinished() {
+      return finished;
+   }
+
+   // Guarded by this
+   private void finish() {
+      if (!finished) {
+         finished = true;
+         onFinish.accept(this);
+      }
+   }
+
+   // Guarded by this. Failures are logged, thus all the actions are run. The
+   // driver fails on interrupted threads, the interrupt is restored afterwards
+   private void runActions(List<Runnable> actions) {
+      boolean interrupted = Thread.interrupted();
+      try {
+         for (Runnable action : actions) {
+            try {
+               action.run();
+            } catch (RuntimeException exception) {
+               log.warn("An action failed after the end of the transaction", exception);
+            }
+         }
+      } finally {
+         commitActions.clear();
+         abortActions.clear();
+         if (interrupted) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
 }
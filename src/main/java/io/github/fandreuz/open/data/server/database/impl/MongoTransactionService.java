@@ -3,12 +3,18 @@ package io.github.fandreuz.open.data.server.database.impl;
 import com.mongodb.client.ClientSession;
 import io.github.fandreuz.open.data.server.database.DatabaseTransactionService;
 import io.github.fandreuz.open.data.server.database.TransactionController;
+import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * MongoDB implementation of {@link DatabaseTransactionService}.
+ * <p>
+ * A transaction is bound to the thread which started it, until it's committed
+ * or aborted. The transaction which was bound before, if still running, is
+ * then bound again.
  *
  * @author fandreuz
  */
@@ -19,11 +25,62 @@ final class MongoTransactionService implements DatabaseTransactionService {
    @Inject
    private MongoClientSetup databaseClientSetup;
 
+   // Running transaction of each thread
+   private final ThreadLocal<MongoTransactionController> transactions = new ThreadLocal<>();
+
    @Override
    public TransactionController start() {
       ClientSession session = databaseClientSetup.getMongoClient().startSession();
       log.info("Transaction starting");
       session.startTransaction();
-      return new MongoTransactionController(session);
+      MongoTransactionController previous = transactions.get();
+      var transaction = new MongoTransactionController(session, finished -> unbind(finished, previous));
+      transactions.set(transaction);
+      return transaction;
+   }
+
+   // No-op if the transaction is not bound to the current thread, e.g. if it's
+   // finished by another thread
+   private void unbind(MongoTransactionController transaction, @Nullable MongoTransactionController previous) {
+      if (transactions.get() != transaction) {
+         return;
+      }
+      if (previous != null && !previous.isFinished()) {
+         transactions.set(previous);
+      } else {
+         transactions.remove();
+      }
+   }
+
+   /**
+    * Run an action once the transaction of the current thread is committed, or
+    * immediately if the thread has no running transaction.
+    *
+    * @param action
+    *            the action.
+    */
+   void afterCommit(@NonNull Runnable action) {
+      afterCompletion(action, () -> {
+      });
+   }
+
+   /**
+    * Run actions once the transaction of the current thread is over. If the
+    * thread has no running transaction, {@code onCommit} is run immediately.
+    *
+    * @param onCommit
+    *            run if the transaction is committed.
+    * @param onAbort
+    *            run if the transaction is aborted, or if the commit fails.
+    */
+   void afterCompletion(@NonNull Runnable onCommit, @NonNull Runnable onAbort) {
+      MongoTransactionController transaction = transactions.get();
+      if (transaction == null || !transaction.afterCompletion(onCommit, onAbort)) {
+         if (transaction != null) {
+            // Finished by another thread
+            transactions.remove();
+         }
+         onCommit.run();
+      }
    }
 }
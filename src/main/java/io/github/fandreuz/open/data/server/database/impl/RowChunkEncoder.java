@@ -0,0 +1,41 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import lombok.NonNull;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of {@link ChunkEncoder} for {@link StorageLayout#ROW}: one
+ * document per row, with typed values.
+ *
+ * @author fandreuz
+ */
+final class RowChunkEncoder implements ChunkEncoder {
+
+   private final List<String> columnNames;
+   private final InferredSchema schema;
+
+   RowChunkEncoder(@NonNull List<String> columnNames, @NonNull InferredSchema schema) {
+      this.columnNames = List.copyOf(columnNames);
+      this.schema = schema;
+   }
+
+   @Override
+   public List<Document> encode(long firstRow, @NonNull List<Object[]> rows,
+         @NonNull StatisticsAccumulator statistics) {
+      List<Document> documents = new ArrayList<>(rows.size());
+      for (Object[] row : rows) {
+         Document document = new Document();
+         for (int i = 0; i < columnNames.size(); ++i) {
+            Object value = schema.convert(i, row[i]);
+            statistics.observe(i, value);
+            document.append(columnNames.get(i), value);
+         }
+         documents.add(document);
+      }
+      return documents;
+   }
+}
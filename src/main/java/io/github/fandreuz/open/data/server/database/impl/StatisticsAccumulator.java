@@ -0,0 +1,161 @@
+package io.github.fandreuz.open.data.server.database.impl;
+
+import io.github.fandreuz.open.data.server.model.dataset.ColumnStatistics;
+import io.github.fandreuz.open.data.server.model.dataset.ColumnType;
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass statistics of the columns of a dataset.
+ * <p>
+ * Mean and variance are computed with Welford's algorithm, distinct values are
+ * estimated with {@link HyperLogLog}. Accumulators of disjoint sets of rows can
+ * be merged, thus each ingestion writer keeps its own accumulator. This class
+ * is not thread-safe.
+ *
+ * @author fandreuz
+ */
+final class StatisticsAccumulator {
+
+   private final int columnCount;
+   private final long[] counts;
+   private final long[] nullCounts;
+   // Numeric values only
+   private final long[] numericCounts;
+   private final double[] mins;
+   private final double[] maxs;
+   private final double[] means;
+   // Sum of squared differences from the mean
+   private final double[] m2s;
+   private final HyperLogLog[] distinctValues;
+
+   StatisticsAccumulator(int columnCount) {
+      this.columnCount = columnCount;
+      counts = new long[columnCount];
+      nullCounts = new long[columnCount];
+      numericCounts = new long[columnCount];
+      mins = new double[columnCount];
+      Arrays.fill(mins, Double.POSITIVE_INFINITY);
+      maxs = new double[columnCount];
+      Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+      means = new double[columnCount];
+      m2s = new double[columnCount];
+      distinctValues = new HyperLogLog[columnCount];
+      for (int i = 0; i < columnCount; ++i) {
+         distinctValues[i] = new HyperLogLog();
+      }
+   }
+
+   /**
+    * Add a typed value to the statistics of a column.
+    *
+    * @param column
+    *            index of the column.
+    * @param value
+    *            the typed value (see {@link InferredSchema}).
+    */
+   void observe(int column, @Nullable Object value) {
+      if (value == null) {
+         ++nullCounts[column];
+         return;
+      }
+      ++counts[column];
+
+      if (value instanceof Long) {
+         long longValue = (Long) value;
+         distinctValues[column].add(HyperLogLog.hash(longValue));
+         observeNumeric(column, longValue);
+      } else if (value instanceof Double) {
+         double doubleValue = (Double) value;
+         distinctValues[column].add(hashDouble(doubleValue));
+         if (!Double.isNaN(doubleValue)) {
+            observeNumeric(column, doubleValue);
+         }
+      } else if (value instanceof Boolean) {
+         distinctValues[column].add(HyperLogLog.hash((Boolean) value ? 1 : 0));
+      } else {
+         distinctValues[column].add(HyperLogLog.hash(value.toString()));
+      }
+   }
+
+   /**
+    * Add the statistics of another set of rows to this accumulator.
+    *
+    * @param other
+    *            accumulator of a disjoint set of rows, with the same columns.
+    */
+   void merge(@NonNull StatisticsAccumulator other) {
+      for (int i = 0; i < columnCount; ++i) {
+         counts[i] += other.counts[i];
+         nullCounts[i] += other.nullCounts[i];
+         distinctValues[i].merge(other.distinctValues[i]);
+
+         long count = numericCounts[i];
+         long otherCount = other.numericCounts[i];
+         if (otherCount == 0) {
+            continue;
+         }
+         long total = count + otherCount;
+         double delta = other.means[i] - means[i];
+         means[i] += delta * otherCount / total;
+         m2s[i] += other.m2s[i] + delta * delta * count * otherCount / total;
+         numericCounts[i] = total;
+         mins[i] = Math.min(mins[i], other.mins[i]);
+         maxs[i] = Math.max(maxs[i], other.maxs[i]);
+      }
+   }
+
+   /**
+    * Build the statistics of each column.
+    *
+    * @param columnTypes
+    *            final type of each column, sorted as the columns. Numeric
+    *            statistics are reported only for numeric columns.
+    * @return the statistics of each column, sorted as the columns.
+    */
+   Map<String, ColumnStatistics> toColumnStatistics(@NonNull Map<String, ColumnType> columnTypes) {
+      Map<String, ColumnStatistics> output = new LinkedHashMap<>();
+      List<Map.Entry<String, ColumnType>> columns = List.copyOf(columnTypes.entrySet());
+      for (int i = 0; i < columnCount; ++i) {
+         var builder = ColumnStatistics.builder() //
+               .count(counts[i]) //
+               .nullCount(nullCounts[i]) //
+               .approximateDistinctCount(Math.min(distinctValues[i].estimate(), counts[i]));
+         if (columns.get(i).getValue().isNumeric() && numericCounts[i] > 0) {
+            builder.min(mins[i]) //
+                  .max(maxs[i]) //
+                  .mean(means[i]) //
+                  .variance(m2s[i] / numericCounts[i]);
+         }
+         output.put(columns.get(i).getKey(), builder.build());
+      }
+      return output;
+   }
+
+   // Integral doubles have the same hash of the corresponding long, since the
+   // column may have been widened during the import
+   private static long hashDouble(double value) {
+      if (value == Math.rint(value) && Math.abs(value) < 0x1p63) {
+         return HyperLogLog.hash((long) value);
+      }
+      return HyperLogLog.hash(Double.doubleToLongBits(value));
+   }
+
+   private void observeNumeric(int column, double value) {
+      long count = ++numericCounts[column];
+      double delta = value - means[column];
+      means[column] += delta / count;
+      m2s[column] += delta * (value - means[column]);
+      if (value < mins[column]) {
+         mins[column] = value;
+      }
+      if (value > maxs[column]) {
+         maxs[column] = value;
+      }
+   }
+}
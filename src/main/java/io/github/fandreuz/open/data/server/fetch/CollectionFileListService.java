@@ -0,0 +1,26 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import lombok.NonNull;
+
+import java.nio.file.Path;
+import java.util.SortedMap;
+
+/**
+ * Interface for services listing the files of a collection.
+ *
+ * @author fandreuz
+ */
+public interface CollectionFileListService {
+
+   /**
+    * List the files described by the given record of a collection.
+    *
+    * @param collectionId
+    *            collection ID.
+    * @param recordFile
+    *            path to the record of the collection, see
+    *            {@link UrlBuilderService#getCollectionRecordUrl(String)}.
+    * @return size in bytes of each file (0 if unknown), by file name.
+    */
+   SortedMap<String, Long> listFiles(@NonNull String collectionId, @NonNull Path recordFile);
+}
@@ -3,46 +3,174 @@ package io.github.fandreuz.open.data.server.fetch;
 import io.github.fandreuz.open.data.server.model.collection.CollectionMetadata;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
 import jakarta.inject.Inject;
-import org.apache.commons.lang3.tuple.Triple;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
 
 /**
  * Fetch a remote dataset.
  *
  * @author fandreuz
  */
+@Slf4j
 public class DatasetFetchService {
 
+   private static final LongConsumer IGNORE_PROGRESS = bytes -> {
+      // Progress of small downloads is not tracked
+   };
+
+   // Runs the downloads which overlap with other work, the caller waits for them
+   private static final ExecutorService DOWNLOAD_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "dataset-download");
+      thread.setDaemon(true);
+      return thread;
+   });
+
    @Inject
-   private MetadataBuilderService<DatasetMetadata> datasetMetadataService;
+   private DatasetMetadataBuilderService datasetMetadataService;
    @Inject
    private MetadataBuilderService<CollectionMetadata> collectionMetadataService;
    @Inject
    private UrlBuilderService urlBuilderService;
+   @Inject
+   private DownloadCache downloadCache;
+   @Inject
+   private CollectionFileListService collectionFileListService;
 
    /**
-    * Fetch a dataset based on the ID of the collection it belongs to, and the name
-    * of the file where the dataset is stored.
+    * Fetch the metadata of the collection with the given ID.
     *
     * @param collectionId
     *            ID of the collection.
-    * @param file
-    *            local file where the dataset is stored.
-    * @return a triple of metadata and the object representation of the dataset.
+    * @return metadata of the collection.
     */
-   public Triple<CollectionMetadata, DatasetMetadata, Path> fetchDataset(String collectionId, String file) {
+   public CollectionMetadata fetchCollectionMetadata(@NonNull String collectionId) {
       // Download the collection reference page to build metadata
       String collectionUrl = urlBuilderService.getCollectionUrl(collectionId);
-      Path localCollectionFile = DownloadUtils.download(collectionUrl);
-      CollectionMetadata collectionMetadata = collectionMetadataService.buildMetadata(collectionId,
-            localCollectionFile);
+      Path localCollectionFile = downloadCache.acquire(collectionUrl, IGNORE_PROGRESS);
+      try {
+         return collectionMetadataService.buildMetadata(collectionId, localCollectionFile);
+      } finally {
+         downloadCache.release(localCollectionFile);
+      }
+   }
 
-      // Download the dataset file
+   /**
+    * Build the metadata of a dataset without downloading it.
+    *
+    * @param collectionId
+    *            ID of the collection.
+    * @param file
+    *            name of the file where the dataset is stored.
+    * @return metadata of the dataset.
+    */
+   public DatasetMetadata fetchDatasetMetadata(@NonNull String collectionId, @NonNull String file) {
       String fileUrl = urlBuilderService.getFileUrl(collectionId, file);
-      Path localDatasetFile = DownloadUtils.download(fileUrl);
-      DatasetMetadata datasetMetadata = datasetMetadataService.buildMetadata(collectionId, localDatasetFile);
+      long sizeInBytes = DownloadUtils.fetchContentLength(fileUrl);
+      if (sizeInBytes < 0) {
+         log.warn("Size not available for '{}'", fileUrl);
+         sizeInBytes = 0;
+      }
+      return datasetMetadataService.buildMetadata(collectionId, file, sizeInBytes);
+   }
+
+   /**
+    * Build the metadata of all the datasets in a collection, without downloading
+    * them. Files whose type is not supported are skipped.
+    *
+    * @param collectionId
+    *            ID of the collection.
+    * @return metadata of the datasets, sorted by file name.
+    */
+   public List<DatasetMetadata> fetchCollectionDatasets(@NonNull String collectionId) {
+      String recordUrl = urlBuilderService.getCollectionRecordUrl(collectionId);
+      Path localRecordFile = downloadCache.acquire(recordUrl, IGNORE_PROGRESS);
+      try {
+         List<DatasetMetadata> datasets = new ArrayList<>();
+         for (Map.Entry<String, Long> file : collectionFileListService.listFiles(collectionId, localRecordFile)
+               .entrySet()) {
+            try {
+               datasets.add(datasetMetadataService.buildMetadata(collectionId, file.getKey(), file.getValue()));
+            } catch (FileTypeNotRecognizedException exception) {
+               log.info("Skipping '{}' in the collection {}: {}", file.getKey(), collectionId,
+                     exception.getMessage());
+            }
+         }
+         return datasets;
+      } finally {
+         downloadCache.release(localRecordFile);
+      }
+   }
 
-      return Triple.of(collectionMetadata, datasetMetadata, localDatasetFile);
+   /**
+    * Download a dataset based on the ID of the collection it belongs to, and the
+    * name of the file where the dataset is stored.
+    *
+    * @param collectionId
+    *            ID of the collection.
+    * @param file
+    *            name of the file where the dataset is stored.
+    * @param progressListener
+    *            receives the number of bytes downloaded, as they're downloaded.
+    * @return path to the local copy of the dataset, to be released with
+    *         {@link #releaseDataset(Path)}.
+    */
+   public Path downloadDataset(@NonNull String collectionId, @NonNull String file,
+         @NonNull LongConsumer progressListener) {
+      return downloadCache.acquire(urlBuilderService.getFileUrl(collectionId, file), progressListener);
+   }
+
+   /**
+    * Start downloading a dataset in the background, e.g. while the metadata of
+    * its collection is fetched. Cancelling the returned future (with
+    * interruption) stops the download.
+    *
+    * @param collectionId
+    *            ID of the collection.
+    * @param file
+    *            name of the file where the dataset is stored.
+    * @param progressListener
+    *            receives the number of bytes downloaded, as they're downloaded.
+    * @return the path to the local copy of the dataset, to be released with
+    *         {@link #releaseDataset(Path)}.
+    */
+   public Future<Path> downloadDatasetAsync(@NonNull String collectionId, @NonNull String file,
+         @NonNull LongConsumer progressListener) {
+      return DOWNLOAD_EXECUTOR.submit(() -> downloadDataset(collectionId, file, progressListener));
+   }
+
+   /**
+    * Release the local copy of a dataset, the copy should not be used anymore.
+    *
+    * @param localFile
+    *            path returned by {@link #downloadDataset(String, String, LongConsumer)}.
+    */
+   public void releaseDataset(@NonNull Path localFile) {
+      downloadCache.release(localFile);
+   }
+
+   /**
+    * Open a stream to a remote dataset, the dataset is not stored locally.
+    *
+    * @param collectionId
+    *            ID of the collection.
+    * @param file
+    *            name of the file where the dataset is stored.
+    * @param progressListener
+    *            receives the number of bytes read, as they're read.
+    * @return a stream of the content of the dataset, owned by the caller.
+    */
+   public InputStream openDataset(@NonNull String collectionId, @NonNull String file,
+         @NonNull LongConsumer progressListener) {
+      return DownloadUtils.openStream(urlBuilderService.getFileUrl(collectionId, file), progressListener);
    }
 }
@@ -0,0 +1,26 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
+import lombok.NonNull;
+
+/**
+ * Interface for services to generate metadata for datasets, also when the
+ * dataset is not available locally.
+ *
+ * @author fandreuz
+ */
+public interface DatasetMetadataBuilderService extends MetadataBuilderService<DatasetMetadata> {
+
+   /**
+    * Build metadata for the given remote dataset.
+    *
+    * @param collectionId
+    *            dataset collection ID.
+    * @param fileName
+    *            name of the dataset file.
+    * @param sizeInBytes
+    *            size of the dataset file.
+    * @return metadata for the given dataset.
+    */
+   DatasetMetadata buildMetadata(@NonNull String collectionId, @NonNull String fileName, long sizeInBytes);
+}
@@ -0,0 +1,266 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import jakarta.annotation.Nullable;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Local cache of downloaded files.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the URL and of the validator (ETag
+ * or Last-Modified) of the remote file, thus a file is downloaded again only if
+ * it changed. Files without a validator are kept for a limited time. Files are
+ * downloaded next to their entry and published with an atomic rename. The total
+ * size of the cache is bounded, least recently used entries are evicted first
+ * (the last-modified time of an entry is updated when it's read). Entries in
+ * use are never evicted. Concurrent requests of the same entry share a single
+ * download, downloads of different entries do not wait for each other.
+ *
+ * @author fandreuz
+ */
+@Singleton
+@Slf4j
+final class DownloadCache {
+
+   private static final String CACHE_PATH_KEY = "dataset.download.cache.path";
+   private static final Path CACHE_PATH = Path.of(System.getProperty(CACHE_PATH_KEY,
+         Path.of(System.getProperty("java.io.tmpdir"), "download-cache").toString()));
+   private static final String MAX_SIZE_MB_KEY = "dataset.download.cache.max.size.mb";
+   private static final long MAX_SIZE_BYTES = Math.max(0, Long.getLong(MAX_SIZE_MB_KEY, 20480L)) * 1024 * 1024;
+   private static final String UNVALIDATED_TTL_MINUTES_KEY = "dataset.download.cache.unvalidated.ttl.minutes";
+   private static final long UNVALIDATED_TTL_MILLIS = Math.max(1, Long.getLong(UNVALIDATED_TTL_MINUTES_KEY, 60L))
+         * 60 * 1000;
+   private static final String PARTIAL_EXTENSION = ".part";
+
+   private final Path cachePath;
+   private final long maxSizeBytes;
+   // Entries in use (key -> number of users), guarded by this
+   private final Map<String, Integer> pinnedEntries = new HashMap<>();
+   // Downloads in progress, by key
+   private final Map<String, CompletableFuture<Void>> downloads = new ConcurrentHashMap<>();
+
+   DownloadCache() {
+      this(CACHE_PATH, MAX_SIZE_BYTES);
+   }
+
+   DownloadCache(@NonNull Path cachePath, long maxSizeBytes) {
+      this.cachePath = cachePath;
+      this.maxSizeBytes = maxSizeBytes;
+   }
+
+   /**
+    * Get a local copy of the file at {@code fileUrl}, the file is downloaded if
+    * it's not in the cache. The copy is not evicted until
+    * {@link #release(Path)} is called.
+    *
+    * @param fileUrl
+    *            url to the file to be read.
+    * @param progressListener
+    *            receives the number of bytes read, as they're read.
+    * @return path to the local copy of the file.
+    */
+   Path acquire(@NonNull String fileUrl, @NonNull LongConsumer progressListener) {
+      if (maxSizeBytes == 0) {
+         return DownloadUtils.download(fileUrl, progressListener);
+      }
+
+      String key = computeKey(fileUrl, DownloadUtils.fetchValidator(fileUrl));
+      Path entry = cachePath.resolve(key);
+      pin(key);
+      try {
+         CompletableFuture<Void> download = new CompletableFuture<>();
+         CompletableFuture<Void> current;
+         while (true) {
+            if (Files.exists(entry)) {
+               return hit(fileUrl, entry, progressListener);
+            }
+            current = downloads.putIfAbsent(key, download);
+            if (current == null) {
+               break;
+            }
+            // Another thread is downloading the entry
+            await(current, fileUrl);
+         }
+
+         try {
+            // The entry may have been published before this thread claimed it
+            if (Files.exists(entry)) {
+               return hit(fileUrl, entry, progressListener);
+            }
+            log.info("Download cache miss: '{}'", fileUrl);
+            Files.createDirectories(cachePath);
+            // Partial downloads are resumed by the next attempt
+            Path partial = cachePath.resolve(key + PARTIAL_EXTENSION);
+            DownloadUtils.download(fileUrl, partial, progressListener);
+            Files.move(partial, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            download.complete(null);
+         } catch (IOException | RuntimeException exception) {
+            download.completeExceptionally(exception);
+            throw exception;
+         } finally {
+            downloads.remove(key, download);
+         }
+      } catch (IOException exception) {
+         unpin(key);
+         String msg = String.format("An error occurred while caching the file at '%s'", fileUrl);
+         throw new FetchException(msg, exception);
+      } catch (RuntimeException exception) {
+         unpin(key);
+         throw exception;
+      }
+
+      evictQuietly();
+      return entry;
+   }
+
+   private static Path hit(String fileUrl, Path entry, LongConsumer progressListener) throws IOException {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      progressListener.accept(Files.size(entry));
+      log.info("Download cache hit: '{}'", fileUrl);
+      return entry;
+   }
+
+   // Failures of the download are reported to the waiting threads too
+   private static void await(CompletableFuture<Void> download, String fileUrl) throws IOException {
+      try {
+         download.get();
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+         String msg = String.format("Interrupted while waiting for the download of '%s'", fileUrl);
+         throw new FetchException(msg, exception);
+      } catch (ExecutionException exception) {
+         if (exception.getCause() instanceof IOException) {
+            throw (IOException) exception.getCause();
+         }
+         if (exception.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) exception.getCause();
+         }
+         throw new FetchException(String.format("The download of '%s' failed", fileUrl), exception.getCause());
+      }
+   }
+
+   /**
+    * Release a local copy obtained with {@link #acquire(String, LongConsumer)},
+    * entries are evicted if the cache is full. If the cache is disabled, the
+    * copy is deleted.
+    *
+    * @param localFile
+    *            the local copy.
+    */
+   void release(@NonNull Path localFile) {
+      if (maxSizeBytes > 0) {
+         unpin(localFile.getFileName().toString());
+         evictQuietly();
+         return;
+      }
+      try {
+         Files.deleteIfExists(localFile);
+         log.info("The file '{}' was removed", localFile);
+      } catch (Exception exception) {
+         log.warn("Could not delete the local file '{}'", localFile, exception);
+      }
+   }
+
+   private synchronized void pin(String key) {
+      pinnedEntries.merge(key, 1, Integer::sum);
+   }
+
+   private synchronized void unpin(String key) {
+      pinnedEntries.computeIfPresent(key, (ignored, count) -> count == 1 ? null : count - 1);
+   }
+
+   private void evictQuietly() {
+      try {
+         evict();
+      } catch (IOException exception) {
+         log.warn("Could not evict entries from the download cache", exception);
+      }
+   }
+
+   private synchronized void evict() throws IOException {
+      // Entries, partial downloads and their state are grouped by key
+      Map<String, CachedFile> files = new HashMap<>();
+      try (Stream<Path> paths = Files.list(cachePath)) {
+         for (Path path : (Iterable<Path>) paths::iterator) {
+            String fileName = path.getFileName().toString();
+            int extensionIndex = fileName.indexOf('.');
+            String key = extensionIndex < 0 ? fileName : fileName.substring(0, extensionIndex);
+            try {
+               CachedFile file = files.computeIfAbsent(key, CachedFile::new);
+               file.paths.add(path);
+               file.size += Files.size(path);
+               file.lastModified = Math.max(file.lastModified, Files.getLastModifiedTime(path).toMillis());
+            } catch (IOException exception) {
+               log.debug("Could not read the attributes of {}", path, exception);
+            }
+         }
+      }
+      long totalSize = files.values().stream() //
+            .mapToLong(file -> file.size) //
+            .sum();
+
+      List<CachedFile> candidates = new ArrayList<>(files.values());
+      candidates.sort(Comparator.comparingLong(file -> file.lastModified));
+      for (CachedFile file : candidates) {
+         if (totalSize <= maxSizeBytes) {
+            break;
+         }
+         if (pinnedEntries.containsKey(file.key)) {
+            continue;
+         }
+         for (Path path : file.paths) {
+            Files.deleteIfExists(path);
+         }
+         totalSize -= file.size;
+         log.info("Evicted {} from the download cache", file.key);
+      }
+   }
+
+   private static String computeKey(String fileUrl, @Nullable String validator) {
+      // Files without a validator expire when the time window changes
+      String version = validator != null ? validator : "expires:" + System.currentTimeMillis() / UNVALIDATED_TTL_MILLIS;
+      MessageDigest digest;
+      try {
+         digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException exception) {
+         throw new IllegalStateException("SHA-256 not available", exception);
+      }
+      byte[] hash = digest.digest((fileUrl + "\n" + version).getBytes(StandardCharsets.UTF_8));
+      StringBuilder builder = new StringBuilder(2 * hash.length);
+      for (byte value : hash) {
+         builder.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+      }
+      return builder.toString();
+   }
+
+   private static final class CachedFile {
+      private final String key;
+      private final List<Path> paths = new ArrayList<>();
+      private long size;
+      private long lastModified;
+
+      private CachedFile(String key) {
+         this.key = key;
+      }
+   }
+}
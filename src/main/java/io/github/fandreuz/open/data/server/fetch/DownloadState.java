@@ -0,0 +1,271 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent state of a ranged download, stored in a sidecar file next to the
+ * partially downloaded file.
+ * <p>
+ * The state records the byte ranges already written to the local file, and the
+ * validator (ETag or Last-Modified) of the remote file. A download is resumed
+ * only if the remote file has the same validator and length, the state is not
+ * persisted if the remote file has no validator. This class is thread-safe.
+ *
+ * @author fandreuz
+ */
+@Slf4j
+final class DownloadState {
+
+   private static final String STATE_EXTENSION = ".download-state";
+   private static final String URL_KEY = "url";
+   private static final String VALIDATOR_KEY = "validator";
+   private static final String LENGTH_KEY = "length";
+   private static final String RANGES_KEY = "ranges";
+   // The state is saved when this many bytes were written since the last save
+   private static final long SAVE_INTERVAL_BYTES = 16 * 1024 * 1024;
+
+   private final Path path;
+   private final String url;
+   @Nullable
+   private final String validator;
+   private final long length;
+   // Completed ranges (start -> end, exclusive), never overlapping nor adjacent
+   private final TreeMap<Long, Long> completed = new TreeMap<>();
+   private long unsavedBytes;
+
+   private DownloadState(Path path, String url, @Nullable String validator, long length) {
+      this.path = path;
+      this.url = url;
+      this.validator = validator;
+      this.length = length;
+   }
+
+   /**
+    * Load the state of the download of a remote file. If the state was saved
+    * for a different version of the remote file, or if the local file is
+    * missing, the download starts from scratch.
+    *
+    * @param localFile
+    *            local copy of the remote file.
+    * @param url
+    *            url of the remote file.
+    * @param validator
+    *            validator of the remote file, {@code null} if not available.
+    * @param length
+    *            length of the remote file.
+    * @return the state of the download.
+    */
+   static DownloadState load(@NonNull Path localFile, @NonNull String url, @Nullable String validator,
+         long length) {
+      DownloadState state = new DownloadState(stateFile(localFile), url, validator, length);
+      if (validator == null) {
+         // The download can't be resumed safely
+         state.delete();
+         return state;
+      }
+      if (!Files.exists(state.path)) {
+         return state;
+      }
+
+      Properties properties = new Properties();
+      try (Reader reader = Files.newBufferedReader(state.path)) {
+         properties.load(reader);
+         if (url.equals(properties.getProperty(URL_KEY)) && validator.equals(properties.getProperty(VALIDATOR_KEY))
+               && Long.toString(length).equals(properties.getProperty(LENGTH_KEY))
+               && Files.size(localFile) == length) {
+            state.parseRanges(properties.getProperty(RANGES_KEY, ""));
+            log.info("Resuming the download of '{}' ({} of {} bytes available)", url, state.getCompletedBytes(),
+                  length);
+         } else {
+            log.info("The partial download of '{}' is stale, restarting", url);
+         }
+      } catch (IOException | RuntimeException exception) {
+         log.warn("Could not read the state of the download of '{}', restarting", url, exception);
+         state.completed.clear();
+      }
+      return state;
+   }
+
+   /**
+    * Path of the sidecar file storing the state of the download of the given
+    * file.
+    *
+    * @param localFile
+    *            local copy of the remote file.
+    * @return path of the state file.
+    */
+   static Path stateFile(@NonNull Path localFile) {
+      return localFile.resolveSibling(localFile.getFileName() + STATE_EXTENSION);
+   }
+
+   /**
+    * Record that a range of bytes was written to the local file.
+    *
+    * @param start
+    *            first byte of the range.
+    * @param end
+    *            end of the range, exclusive.
+    * @return {@code true} if the state should be saved.
+    */
+   synchronized boolean complete(long start, long end) {
+      if (start >= end) {
+         return false;
+      }
+      unsavedBytes += end - start;
+
+      // Merge with overlapping or adjacent ranges
+      Map.Entry<Long, Long> previous = completed.floorEntry(start);
+      if (previous != null && previous.getValue() >= start) {
+         start = previous.getKey();
+         end = Math.max(end, previous.getValue());
+      }
+      Map.Entry<Long, Long> next;
+      while ((next = completed.ceilingEntry(start)) != null && next.getKey() <= end) {
+         end = Math.max(end, next.getValue());
+         completed.remove(next.getKey());
+      }
+      completed.put(start, end);
+      return unsavedBytes >= SAVE_INTERVAL_BYTES;
+   }
+
+   /**
+    * Find the ranges which were not downloaded yet.
+    *
+    * @return the missing ranges (start -> end, exclusive), sorted.
+    */
+   synchronized SortedMap<Long, Long> getMissingRanges() {
+      SortedMap<Long, Long> missing = new TreeMap<>();
+      long position = 0;
+      for (Map.Entry<Long, Long> range : completed.entrySet()) {
+         if (range.getKey() > position) {
+            missing.put(position, range.getKey());
+         }
+         position = range.getValue();
+      }
+      if (position < length) {
+         missing.put(position, length);
+      }
+      return missing;
+   }
+
+   /**
+    * Count the bytes which were downloaded.
+    *
+    * @return number of bytes available in the local file.
+    */
+   synchronized long getCompletedBytes() {
+      return completed.entrySet().stream() //
+            .mapToLong(range -> range.getValue() - range.getKey()) //
+            .sum();
+   }
+
+   /**
+    * Copy the ranges which were downloaded.
+    *
+    * @return the completed ranges (start -> end, exclusive), sorted.
+    */
+   synchronized SortedMap<Long, Long> getCompletedRanges() {
+      return new TreeMap<>(completed);
+   }
+
+   /**
+    * Store the state in the sidecar file. The state is replaced atomically.
+    */
+   void save() throws IOException {
+      save(getCompletedRanges());
+   }
+
+   /**
+    * Store the state in the sidecar file with the given completed ranges, e.g.
+    * the ranges which were flushed to the local file. The state is replaced
+    * atomically.
+    *
+    * @param ranges
+    *            completed ranges, as returned by {@link #getCompletedRanges()}.
+    */
+   synchronized void save(@NonNull SortedMap<Long, Long> ranges) throws IOException {
+      if (validator == null) {
+         return;
+      }
+      Properties properties = new Properties();
+      properties.setProperty(URL_KEY, url);
+      properties.setProperty(VALIDATOR_KEY, validator);
+      properties.setProperty(LENGTH_KEY, Long.toString(length));
+      properties.setProperty(RANGES_KEY, ranges.entrySet().stream() //
+            .map(range -> range.getKey() + "-" + range.getValue()) //
+            .collect(Collectors.joining(",")));
+
+      Path pending = path.resolveSibling(path.getFileName() + ".tmp");
+      try (Writer writer = Files.newBufferedWriter(pending)) {
+         properties.store(writer, null);
+      }
+      Files.move(pending, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      unsavedBytes = 0;
+   }
+
+   /**
+    * Delete the sidecar file, e.g. when the download is completed.
+    */
+   void delete() {
+      deleteStateFile(path);
+   }
+
+   /**
+    * Delete the state of the download of the given file, if any.
+    *
+    * @param localFile
+    *            local copy of the remote file.
+    */
+   static void delete(@NonNull Path localFile) {
+      deleteStateFile(stateFile(localFile));
+   }
+
+   /**
+    * Check whether a resumable download of the given file was interrupted.
+    *
+    * @param localFile
+    *            local copy of the remote file.
+    * @return {@code true} if the state of the download is available.
+    */
+   static boolean exists(@NonNull Path localFile) {
+      return Files.exists(stateFile(localFile));
+   }
+
+   private static void deleteStateFile(Path state) {
+      try {
+         Files.deleteIfExists(state);
+      } catch (IOException exception) {
+         log.warn("Could not delete the download state '{}'", state, exception);
+      }
+   }
+
+   private void parseRanges(@Nullable String ranges) {
+      if (ranges == null || ranges.isBlank()) {
+         return;
+      }
+      for (String range : ranges.split(",")) {
+         String[] bounds = range.split("-");
+         long start = Long.parseLong(bounds[0]);
+         long end = Long.parseLong(bounds[1]);
+         if (start < 0 || end > length) {
+            throw new IllegalArgumentException("Invalid range: " + range);
+         }
+         complete(start, end);
+      }
+      unsavedBytes = 0;
+   }
+}
@@ -1,13 +1,36 @@
 package io.github.fandreuz.open.data.server.fetch;
 
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
 
+import jakarta.annotation.Nullable;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
@@ -16,29 +39,72 @@ import lombok.extern.slf4j.Slf4j;
  * <p>
  * This class is not safe with respect to concurrent download of files with the
  * same name. Users should make sure this does not happen.
+ * <p>
+ * Large files are downloaded with several connections, each one fetching a
+ * segment of the file with an HTTP range request and writing it at its
+ * position in the local file. If the server does not support range requests,
+ * the file is downloaded with a single connection. Requests are sent by
+ * {@link HttpFetchClient}.
+ * <p>
+ * Failed downloads are retried with exponential backoff. The byte ranges
+ * already downloaded are recorded in a sidecar file (see
+ * {@link DownloadState}), thus a download is resumed by the next attempt, or by
+ * the next import of the same file, as long as the remote file did not change.
  *
  * @author fandreuz
  */
 @Slf4j
 final class DownloadUtils {
 
+   private static final String CONNECTIONS_KEY = "dataset.download.connections";
+   private static final int CONNECTIONS = Math.max(1, Integer.getInteger(CONNECTIONS_KEY, 4));
+   private static final String MIN_SEGMENT_SIZE_MB_KEY = "dataset.download.min.segment.size.mb";
+   private static final long MIN_SEGMENT_SIZE = Math.max(1, Integer.getInteger(MIN_SEGMENT_SIZE_MB_KEY, 8)) * 1024L
+         * 1024L;
+   private static final int SEGMENT_BUFFER_SIZE = 64 * 1024;
+   private static final String RETRIES_KEY = "dataset.download.retries";
+   private static final int RETRIES = Math.max(0, Integer.getInteger(RETRIES_KEY, 3));
+   private static final String RETRY_BACKOFF_MILLIS_KEY = "dataset.download.retry.backoff.ms";
+   private static final long RETRY_BACKOFF_MILLIS = Math.max(1, Long.getLong(RETRY_BACKOFF_MILLIS_KEY, 1000L));
+
+   // Runs the segments of ranged downloads, the caller waits for them
+   private static final ExecutorService SEGMENT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "download-segment");
+      thread.setDaemon(true);
+      return thread;
+   });
+
    /**
-    * Try to read the file at {@code fileUrl}.
+    * Try to read the file at {@code fileUrl}. The file is stored in the working
+    * directory.
     *
     * @param fileUrl
     *            url to the file to be read.
+    * @param progressListener
+    *            receives the number of bytes read, as they're read. It may be
+    *            called concurrently by several threads.
     * @return the file content if available.
     */
-   static Path download(@NonNull String fileUrl) {
+   static Path download(@NonNull String fileUrl, @NonNull LongConsumer progressListener) {
+      return download(fileUrl, Path.of(extractFileName(fileUrl)), progressListener);
+   }
+
+   /**
+    * Try to read the file at {@code fileUrl} into the given local file.
+    *
+    * @param fileUrl
+    *            url to the file to be read.
+    * @param localFile
+    *            destination of the content of the file.
+    * @param progressListener
+    *            receives the number of bytes read, as they're read. It may be
+    *            called concurrently by several threads.
+    * @return the file content if available.
+    */
+   static Path download(@NonNull String fileUrl, @NonNull Path localFile, @NonNull LongConsumer progressListener) {
       log.info("Downloading URL '{}'", fileUrl);
-      URL url;
-      try {
-         url = new URL(fileUrl);
-      } catch (Exception exception) {
-         throw new FetchException("An error occurred while parsing the URL", exception);
-      }
+      URI url = parseUrl(fileUrl);
 
-      Path localFile = Path.of(extractFileName(fileUrl));
       if (!Files.exists(localFile)) {
          try {
             Files.createFile(localFile);
@@ -49,25 +115,356 @@ final class DownloadUtils {
       }
 
       log.info("Target file name for '{}': '{}'", fileUrl, localFile);
-      try (ReadableByteChannel readableByteChannel = Channels.newChannel(url.openStream());
-            FileOutputStream fileOutputStream = new FileOutputStream(localFile.toFile());
-            FileChannel fileChannel = fileOutputStream.getChannel() //
-      ) {
-         fileChannel.transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-      } catch (Exception exception) {
+      for (int attempt = 0;; ++attempt) {
+         try {
+            downloadOnce(url, localFile, progressListener, attempt == 0);
+            break;
+         } catch (Exception exception) {
+            if (exception instanceof InterruptedException) {
+               Thread.currentThread().interrupt();
+            }
+            if (attempt >= RETRIES || Thread.currentThread().isInterrupted()
+                  || exception instanceof FileNotFoundException) {
+               throw abortDownload(fileUrl, localFile, exception);
+            }
+            long backoff = RETRY_BACKOFF_MILLIS << Math.min(attempt, 16);
+            log.warn("Download of '{}' failed (attempt {} of {}), retrying in {} ms", fileUrl, attempt + 1,
+                  RETRIES + 1, backoff, exception);
+            try {
+               Thread.sleep(backoff);
+            } catch (InterruptedException interruptedException) {
+               Thread.currentThread().interrupt();
+               throw abortDownload(fileUrl, localFile, interruptedException);
+            }
+         }
+      }
+
+      log.info("Download completed: '{}'", fileUrl);
+      return localFile;
+   }
+
+   private static void downloadOnce(URI url, Path localFile, LongConsumer progressListener, boolean firstAttempt)
+         throws IOException, InterruptedException {
+      RemoteFile remoteFile = fetchRemoteFile(url);
+      if (remoteFile == null) {
+         // Not resumable
+         DownloadState.delete(localFile);
+         downloadStream(url, localFile, progressListener);
+         return;
+      }
+
+      DownloadState state = DownloadState.load(localFile, url.toString(), remoteFile.validator, remoteFile.length);
+      long resumedBytes = state.getCompletedBytes();
+      if (firstAttempt && resumedBytes > 0) {
+         // Bytes downloaded by a previous import
+         progressListener.accept(resumedBytes);
+      }
+      downloadRanges(url, localFile, remoteFile, state, progressListener);
+      state.delete();
+   }
+
+   private static FetchException abortDownload(String fileUrl, Path localFile, Exception exception) {
+      if (DownloadState.exists(localFile)) {
+         log.info("The partially downloaded file '{}' is kept, the download will be resumed", localFile);
+      } else {
          try {
             Files.deleteIfExists(localFile);
             log.info("The file '{}' was removed", localFile);
          } catch (Exception deleteException) {
             log.warn("Could not delete the partially downloaded file '{}' (URL='{}')", localFile, fileUrl);
          }
+      }
+
+      String msg = String.format("An error occurred while reading the file at '%s'", fileUrl);
+      return new FetchException(msg, exception);
+   }
+
+   private static void downloadStream(URI url, Path localFile, LongConsumer progressListener)
+         throws IOException, InterruptedException {
+      HttpResponse<InputStream> response = HttpFetchClient.send(HttpFetchClient.newRequest(url).build());
+      try (ReadableByteChannel readableByteChannel = Channels.newChannel(
+            new ProgressInputStream(openBody(url, response, HttpURLConnection.HTTP_OK), progressListener));
+            FileOutputStream fileOutputStream = new FileOutputStream(localFile.toFile());
+            FileChannel fileChannel = fileOutputStream.getChannel() //
+      ) {
+         fileChannel.transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
+      }
+   }
+
+   private static void downloadRanges(URI url, Path localFile, RemoteFile remoteFile, DownloadState state,
+         LongConsumer progressListener) throws IOException, InterruptedException {
+      SortedMap<Long, Long> missingRanges = state.getMissingRanges();
+      long missingBytes = missingRanges.entrySet().stream() //
+            .mapToLong(range -> range.getValue() - range.getKey()) //
+            .sum();
+      long segmentSize = Math.max(MIN_SEGMENT_SIZE, (missingBytes + CONNECTIONS - 1) / CONNECTIONS);
+      Queue<long[]> segments = new ConcurrentLinkedQueue<>();
+      for (Map.Entry<Long, Long> range : missingRanges.entrySet()) {
+         for (long start = range.getKey(); start < range.getValue(); start += segmentSize) {
+            segments.add(new long[] { start, Math.min(start + segmentSize, range.getValue()) });
+         }
+      }
+      int connections = Math.min(CONNECTIONS, segments.size());
+      log.info("Downloading {} of {} bytes of '{}' with {} connections", missingBytes, remoteFile.length, url,
+            connections);
+
+      boolean resume = state.getCompletedBytes() > 0;
+      try (FileChannel channel = resume
+            ? FileChannel.open(localFile, StandardOpenOption.WRITE)
+            : FileChannel.open(localFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+         if (!resume) {
+            // Preallocate the file, each segment is written at its position
+            channel.write(ByteBuffer.allocate(1), remoteFile.length - 1);
+         }
+
+         // Set when a segment fails, the other segments stop at their next read.
+         // Interrupting them would close the shared channel
+         AtomicBoolean failed = new AtomicBoolean();
+         List<Future<?>> futures = new ArrayList<>(connections);
+         for (int index = 0; index < connections; ++index) {
+            futures.add(SEGMENT_EXECUTOR.submit(() -> {
+               long[] segment;
+               while (!failed.get() && (segment = segments.poll()) != null) {
+                  try {
+                     downloadSegment(url, remoteFile.validator, channel, segment[0], segment[1], state,
+                           progressListener, failed);
+                  } catch (Exception exception) {
+                     failed.set(true);
+                     throw exception;
+                  }
+               }
+               return null;
+            }));
+         }
+         try {
+            awaitSegments(futures, failed);
+         } finally {
+            // All the segments stopped, the channel is still open
+            saveState(state, channel);
+         }
+      }
+   }
+
+   // Wait for all the segments, even if one of them failed
+   private static void awaitSegments(List<Future<?>> futures, AtomicBoolean failed)
+         throws IOException, InterruptedException {
+      Throwable failure = null;
+      boolean interrupted = false;
+      for (Future<?> future : futures) {
+         while (true) {
+            try {
+               future.get();
+               break;
+            } catch (ExecutionException exception) {
+               failure = failure == null ? exception.getCause() : failure;
+               break;
+            } catch (InterruptedException exception) {
+               interrupted = true;
+               failed.set(true);
+            }
+         }
+      }
+      if (interrupted) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedException("Interrupted while downloading the segments");
+      }
+      if (failure != null) {
+         throw new IOException("An error occurred while downloading a segment", failure);
+      }
+   }
+
+   private static void downloadSegment(URI url, @Nullable String validator, FileChannel channel, long start,
+         long end, DownloadState state, LongConsumer progressListener, AtomicBoolean failed)
+         throws IOException, InterruptedException {
+      HttpRequest.Builder request = HttpFetchClient.newRequest(url) //
+            .header("Range", String.format("bytes=%s-%s", start, end - 1));
+      if (validator != null) {
+         // The whole file is sent if it changed, the segment is rejected
+         request.header("If-Range", validator);
+      }
+      HttpResponse<InputStream> response = HttpFetchClient.send(request.build());
 
+      try (InputStream inputStream = new ProgressInputStream(
+            openBody(url, response, HttpURLConnection.HTTP_PARTIAL), progressListener)) {
+         byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+         long position = start;
+         int count;
+         while (position < end && !failed.get()
+               && (count = inputStream.read(buffer, 0, (int) Math.min(buffer.length, end - position))) != -1) {
+            ByteBuffer content = ByteBuffer.wrap(buffer, 0, count);
+            while (content.hasRemaining()) {
+               position += channel.write(content, position);
+            }
+            if (state.complete(position - count, position)) {
+               saveState(state, channel);
+            }
+         }
+         if (position != end && !failed.get()) {
+            throw new IOException(String.format("The range %s-%s ended at %s", start, end - 1, position));
+         }
+      }
+   }
+
+   // The body of the response, closed if the status is not the expected one
+   private static InputStream openBody(URI url, HttpResponse<InputStream> response, int expectedStatus)
+         throws IOException {
+      if (response.statusCode() == expectedStatus) {
+         return response.body();
+      }
+      response.body().close();
+      if (response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+         throw new FileNotFoundException(url.toString());
+      }
+      throw new IOException(String.format("Unexpected response code for '%s': %s", url, response.statusCode()));
+   }
+
+   // Only the ranges completed before the content is flushed are saved, thus
+   // saved ranges are never lost. Nothing is saved if the flush fails
+   private static void saveState(DownloadState state, FileChannel channel) {
+      try {
+         SortedMap<Long, Long> completed = state.getCompletedRanges();
+         channel.force(false);
+         state.save(completed);
+      } catch (IOException exception) {
+         log.warn("Could not save the state of the download", exception);
+      }
+   }
+
+   // Length and validator of the file at the given URL, or null if range
+   // requests are not supported
+   @Nullable
+   private static RemoteFile fetchRemoteFile(URI url) throws IOException, InterruptedException {
+      HttpResponse<InputStream> response = HttpFetchClient.send(HttpFetchClient.newRequest(url) //
+            .header("Range", "bytes=0-0") //
+            .build());
+      try (InputStream body = response.body()) {
+         if (response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            throw new FileNotFoundException(url.toString());
+         }
+         if (response.statusCode() != HttpURLConnection.HTTP_PARTIAL) {
+            log.info("Range requests not supported for '{}'", url);
+            return null;
+         }
+         // Content-Range: bytes 0-0/<length>
+         String contentRange = response.headers().firstValue("Content-Range").orElse(null);
+         int slashIndex = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+         long length;
+         try {
+            length = slashIndex < 0 ? -1 : Long.parseLong(contentRange.substring(slashIndex + 1).strip());
+         } catch (NumberFormatException exception) {
+            length = -1;
+         }
+         if (length <= 0) {
+            log.info("Unknown content length for '{}': '{}'", url, contentRange);
+            return null;
+         }
+
+         // Weak ETags can't be used in If-Range
+         String validator = response.headers().firstValue("ETag").orElse(null);
+         if (validator == null || validator.startsWith("W/")) {
+            validator = response.headers().firstValue("Last-Modified").orElse(null);
+         }
+         return new RemoteFile(length, validator);
+      }
+   }
+
+   /**
+    * Open a stream to the file at {@code fileUrl}, the content is not stored
+    * locally.
+    *
+    * @param fileUrl
+    *            url to the file to be read.
+    * @param progressListener
+    *            receives the number of bytes read, as they're read.
+    * @return a stream of the file content, owned by the caller.
+    */
+   static InputStream openStream(@NonNull String fileUrl, @NonNull LongConsumer progressListener) {
+      log.info("Opening a stream to URL '{}'", fileUrl);
+      try {
+         URI url = parseUrl(fileUrl);
+         // The stream is held for the whole import, it has its own slot
+         HttpResponse<InputStream> response = HttpFetchClient.sendStream(HttpFetchClient.newRequest(url).build());
+         return new BufferedInputStream(
+               new ProgressInputStream(openBody(url, response, HttpURLConnection.HTTP_OK), progressListener));
+      } catch (FetchException exception) {
+         throw exception;
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+         String msg = String.format("Interrupted while opening the file at '%s'", fileUrl);
+         throw new FetchException(msg, exception);
+      } catch (Exception exception) {
          String msg = String.format("An error occurred while reading the file at '%s'", fileUrl);
          throw new FetchException(msg, exception);
       }
+   }
 
-      log.info("Download completed: '{}'", fileUrl);
-      return localFile;
+   /**
+    * Find the size of the file at {@code fileUrl} without downloading it.
+    *
+    * @param fileUrl
+    *            url to the file.
+    * @return the size of the file in bytes, or -1 if the server does not provide
+    *         it.
+    */
+   static long fetchContentLength(@NonNull String fileUrl) {
+      HttpResponse<Void> response = head(fileUrl, "size");
+      if (response == null) {
+         return -1;
+      }
+      return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+   }
+
+   /**
+    * Find the validator of the file at {@code fileUrl}, i.e. its ETag or its
+    * Last-Modified date.
+    *
+    * @param fileUrl
+    *            url to the file.
+    * @return the validator, or {@code null} if the server does not provide it.
+    */
+   @Nullable
+   static String fetchValidator(@NonNull String fileUrl) {
+      HttpResponse<Void> response = head(fileUrl, "validator");
+      if (response == null) {
+         return null;
+      }
+      return response.headers().firstValue("ETag") //
+            .orElseGet(() -> response.headers().firstValue("Last-Modified").orElse(null));
+   }
+
+   // The response to a HEAD request, or null if the status is unexpected
+   @Nullable
+   private static HttpResponse<Void> head(String fileUrl, String purpose) {
+      try {
+         HttpResponse<Void> response = HttpFetchClient.sendDiscarding(HttpFetchClient.newRequest(parseUrl(fileUrl)) //
+               .method("HEAD", HttpRequest.BodyPublishers.noBody()) //
+               .build());
+         if (response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            throw new FetchException(String.format("File not found: '%s'", fileUrl));
+         }
+         if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            log.warn("Unexpected response code for HEAD '{}': {}", fileUrl, response.statusCode());
+            return null;
+         }
+         return response;
+      } catch (FetchException exception) {
+         throw exception;
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+         String msg = String.format("Interrupted while reading the %s of the file at '%s'", purpose, fileUrl);
+         throw new FetchException(msg, exception);
+      } catch (Exception exception) {
+         String msg = String.format("An error occurred while reading the %s of the file at '%s'", purpose, fileUrl);
+         throw new FetchException(msg, exception);
+      }
+   }
+
+   private static URI parseUrl(@NonNull String fileUrl) {
+      try {
+         return new URL(fileUrl).toURI();
+      } catch (Exception exception) {
+         throw new FetchException("An error occurred while parsing the URL", exception);
+      }
    }
 
    // TODO It's not necessarily true that the URL contains a proper file name
@@ -75,4 +472,16 @@ final class DownloadUtils {
       int lastSlashIndex = fileUrl.lastIndexOf('/');
       return fileUrl.substring(lastSlashIndex + 1);
    }
+
+   private static final class RemoteFile {
+      private final long length;
+      // ETag or Last-Modified, null if not provided by the server
+      @Nullable
+      private final String validator;
+
+      private RemoteFile(long length, @Nullable String validator) {
+         this.length = length;
+         this.validator = validator;
+      }
+   }
 }
@@ -0,0 +1,307 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HTTP client shared by all the downloads.
+ * <p>
+ * Connections are kept alive and reused, HTTP/2 is used when the server
+ * supports it (requests to the same host are then multiplexed on a single
+ * connection). The number of requests in flight to the same host is bounded,
+ * a request holds its slot until its response body is closed. Long-lived
+ * streams (e.g. datasets imported while they're downloaded) have their own
+ * slots, thus they never starve short requests. Waiting for a slot is bounded
+ * as well.
+ * <p>
+ * The response timeout covers only the headers. A body is closed by a
+ * watchdog if a read waits for too long without receiving any data.
+ *
+ * @author fandreuz
+ */
+@Slf4j
+final class HttpFetchClient {
+
+   private static final String CONNECT_TIMEOUT_SECONDS_KEY = "dataset.download.connect.timeout.seconds";
+   private static final Duration CONNECT_TIMEOUT = Duration
+         .ofSeconds(Math.max(1, Integer.getInteger(CONNECT_TIMEOUT_SECONDS_KEY, 30)));
+   private static final String RESPONSE_TIMEOUT_SECONDS_KEY = "dataset.download.response.timeout.seconds";
+   private static final Duration RESPONSE_TIMEOUT = Duration
+         .ofSeconds(Math.max(1, Integer.getInteger(RESPONSE_TIMEOUT_SECONDS_KEY, 300)));
+   private static final String MAX_REQUESTS_PER_HOST_KEY = "dataset.download.max.requests.per.host";
+   static final int MAX_REQUESTS_PER_HOST = Math.max(1, Integer.getInteger(MAX_REQUESTS_PER_HOST_KEY, 8));
+   private static final String MAX_STREAMS_PER_HOST_KEY = "dataset.download.max.streams.per.host";
+   static final int MAX_STREAMS_PER_HOST = Math.max(1, Integer.getInteger(MAX_STREAMS_PER_HOST_KEY, 4));
+   private static final String SLOT_TIMEOUT_SECONDS_KEY = "dataset.download.slot.timeout.seconds";
+   private static final Duration SLOT_TIMEOUT = Duration
+         .ofSeconds(Math.max(1, Integer.getInteger(SLOT_TIMEOUT_SECONDS_KEY, 600)));
+   private static final String IDLE_TIMEOUT_SECONDS_KEY = "dataset.download.idle.timeout.seconds";
+   private static final Duration IDLE_TIMEOUT = Duration
+         .ofSeconds(Math.max(1, Integer.getInteger(IDLE_TIMEOUT_SECONDS_KEY, 60)));
+
+   private static final HttpClient CLIENT = HttpClient.newBuilder() //
+         .version(HttpClient.Version.HTTP_2) //
+         .followRedirects(HttpClient.Redirect.NORMAL) //
+         .connectTimeout(CONNECT_TIMEOUT) //
+         .executor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-fetch-client");
+            thread.setDaemon(true);
+            return thread;
+         })) //
+         .build();
+
+   // Closes the bodies whose reads wait for too long
+   private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "http-fetch-watchdog");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   // Slots of each host (host:port)
+   private static final Map<String, Semaphore> HOST_SLOTS = new ConcurrentHashMap<>();
+   // Slots of the long-lived streams of each host (host:port)
+   private static final Map<String, Semaphore> HOST_STREAM_SLOTS = new ConcurrentHashMap<>();
+
+   /**
+    * Start building a request to the given URL.
+    *
+    * @param url
+    *            target of the request.
+    * @return the builder of the request.
+    */
+   static HttpRequest.Builder newRequest(@NonNull URI url) {
+      return HttpRequest.newBuilder(url).timeout(RESPONSE_TIMEOUT);
+   }
+
+   /**
+    * Send a request, waiting for a free slot of the host first. The slot is
+    * released when the body of the response is closed, thus the body must
+    * always be closed.
+    *
+    * @param request
+    *            the request.
+    * @return the response, whose body is available as a stream.
+    */
+   static HttpResponse<InputStream> send(@NonNull HttpRequest request) throws IOException, InterruptedException {
+      return send(request, IDLE_TIMEOUT);
+   }
+
+   /**
+    * Send a request, waiting for a free slot of the host first.
+    *
+    * @param request
+    *            the request.
+    * @param idleTimeout
+    *            maximum time a read of the body may wait for data.
+    * @return the response, whose body is available as a stream.
+    * @see #send(HttpRequest)
+    */
+   static HttpResponse<InputStream> send(@NonNull HttpRequest request, @NonNull Duration idleTimeout)
+         throws IOException, InterruptedException {
+      return send(request, acquireSlot(HOST_SLOTS, MAX_REQUESTS_PER_HOST, request.uri()), idleTimeout);
+   }
+
+   /**
+    * Send a request whose body is consumed for a long time, e.g. while a
+    * dataset is imported from it. The request waits for a free slot among the
+    * stream slots of the host, which are not shared with other requests.
+    *
+    * @param request
+    *            the request.
+    * @return the response, whose body is available as a stream.
+    * @see #send(HttpRequest)
+    */
+   static HttpResponse<InputStream> sendStream(@NonNull HttpRequest request)
+         throws IOException, InterruptedException {
+      return send(request, acquireSlot(HOST_STREAM_SLOTS, MAX_STREAMS_PER_HOST, request.uri()), IDLE_TIMEOUT);
+   }
+
+   private static HttpResponse<InputStream> send(HttpRequest request, Slot slot, Duration idleTimeout)
+         throws IOException, InterruptedException {
+      try {
+         return CLIENT.send(request, responseInfo -> HttpResponse.BodySubscribers.mapping(
+               HttpResponse.BodySubscribers.ofInputStream(), body -> new SlotInputStream(body, slot, idleTimeout)));
+      } catch (IOException | InterruptedException | RuntimeException exception) {
+         slot.release();
+         throw exception;
+      }
+   }
+
+   /**
+    * Send a request whose response has no body (e.g. {@code HEAD}), waiting for
+    * a free slot of the host first.
+    *
+    * @param request
+    *            the request.
+    * @return the response.
+    */
+   static HttpResponse<Void> sendDiscarding(@NonNull HttpRequest request) throws IOException, InterruptedException {
+      Slot slot = acquireSlot(HOST_SLOTS, MAX_REQUESTS_PER_HOST, request.uri());
+      try {
+         return CLIENT.send(request, HttpResponse.BodyHandlers.discarding());
+      } finally {
+         slot.release();
+      }
+   }
+
+   /**
+    * Count the requests waiting for a free slot of the host of the given URL.
+    *
+    * @param url
+    *            url on the host.
+    * @return an estimate of the number of waiting requests.
+    */
+   static int countWaitingRequests(@NonNull URI url) {
+      Semaphore slots = HOST_SLOTS.get(hostOf(url));
+      return slots == null ? 0 : slots.getQueueLength();
+   }
+
+   private static Slot acquireSlot(Map<String, Semaphore> hostSlots, int maxSlots, URI url)
+         throws IOException, InterruptedException {
+      String host = hostOf(url);
+      Semaphore slots = hostSlots.computeIfAbsent(host, key -> new Semaphore(maxSlots, true));
+      if (!slots.tryAcquire()) {
+         log.debug("Waiting for a free slot to send a request to {}", host);
+         if (!slots.tryAcquire(SLOT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IOException(String.format("No free slot to send a request to %s within %s seconds", host,
+                  SLOT_TIMEOUT.toSeconds()));
+         }
+      }
+      return new Slot(slots);
+   }
+
+   private static String hostOf(URI url) {
+      return url.getHost() + ":" + url.getPort();
+   }
+
+   // Released at most once
+   private static final class Slot {
+      private final Semaphore slots;
+      private final AtomicBoolean released = new AtomicBoolean();
+
+      private Slot(Semaphore slots) {
+         this.slots = slots;
+      }
+
+      private void release() {
+         if (released.compareAndSet(false, true)) {
+            slots.release();
+         }
+      }
+   }
+
+   // Releases the slot when closed, and closes itself when a read waits for
+   // longer than the idle timeout
+   private static final class SlotInputStream extends FilterInputStream {
+      private final Slot slot;
+      private final Duration idleTimeout;
+      // Start of the pending read, meaningful only while reading
+      private volatile long readStart;
+      private volatile boolean reading;
+      private volatile boolean timedOut;
+      // Guarded by this
+      private boolean closed;
+      private ScheduledFuture<?> watchdog;
+
+      private SlotInputStream(InputStream in, Slot slot, Duration idleTimeout) {
+         super(in);
+         this.slot = slot;
+         this.idleTimeout = idleTimeout;
+         scheduleWatchdog(idleTimeout.toNanos());
+      }
+
+      @Override
+      public int read() throws IOException {
+         beginRead();
+         try {
+            return super.read();
+         } catch (IOException exception) {
+            throw translate(exception);
+         } finally {
+            reading = false;
+         }
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         beginRead();
+         try {
+            return super.read(b, off, len);
+         } catch (IOException exception) {
+            throw translate(exception);
+         } finally {
+            reading = false;
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         synchronized (this) {
+            closed = true;
+            if (watchdog != null) {
+               watchdog.cancel(false);
+            }
+         }
+         try {
+            super.close();
+         } finally {
+            slot.release();
+         }
+      }
+
+      private void beginRead() {
+         readStart = System.nanoTime();
+         reading = true;
+      }
+
+      private IOException translate(IOException exception) {
+         if (!timedOut) {
+            return exception;
+         }
+         String msg = String.format("No data received for %s seconds", idleTimeout.toSeconds());
+         return new IOException(msg, exception);
+      }
+
+      private synchronized void scheduleWatchdog(long delayNanos) {
+         if (!closed) {
+            watchdog = WATCHDOG.schedule(this::checkIdle, delayNanos, TimeUnit.NANOSECONDS);
+         }
+      }
+
+      private void checkIdle() {
+         long delay = idleTimeout.toNanos();
+         if (reading) {
+            long waited = System.nanoTime() - readStart;
+            if (waited >= delay) {
+               log.warn("No data received for {} seconds, closing the response body", idleTimeout.toSeconds());
+               timedOut = true;
+               try {
+                  close();
+               } catch (IOException exception) {
+                  log.debug("Could not close the response body", exception);
+               }
+               return;
+            }
+            delay -= waited;
+         }
+         scheduleWatchdog(delay);
+      }
+   }
+}
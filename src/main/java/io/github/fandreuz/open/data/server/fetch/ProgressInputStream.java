@@ -0,0 +1,64 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import lombok.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.function.LongConsumer;
+
+/**
+ * Input stream which reports the number of bytes read.
+ * <p>
+ * Reads fail if the reading thread was interrupted, this makes a blocking
+ * transfer cancellable even when the underlying stream ignores interrupts
+ * (e.g. sockets).
+ *
+ * @author fandreuz
+ */
+final class ProgressInputStream extends FilterInputStream {
+
+   private final LongConsumer progressListener;
+
+   ProgressInputStream(@NonNull InputStream inputStream, @NonNull LongConsumer progressListener) {
+      super(inputStream);
+      this.progressListener = progressListener;
+   }
+
+   @Override
+   public int read() throws IOException {
+      checkInterrupted();
+      int value = super.read();
+      if (value != -1) {
+         progressListener.accept(1);
+      }
+      return value;
+   }
+
+   @Override
+   public int read(byte[] buffer, int offset, int length) throws IOException {
+      checkInterrupted();
+      int count = super.read(buffer, offset, length);
+      if (count > 0) {
+         progressListener.accept(count);
+      }
+      return count;
+   }
+
+   @Override
+   public long skip(long count) throws IOException {
+      checkInterrupted();
+      long skipped = super.skip(count);
+      if (skipped > 0) {
+         progressListener.accept(skipped);
+      }
+      return skipped;
+   }
+
+   private static void checkInterrupted() throws InterruptedIOException {
+      if (Thread.currentThread().isInterrupted()) {
+         throw new InterruptedIOException("The transfer was interrupted");
+      }
+   }
+}
@@ -18,6 +18,16 @@ public interface UrlBuilderService {
     */
    String getCollectionUrl(@NonNull String collectionName);
 
+   /**
+    * Get the URL to the machine-readable record of the given collection, which
+    * lists its files.
+    *
+    * @param collectionName
+    *            collection name.
+    * @return URL to the record of the collection.
+    */
+   String getCollectionRecordUrl(@NonNull String collectionName);
+
    /**
     * Get the URL to the given dataset file.
     *
@@ -0,0 +1,66 @@
+package io.github.fandreuz.open.data.server.fetch.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.fandreuz.open.data.server.fetch.CollectionFileListService;
+import io.github.fandreuz.open.data.server.fetch.FetchException;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Implementation of {@link CollectionFileListService} for the JSON records of
+ * CERN Open data collections.
+ *
+ * @author fandreuz
+ */
+@Singleton
+@Slf4j
+final class CernCollectionFileListService implements CollectionFileListService {
+
+   // Both layouts are served by the portal, depending on the record
+   private static final List<String> FILES_FIELDS = List.of("files", "_files");
+
+   private static final ObjectMapper objectMapper = new ObjectMapper();
+
+   @Override
+   public SortedMap<String, Long> listFiles(@NonNull String collectionId, @NonNull Path recordFile) {
+      JsonNode record;
+      try {
+         record = objectMapper.readTree(recordFile.toFile());
+      } catch (Exception exception) {
+         throw new FetchException("An error occurred while parsing the record of the collection", exception);
+      }
+
+      SortedMap<String, Long> files = new TreeMap<>();
+      JsonNode metadata = record.path("metadata");
+      for (String field : FILES_FIELDS) {
+         for (JsonNode file : metadata.path(field)) {
+            String fileName = extractFileName(file);
+            if (fileName != null) {
+               files.put(fileName, file.path("size").asLong(0));
+            }
+         }
+      }
+      if (files.isEmpty()) {
+         throw new FetchException(String.format("No files found in the record of the collection %s", collectionId));
+      }
+      log.info("Found {} files in the collection {}", files.size(), collectionId);
+      return files;
+   }
+
+   private static String extractFileName(JsonNode file) {
+      String key = file.path("key").asText("");
+      if (key.isEmpty()) {
+         // e.g. root://eospublic.cern.ch//eos/opendata/cms/qcd.root
+         key = file.path("uri").asText("");
+      }
+      String fileName = key.substring(key.lastIndexOf('/') + 1);
+      return fileName.isEmpty() ? null : fileName;
+   }
+}
@@ -1,8 +1,8 @@
 package io.github.fandreuz.open.data.server.fetch.impl;
 
+import io.github.fandreuz.open.data.server.fetch.DatasetMetadataBuilderService;
 import io.github.fandreuz.open.data.server.fetch.FetchException;
 import io.github.fandreuz.open.data.server.fetch.FileTypeNotRecognizedException;
-import io.github.fandreuz.open.data.server.fetch.MetadataBuilderService;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetType;
 import jakarta.inject.Singleton;
@@ -13,12 +13,13 @@ import java.time.Instant;
 import lombok.NonNull;
 
 /**
- * Implementation of {@link MetadataBuilderService} for CERN Open data datasets.
+ * Implementation of {@link DatasetMetadataBuilderService} for CERN Open data
+ * datasets.
  *
  * @author fandreuz
  */
 @Singleton
-final class CernDatasetMetadataBuilderService implements MetadataBuilderService<DatasetMetadata> {
+final class CernDatasetMetadataBuilderService implements DatasetMetadataBuilderService {
 
    // Uniform Resource Name (URN)
    // schema:namespace:name
@@ -26,16 +27,19 @@ final class CernDatasetMetadataBuilderService implements MetadataBuilderService<
 
    @Override
    public DatasetMetadata buildMetadata(@NonNull String collectionId, @NonNull Path file) {
-      String fileName = file.toFile().getName();
-      String uid = makeDatasetUid(collectionId, fileName);
-      DatasetType type = findDatasetType(fileName);
-
       long sizeInBytes;
       try (FileChannel imageFileChannel = FileChannel.open(file)) {
          sizeInBytes = imageFileChannel.size();
       } catch (Exception exception) {
          throw new FetchException("An exception occurred while building metadata", exception);
       }
+      return buildMetadata(collectionId, file.toFile().getName(), sizeInBytes);
+   }
+
+   @Override
+   public DatasetMetadata buildMetadata(@NonNull String collectionId, @NonNull String fileName, long sizeInBytes) {
+      String uid = makeDatasetUid(collectionId, fileName);
+      DatasetType type = findDatasetType(fileName);
       return DatasetMetadata.builder() //
             .datasetId(uid) //
             .fileName(fileName) //
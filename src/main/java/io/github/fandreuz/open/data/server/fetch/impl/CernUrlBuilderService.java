@@ -13,6 +13,7 @@ import lombok.NonNull;
 final class CernUrlBuilderService implements UrlBuilderService {
 
    private static final String COLLECTION_URL_PATTERN = "https://opendata.cern.ch/record/%s";
+   private static final String COLLECTION_RECORD_URL_PATTERN = "https://opendata.cern.ch/api/records/%s";
    private static final String BASE_URL_FILE_PATTERN = "https://opendata.cern.ch/record/%s/files/%s";
 
    @Override
@@ -20,6 +21,11 @@ final class CernUrlBuilderService implements UrlBuilderService {
       return String.format(COLLECTION_URL_PATTERN, collectionName);
    }
 
+   @Override
+   public String getCollectionRecordUrl(@NonNull String collectionName) {
+      return String.format(COLLECTION_RECORD_URL_PATTERN, collectionName);
+   }
+
    @Override
    public String getFileUrl(@NonNull String collectionName, @NonNull String fileName) {
       return String.format(BASE_URL_FILE_PATTERN, collectionName, fileName);
@@ -0,0 +1,109 @@
+package io.github.fandreuz.open.data.server.model;
+
+import io.github.fandreuz.open.data.server.database.DatabaseNotFoundException;
+import io.github.fandreuz.open.data.server.database.DatabaseTypedClient;
+import io.github.fandreuz.open.data.server.fetch.DatasetFetchService;
+import io.github.fandreuz.open.data.server.model.collection.CollectionMetadata;
+import io.github.fandreuz.open.data.server.model.collection.CollectionMetadataDO;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cache of the metadata of collections, used by imports.
+ * <p>
+ * Metadata is looked up in memory, then in the database, and the collection
+ * page is scraped only if both lookups fail. Entries expire after a
+ * configurable time. Concurrent lookups of the same collection share a single
+ * fetch.
+ *
+ * @author fandreuz
+ */
+@Singleton
+@Slf4j
+final class CollectionMetadataCache {
+
+   private static final String TTL_MINUTES_KEY = "collection.metadata.cache.ttl.minutes";
+   private static final long TTL_MILLIS = Math.max(0, Long.getLong(TTL_MINUTES_KEY, 60L)) * 60 * 1000;
+
+   @Inject
+   private DatabaseTypedClient<CollectionMetadataDO, CollectionMetadataDO> collectionMetadataDatabaseClient;
+
+   @Inject
+   private DatasetFetchService datasetFetchService;
+
+   private final Map<String, CachedMetadata> entries = new ConcurrentHashMap<>();
+
+   /**
+    * Get the metadata of a collection.
+    *
+    * @param collectionId
+    *            unique ID of the collection.
+    * @param collectionMetadataId
+    *            ID of the metadata of the collection in the database.
+    * @return metadata of the collection.
+    */
+   CollectionMetadata get(@NonNull String collectionId, @NonNull String collectionMetadataId) {
+      long now = System.currentTimeMillis();
+      entries.values().removeIf(entry -> entry.isExpired(now));
+
+      var fetch = new CompletableFuture<CollectionMetadata>();
+      CachedMetadata entry = entries.compute(collectionId,
+            (key, current) -> current != null && !current.isExpired(now) ? current
+                  : new CachedMetadata(fetch, now + TTL_MILLIS));
+      if (entry.metadata == fetch) {
+         // This thread fetches the metadata, the others wait for it
+         try {
+            fetch.complete(load(collectionId, collectionMetadataId));
+         } catch (RuntimeException exception) {
+            entries.remove(collectionId, entry);
+            fetch.completeExceptionally(exception);
+         }
+      }
+
+      try {
+         return entry.metadata.get();
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+         String msg = String.format("Interrupted while fetching the metadata of the collection %s", collectionId);
+         throw new RuntimeException(msg, exception);
+      } catch (ExecutionException exception) {
+         if (exception.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) exception.getCause();
+         }
+         throw new RuntimeException(exception.getCause());
+      }
+   }
+
+   private CollectionMetadata load(String collectionId, String collectionMetadataId) {
+      try {
+         var collectionMetadata = CollectionMetadata
+               .fromDatabaseObject(collectionMetadataDatabaseClient.getEntry(collectionMetadataId));
+         log.info("Metadata of the collection {} found in the database", collectionId);
+         return collectionMetadata;
+      } catch (DatabaseNotFoundException exception) {
+         log.info("Metadata of the collection {} not found in the database, fetching", collectionId);
+      }
+      return datasetFetchService.fetchCollectionMetadata(collectionId);
+   }
+
+   private static final class CachedMetadata {
+      private final CompletableFuture<CollectionMetadata> metadata;
+      private final long expiresAt;
+
+      private CachedMetadata(CompletableFuture<CollectionMetadata> metadata, long expiresAt) {
+         this.metadata = metadata;
+         this.expiresAt = expiresAt;
+      }
+
+      private boolean isExpired(long now) {
+         return now >= expiresAt;
+      }
+   }
+}
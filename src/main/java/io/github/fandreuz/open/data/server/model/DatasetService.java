@@ -1,28 +1,52 @@
 package io.github.fandreuz.open.data.server.model;
 
+import io.github.fandreuz.open.data.server.conversion.ConversionService;
 import io.github.fandreuz.open.data.server.conversion.ConversionServiceOrchestrator;
+import io.github.fandreuz.open.data.server.database.DatabaseCursor;
+import io.github.fandreuz.open.data.server.database.DatabaseNotFoundException;
 import io.github.fandreuz.open.data.server.database.DatabaseTransactionService;
 import io.github.fandreuz.open.data.server.database.DatabaseTypedClient;
 import io.github.fandreuz.open.data.server.database.MonolithicDatabaseTypedClient;
 import io.github.fandreuz.open.data.server.database.TransactionController;
 import io.github.fandreuz.open.data.server.fetch.DatasetFetchService;
+import io.github.fandreuz.open.data.server.model.collection.CollectionMetadata;
 import io.github.fandreuz.open.data.server.model.collection.CollectionMetadataDO;
+import io.github.fandreuz.open.data.server.model.dataset.Aggregation;
+import io.github.fandreuz.open.data.server.model.dataset.AggregationFunction;
+import io.github.fandreuz.open.data.server.model.dataset.AggregationResult;
+import io.github.fandreuz.open.data.server.model.dataset.ColumnType;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetAggregation;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetCoordinates;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
 import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadataDO;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetPage;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetQuery;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetRecordStream;
+import io.github.fandreuz.open.data.server.model.dataset.IngestionSummary;
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import io.github.fandreuz.open.data.server.model.job.ImportJobService;
+import io.github.fandreuz.open.data.server.model.job.ImportPhase;
+import io.github.fandreuz.open.data.server.model.job.ImportProgress;
+import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Component to manage dataset resources.
@@ -33,8 +57,26 @@ import java.util.concurrent.Future;
  * @author fandreuz
  */
 @Singleton
+@Slf4j
 public final class DatasetService {
 
+   // Read streamable datasets straight from the network, without a local copy
+   private static final String STREAMING_IMPORT_KEY = "dataset.import.streaming";
+   private static final boolean STREAMING_IMPORT = Boolean
+         .parseBoolean(System.getProperty(STREAMING_IMPORT_KEY, "true"));
+   // Tables of the same file (e.g. the trees of a ROOT file) imported concurrently
+   private static final String TABLE_PARALLELISM_KEY = "dataset.import.table.parallelism";
+   private static final int TABLE_PARALLELISM = Math.max(1, Integer.getInteger(TABLE_PARALLELISM_KEY, 4));
+   // Time given to the imports of the other tables to stop when one fails
+   private static final long TABLE_ABORT_TIMEOUT_SECONDS = 60;
+   private static final String PAGE_SIZE_KEY = "dataset.query.page.size";
+   private static final int PAGE_SIZE = Math.max(1, Integer.getInteger(PAGE_SIZE_KEY, 1000));
+   private static final String MAX_PAGE_SIZE_KEY = "dataset.query.max.page.size";
+   private static final int MAX_PAGE_SIZE = Math.max(PAGE_SIZE, Integer.getInteger(MAX_PAGE_SIZE_KEY, 10000));
+   private static final String MAX_AGGREGATION_GROUPS_KEY = "dataset.aggregation.max.groups";
+   private static final int MAX_AGGREGATION_GROUPS = Math.max(1,
+         Math.min(Integer.getInteger(MAX_AGGREGATION_GROUPS_KEY, 10000), Integer.MAX_VALUE - 1));
+
    @Inject
    private DatabaseTypedClient<CollectionMetadataDO, CollectionMetadataDO> collectionMetadataDatabaseClient;
 
@@ -42,7 +84,7 @@ public final class DatasetService {
    private DatabaseTypedClient<DatasetMetadataDO, DatasetMetadataDO> datasetMetadataDatabaseClient;
 
    @Inject
-   private MonolithicDatabaseTypedClient<DatasetCoordinates> datasetDatabaseClient;
+   private MonolithicDatabaseTypedClient<DatasetCoordinates, IngestionSummary> datasetDatabaseClient;
 
    @Inject
    private MetadataService metadataService;
@@ -50,90 +92,443 @@ public final class DatasetService {
    @Inject
    private DatasetFetchService datasetFetchService;
 
+   @Inject
+   private CollectionMetadataCache collectionMetadataCache;
+
+   @Inject
+   private QueryResultCache queryResultCache;
+
    @Inject
    private DatabaseTransactionService transactionService;
 
    @Inject
    private ConversionServiceOrchestrator conversionServiceOrchestrator;
 
-   private final Map<String, Future<DatasetMetadata>> datasetMetadataPool = new ConcurrentHashMap<>();
-
    /**
-    * Create a new dataset. A dataset is identified by the ID of the collection it
-    * belongs to, and by the file name.
+    * Build the metadata of a dataset without downloading it.
     *
     * @param collectionId
     *            unique ID of the collection.
     * @param file
     *            name of the file to be imported.
-    * @return the newly created dataset metadata if available.
+    * @return metadata of the dataset.
     */
-   public DatasetMetadata createDataset(@NonNull String collectionId, @NonNull String file) {
-      String datasetLockKey = buildDatasetLockKey(collectionId, file);
-      boolean leader = datasetMetadataPool.putIfAbsent(datasetLockKey, new CompletableFuture<>()) == null;
-      var future = datasetMetadataPool.get(datasetLockKey);
-      if (leader) {
-         var metadata = datasetCreationTransaction(collectionId, file);
-         ((CompletableFuture<DatasetMetadata>) future).complete(metadata);
-      }
+   public DatasetMetadata fetchDatasetMetadata(@NonNull String collectionId, @NonNull String file) {
+      return datasetFetchService.fetchDatasetMetadata(collectionId, file);
+   }
 
-      try {
-         return future.get();
-      } catch (Exception exception) {
-         throw new ConcurrentOperationException(
-               "An exception occurred while waiting for the completion of a concurrent operation on the same dataset",
-               exception);
-      }
+   /**
+    * Build the metadata of all the datasets in a collection without downloading
+    * them.
+    *
+    * @param collectionId
+    *            unique ID of the collection.
+    * @return metadata of the datasets whose type is supported.
+    */
+   public List<DatasetMetadata> fetchCollectionDatasets(@NonNull String collectionId) {
+      return datasetFetchService.fetchCollectionDatasets(collectionId);
    }
 
-   private DatasetMetadata datasetCreationTransaction(@NonNull String collectionId, @NonNull String file) {
-      var triple = datasetFetchService.fetchDataset(collectionId, file);
-      DatasetMetadata datasetMetadata = triple.getMiddle();
+   /**
+    * Create a new dataset. A dataset is identified by the ID of the collection it
+    * belongs to, and by the file name.
+    * <p>
+    * This method blocks until the dataset is imported, and it's not safe with
+    * respect to concurrent imports of the same dataset. Imports should be
+    * submitted to {@link ImportJobService}.
+    * <p>
+    * If the file contains more than one table, the first table is imported in
+    * the dataset and each other table in a sub-dataset (see
+    * {@link DatasetMetadata#subDataset(DatasetMetadata, String)}). Tables are
+    * converted and imported concurrently, and the metadata is stored only if
+    * all of them were imported.
+    *
+    * @param collectionId
+    *            unique ID of the collection.
+    * @param datasetMetadata
+    *            metadata of the dataset, see
+    *            {@link #fetchDatasetMetadata(String, String)}.
+    * @param storageLayout
+    *            layout of the records in the database, {@link StorageLayout#ROW}
+    *            if {@code null}. Ignored if the dataset was already imported.
+    * @param progress
+    *            progress of the import, updated by this method.
+    * @return the newly created dataset metadata if available.
+    */
+   public DatasetMetadata createDataset(@NonNull String collectionId, @NonNull DatasetMetadata datasetMetadata,
+         @Nullable StorageLayout storageLayout, @NonNull ImportProgress progress) {
+      progress.moveTo(ImportPhase.FETCHING_METADATA);
+      String file = datasetMetadata.getFileName();
       try {
          // If the metadata is already in the DB, stop the operation
          return metadataService.getDatasetMetadata(datasetMetadata.getDatasetId());
       } catch (Exception exception) {
          // The exception is expected
       }
+      ConversionService conversionService = conversionServiceOrchestrator
+            .getConversionService(datasetMetadata.getType());
+
+      // The dataset is downloaded while the metadata of the collection is fetched
+      boolean streaming = STREAMING_IMPORT && !datasetMetadata.getType().isRandomAccess();
+      Future<Path> download = streaming ? null
+            : datasetFetchService.downloadDatasetAsync(collectionId, file, progress::addDownloadedBytes);
+      CollectionMetadata collectionMetadata;
+      try {
+         collectionMetadata = collectionMetadataCache.get(collectionId,
+               MetadataService.extractCollectionMetadataId(datasetMetadata.getDatasetId()));
+      } catch (RuntimeException exception) {
+         if (download != null) {
+            abandonDownload(download);
+         }
+         throw exception;
+      }
+
+      // Download, conversion and ingestion overlap: records are ingested while
+      // they're produced
+      progress.moveTo(ImportPhase.DOWNLOADING);
+      Path localFile = null;
+      try {
+         DatasetRecordStream records;
+         if (streaming) {
+            records = conversionService
+                  .convert(datasetFetchService.openDataset(collectionId, file, progress::addDownloadedBytes));
+         } else {
+            localFile = awaitDownload(download);
+            List<String> tables = conversionService.listTables(localFile);
+            if (tables.size() > 1) {
+               progress.moveTo(ImportPhase.INGESTING);
+               datasetMetadata = ingestTables(datasetMetadata, collectionMetadata, conversionService, localFile,
+                     tables, storageLayout == null ? StorageLayout.ROW : storageLayout, progress);
+               return DatasetMetadata.attachCollectionMetadata(datasetMetadata, collectionMetadata);
+            }
+            records = conversionService.convert(localFile);
+         }
+         progress.moveTo(ImportPhase.INGESTING);
+         datasetMetadata = ingestDataset(datasetMetadata, collectionMetadata, records,
+               storageLayout == null ? StorageLayout.ROW : storageLayout, progress);
+      } finally {
+         if (localFile != null) {
+            datasetFetchService.releaseDataset(localFile);
+         }
+      }
+
+      return DatasetMetadata.attachCollectionMetadata(datasetMetadata, collectionMetadata);
+   }
 
-      Path converted = conversionServiceOrchestrator.getConversionService(datasetMetadata.getType())
-            .convert(triple.getRight());
+   private Path awaitDownload(Future<Path> download) {
       try {
-         var lines = Files.readAllLines(converted);
-         if (!lines.isEmpty()) {
-            String columnNames = lines.get(0);
-            long numberOfColumns = 1 + columnNames.chars() //
-                  .filter(ch -> ch == ',') //
-                  .count();
-            datasetMetadata = DatasetMetadata.attachCsvMetadata(datasetMetadata, numberOfColumns, columnNames);
+         return download.get();
+      } catch (InterruptedException exception) {
+         abandonDownload(download);
+         Thread.currentThread().interrupt();
+         throw new RuntimeException("Interrupted while downloading the dataset", exception);
+      } catch (ExecutionException exception) {
+         if (exception.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) exception.getCause();
          }
+         throw new RuntimeException("An exception occurred while downloading the dataset", exception.getCause());
+      }
+   }
+
+   private void abandonDownload(Future<Path> download) {
+      if (download.cancel(true) || download.isCancelled()) {
+         return;
+      }
+      // Already over, the local copy must be released if it's available
+      try {
+         datasetFetchService.releaseDataset(download.get());
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+      } catch (ExecutionException exception) {
+         log.debug("The abandoned download failed", exception.getCause());
+      }
+   }
+
+   private DatasetMetadata ingestDataset(@NonNull DatasetMetadata datasetMetadata,
+         @NonNull CollectionMetadata collectionMetadata, @NonNull DatasetRecordStream records,
+         @NonNull StorageLayout storageLayout, @NonNull ImportProgress progress) {
+      boolean committed = false;
+      try (records; TransactionController transactionController = transactionService.start()) {
+         DatasetCoordinates datasetCoordinates = new DatasetCoordinates(datasetMetadata.getDatasetId(), records,
+               storageLayout, progress::addIngestedRows);
+         IngestionSummary ingestionSummary = datasetDatabaseClient.create(datasetCoordinates);
+         datasetMetadata = DatasetMetadata.attachIngestionSummary(datasetMetadata, ingestionSummary);
+
+         datasetMetadataDatabaseClient.create(datasetMetadata.asDatabaseObject());
+         collectionMetadataDatabaseClient.create(collectionMetadata.asDatabaseObject());
+         transactionController.commit();
+         committed = true;
       } catch (Exception exception) {
-         // Skip CSV metadata
+         if (!committed) {
+            // The records are not reachable without their metadata
+            deleteTables(List.of(datasetMetadata));
+         }
+         throw new RuntimeException("An exception occurred while closing the transaction", exception);
+      } finally {
+         queryResultCache.invalidate(datasetMetadata.getDatasetId());
       }
+      return datasetMetadata;
+   }
 
-      DatasetCoordinates datasetCoordinates = new DatasetCoordinates(datasetMetadata.getDatasetId(), converted);
+   private DatasetMetadata ingestTables(@NonNull DatasetMetadata datasetMetadata,
+         @NonNull CollectionMetadata collectionMetadata, @NonNull ConversionService conversionService,
+         @NonNull Path localFile, @NonNull List<String> tables, @NonNull StorageLayout storageLayout,
+         @NonNull ImportProgress progress) {
+      log.info("Importing {} tables of dataset '{}': {}", tables.size(), datasetMetadata.getDatasetId(), tables);
+      List<DatasetMetadata> targets = new ArrayList<>(tables.size());
+      targets.add(datasetMetadata);
+      for (String table : tables.subList(1, tables.size())) {
+         targets.add(DatasetMetadata.subDataset(datasetMetadata, table));
+      }
 
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(TABLE_PARALLELISM, tables.size()),
+            runnable -> {
+               Thread thread = new Thread(runnable, "table-import");
+               thread.setDaemon(true);
+               return thread;
+            });
+      List<DatasetMetadata> ingested = new ArrayList<>(tables.size());
+      try {
+         List<Future<DatasetMetadata>> futures = new ArrayList<>(tables.size());
+         for (int index = 0; index < tables.size(); ++index) {
+            String table = tables.get(index);
+            DatasetMetadata target = targets.get(index);
+            futures.add(executor.submit(() -> {
+               try (DatasetRecordStream records = conversionService.convert(localFile, table)) {
+                  DatasetCoordinates datasetCoordinates = new DatasetCoordinates(target.getDatasetId(), records,
+                        storageLayout, progress::addIngestedRows);
+                  return DatasetMetadata.attachIngestionSummary(target,
+                        datasetDatabaseClient.create(datasetCoordinates));
+               }
+            }));
+         }
+         for (Future<DatasetMetadata> future : futures) {
+            ingested.add(future.get());
+         }
+      } catch (InterruptedException exception) {
+         abortTables(executor, targets);
+         Thread.currentThread().interrupt();
+         throw new RuntimeException("Interrupted while importing the tables", exception);
+      } catch (ExecutionException exception) {
+         abortTables(executor, targets);
+         throw new RuntimeException("An exception occurred while importing the tables", exception.getCause());
+      } finally {
+         executor.shutdown();
+      }
+
+      List<String> subDatasetIds = ingested.subList(1, ingested.size()).stream() //
+            .map(DatasetMetadata::getDatasetId) //
+            .collect(Collectors.toUnmodifiableList());
+      datasetMetadata = DatasetMetadata.attachSubDatasetIds(ingested.get(0), subDatasetIds);
       try (TransactionController transactionController = transactionService.start()) {
-         datasetDatabaseClient.create(datasetCoordinates);
          datasetMetadataDatabaseClient.create(datasetMetadata.asDatabaseObject());
-         collectionMetadataDatabaseClient.create(triple.getLeft().asDatabaseObject());
+         for (DatasetMetadata subDataset : ingested.subList(1, ingested.size())) {
+            datasetMetadataDatabaseClient.create(subDataset.asDatabaseObject());
+         }
+         collectionMetadataDatabaseClient.create(collectionMetadata.asDatabaseObject());
          transactionController.commit();
       } catch (Exception exception) {
+         // The records of the tables are not reachable without their metadata
+         deleteTables(targets);
          throw new RuntimeException("An exception occurred while closing the transaction", exception);
+      } finally {
+         for (DatasetMetadata target : targets) {
+            queryResultCache.invalidate(target.getDatasetId());
+         }
       }
+      return datasetMetadata;
+   }
 
-      return DatasetMetadata.attachCollectionMetadata(datasetMetadata, triple.getLeft());
+   private void abortTables(ExecutorService executor, List<DatasetMetadata> targets) {
+      // The records are deleted once no import is running. The driver fails on
+      // interrupted threads, the interrupt is restored after the cleanup
+      boolean interrupted = Thread.interrupted();
+      executor.shutdownNow();
+      try {
+         if (!executor.awaitTermination(TABLE_ABORT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Some tables are still being imported after {} s", TABLE_ABORT_TIMEOUT_SECONDS);
+         }
+      } catch (InterruptedException exception) {
+         log.warn("Interrupted while waiting for the imports of the tables to stop", exception);
+         interrupted = true;
+      }
+      deleteTables(targets);
+      if (interrupted) {
+         Thread.currentThread().interrupt();
+      }
    }
 
-   public SortedMap<String, String> getDatasetColumn(@NonNull String datasetId, @NonNull String columnName) {
-      return new TreeMap<>(datasetDatabaseClient.getColumn(datasetId, columnName));
+   private void deleteTables(List<DatasetMetadata> targets) {
+      // The driver fails on interrupted threads, the interrupt is restored after
+      // the cleanup
+      boolean interrupted = Thread.interrupted();
+      for (DatasetMetadata target : targets) {
+         try {
+            datasetDatabaseClient.delete(target.getDatasetId());
+         } catch (Exception exception) {
+            log.warn("Could not delete the records of dataset '{}'", target.getDatasetId(), exception);
+         }
+         queryResultCache.invalidate(target.getDatasetId());
+      }
+      if (interrupted) {
+         Thread.currentThread().interrupt();
+      }
    }
 
-   public Set<SortedMap<String, String>> getDatasetEntriesMatching(@NonNull String datasetId, @NonNull String query) {
-      return datasetDatabaseClient.getEntriesMatching(datasetId, query);
+   /**
+    * Get the content of a column. The result is cached and shared, it must not
+    * be modified.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    * @param columnName
+    *            name of the column.
+    * @return the content of the column, sorted by key.
+    */
+   public SortedMap<String, Object> getDatasetColumn(@NonNull String datasetId, @NonNull String columnName) {
+      return queryResultCache.get(datasetId, "column", List.of(columnName),
+            () -> Collections.unmodifiableSortedMap(datasetDatabaseClient.getColumn(datasetId, columnName)));
    }
 
-   private static String buildDatasetLockKey(@NonNull String collectionId, @NonNull String file) {
-      return collectionId + "-" + file;
+   /**
+    * Get the entries matching a query. The result is not cached, since it's not
+    * bounded (it may contain the whole dataset), and it must not be modified.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    * @param query
+    *            query to be matched.
+    * @param fields
+    *            columns to be returned, all if {@code null} or empty.
+    * @return the matching entries.
+    */
+   public Set<SortedMap<String, Object>> getDatasetEntriesMatching(@NonNull String datasetId, @NonNull String query,
+         @Nullable List<String> fields) {
+      DatasetQuery datasetQuery = DatasetQuery.builder() //
+            .filter(query) //
+            .fields(fields) //
+            .build();
+      return Collections.unmodifiableSet(datasetDatabaseClient.getEntriesMatching(datasetId, datasetQuery));
+   }
+
+   /**
+    * Open a cursor over the content of a column, to be closed by the caller.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    * @param columnName
+    *            name of the column.
+    * @return a cursor over the content of the column (key -> value), sorted by
+    *         key.
+    */
+   public DatabaseCursor<Map.Entry<String, Object>> openDatasetColumn(@NonNull String datasetId,
+         @NonNull String columnName) {
+      return datasetDatabaseClient.openColumn(datasetId, columnName);
+   }
+
+   /**
+    * Find the type of the values of a column, inferred when the dataset was
+    * imported.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    * @param columnName
+    *            name of the column.
+    * @return the type of the column, {@code null} if it's not recorded in the
+    *         metadata of the dataset.
+    * @throws DatabaseNotFoundException
+    *             if the dataset does not exist.
+    */
+   @Nullable
+   public ColumnType getDatasetColumnType(@NonNull String datasetId, @NonNull String columnName) {
+      Map<String, ColumnType> columnTypes = queryResultCache.get(datasetId, "columnTypes", List.of(), () -> {
+         Map<String, ColumnType> loaded = datasetMetadataDatabaseClient.getEntry(datasetId).getColumnTypes();
+         return loaded == null ? Map.<String, ColumnType>of() : Collections.unmodifiableMap(loaded);
+      });
+      return columnTypes.get(columnName);
+   }
+
+   /**
+    * Open a cursor over the entries matching a query, to be closed by the
+    * caller.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    * @param query
+    *            query to be matched.
+    * @param fields
+    *            columns to be returned, all if {@code null} or empty.
+    * @return a cursor over the matching entries.
+    */
+   public DatabaseCursor<SortedMap<String, Object>> openDatasetEntriesMatching(@NonNull String datasetId,
+         @NonNull String query, @Nullable List<String> fields) {
+      return datasetDatabaseClient.openEntriesMatching(datasetId, DatasetQuery.builder() //
+            .filter(query) //
+            .fields(fields) //
+            .build());
+   }
+
+   /**
+    * Get a page of the entries matching a query, sorted by ID.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    * @param query
+    *            query to be matched.
+    * @param fields
+    *            columns to be returned, all if {@code null} or empty.
+    * @param cursor
+    *            cursor returned with the previous page, {@code null} for the
+    *            first page.
+    * @param limit
+    *            maximum size of the page, capped to a configurable maximum. A
+    *            default size is used if {@code null}.
+    * @return the page, and the cursor of the next page.
+    */
+   public DatasetPage getDatasetEntriesPage(@NonNull String datasetId, @NonNull String query,
+         @Nullable List<String> fields, @Nullable String cursor, @Nullable Integer limit) {
+      DatasetQuery datasetQuery = DatasetQuery.builder() //
+            .filter(query) //
+            .fields(fields) //
+            .cursor(cursor) //
+            .limit(limit == null ? PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE))) //
+            .build();
+      return queryResultCache.get(datasetId, "page",
+            Arrays.asList(query, fields, cursor, datasetQuery.getLimit()),
+            () -> datasetDatabaseClient.getEntriesPage(datasetId, datasetQuery));
+   }
+
+   /**
+    * Aggregate the entries matching a query, the aggregation is computed by
+    * the database.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    * @param query
+    *            entries to be aggregated, all if {@code null} or blank.
+    * @param groupBy
+    *            columns whose values identify a group, a single group if
+    *            {@code null} or empty.
+    * @param aggregations
+    *            aggregations computed for each group (e.g. {@code mean(px)}),
+    *            the number of entries if {@code null} or empty.
+    * @return one result per group, sorted by group.
+    * @throws IllegalArgumentException
+    *             if an aggregation is not valid.
+    */
+   public List<AggregationResult> aggregateDataset(@NonNull String datasetId, @Nullable String query,
+         @Nullable List<String> groupBy, @Nullable List<String> aggregations) {
+      List<Aggregation> parsedAggregations = aggregations == null || aggregations.isEmpty()
+            ? List.of(new Aggregation(AggregationFunction.COUNT, null))
+            : aggregations.stream().map(Aggregation::parse).distinct().collect(Collectors.toUnmodifiableList());
+      DatasetAggregation aggregation = DatasetAggregation.builder() //
+            .filter(query == null || query.isBlank() ? "{}" : query) //
+            .groupBy(groupBy == null ? List.of() : groupBy) //
+            .aggregations(parsedAggregations) //
+            .maxGroups(MAX_AGGREGATION_GROUPS) //
+            .build();
+      return queryResultCache.get(datasetId, "aggregation",
+            List.of(aggregation.getFilter(), aggregation.getGroupBy(), aggregation.getAggregations()),
+            () -> Collections.unmodifiableList(datasetDatabaseClient.aggregate(datasetId, aggregation)));
    }
 }
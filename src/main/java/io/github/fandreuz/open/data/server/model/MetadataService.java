@@ -61,7 +61,7 @@ public final class MetadataService {
    }
 
    // Leverage URN structure
-   private static String extractCollectionMetadataId(@NonNull String datasetMetadataId) {
+   static String extractCollectionMetadataId(@NonNull String datasetMetadataId) {
       return datasetMetadataId.substring(0, datasetMetadataId.lastIndexOf(":"));
    }
 }
@@ -0,0 +1,271 @@
+package io.github.fandreuz.open.data.server.model;
+
+import io.github.fandreuz.open.data.server.model.dataset.AggregationResult;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetPage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the results of the queries on datasets.
+ * <p>
+ * Results are keyed by the ID of the dataset, by the kind of query and by its
+ * parameters. The total size of the cache (estimated from the results) is
+ * bounded, least recently used results are evicted first. Concurrent misses
+ * of the same result share a single load. Results of a dataset are discarded
+ * when the dataset is imported or deleted, results loaded while a dataset was
+ * being invalidated are neither stored nor shared with later callers. Hits,
+ * misses and evictions are exported at {@code /q/metrics}.
+ *
+ * @author fandreuz
+ */
+@Singleton
+@Slf4j
+final class QueryResultCache {
+
+   private static final String MAX_SIZE_MB_KEY = "dataset.query.cache.max.size.mb";
+   private static final long MAX_SIZE_BYTES = Math.max(0, Long.getLong(MAX_SIZE_MB_KEY, 256L)) * 1024 * 1024;
+   private static final String METRICS_PREFIX = "dataset.query.cache.";
+
+   // Rough size of an object header and of a reference
+   private static final long OBJECT_SIZE = 16;
+   private static final long REFERENCE_SIZE = 8;
+
+   private final long maxSizeBytes;
+
+   @Inject
+   private MeterRegistry meterRegistry;
+
+   // Least recently used first, guarded by this
+   private final LinkedHashMap<CacheKey, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+   private long totalSize;
+   // Results being loaded, guarded by this
+   private final Map<CacheKey, CompletableFuture<Object>> loads = new HashMap<>();
+   // Incremented by each invalidation, guarded by this
+   private long invalidations;
+
+   private Counter hits;
+   private Counter misses;
+   private Counter evictions;
+
+   QueryResultCache() {
+      this.maxSizeBytes = MAX_SIZE_BYTES;
+   }
+
+   QueryResultCache(long maxSizeBytes, @NonNull MeterRegistry meterRegistry) {
+      this.maxSizeBytes = maxSizeBytes;
+      this.meterRegistry = meterRegistry;
+   }
+
+   @PostConstruct
+   void registerMetrics() {
+      hits = Counter.builder(METRICS_PREFIX + "hits") //
+            .description("Query results served by the cache") //
+            .register(meterRegistry);
+      misses = Counter.builder(METRICS_PREFIX + "misses") //
+            .description("Query results loaded from the database") //
+            .register(meterRegistry);
+      evictions = Counter.builder(METRICS_PREFIX + "evictions") //
+            .description("Query results evicted from the cache to free space") //
+            .register(meterRegistry);
+      Gauge.builder(METRICS_PREFIX + "size", this, QueryResultCache::getTotalSize) //
+            .description("Estimated size of the cached query results") //
+            .baseUnit("bytes") //
+            .register(meterRegistry);
+   }
+
+   /**
+    * Get the result of a query, the result is loaded if it's not in the cache.
+    * The result is shared by all the callers, thus it must not be modified.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    * @param kind
+    *            kind of query (e.g. {@code column}).
+    * @param parameters
+    *            parameters of the query, {@code null} values are allowed.
+    * @param loader
+    *            loads the result from the database.
+    * @return the result of the query.
+    */
+   <T> T get(@NonNull String datasetId, @NonNull String kind, @NonNull List<?> parameters,
+         @NonNull Supplier<T> loader) {
+      if (maxSizeBytes == 0) {
+         return loader.get();
+      }
+
+      CacheKey key = new CacheKey(datasetId, kind, parameters);
+      var load = new CompletableFuture<Object>();
+      CompletableFuture<Object> currentLoad;
+      long invalidationsBefore;
+      synchronized (this) {
+         CachedResult entry = entries.get(key);
+         if (entry != null) {
+            hits.increment();
+            @SuppressWarnings("unchecked")
+            T result = (T) entry.result;
+            return result;
+         }
+         currentLoad = loads.putIfAbsent(key, load);
+         invalidationsBefore = invalidations;
+      }
+      if (currentLoad != null) {
+         // Another thread is loading the result
+         hits.increment();
+         @SuppressWarnings("unchecked")
+         T result = (T) await(currentLoad, key);
+         return result;
+      }
+
+      misses.increment();
+      T result;
+      try {
+         result = loader.get();
+         load.complete(result);
+      } catch (RuntimeException exception) {
+         load.completeExceptionally(exception);
+         throw exception;
+      } finally {
+         synchronized (this) {
+            loads.remove(key, load);
+         }
+      }
+
+      long size = estimateSize(result);
+      if (size > maxSizeBytes) {
+         log.debug("The result of {} is too large to be cached ({} bytes)", key, size);
+         return result;
+      }
+      synchronized (this) {
+         // The result may be stale if the dataset was invalidated meanwhile
+         if (invalidations == invalidationsBefore) {
+            CachedResult previous = entries.put(key, new CachedResult(result, size));
+            totalSize += size - (previous == null ? 0 : previous.size);
+            evict();
+         }
+      }
+      return result;
+   }
+
+   // Failures of the load are reported to the waiting threads too
+   private static Object await(CompletableFuture<Object> load, CacheKey key) {
+      try {
+         return load.get();
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(String.format("Interrupted while waiting for the result of %s", key), exception);
+      } catch (ExecutionException exception) {
+         if (exception.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) exception.getCause();
+         }
+         throw new RuntimeException(exception.getCause());
+      }
+   }
+
+   /**
+    * Discard the cached results of the given dataset.
+    *
+    * @param datasetId
+    *            unique ID of the dataset.
+    */
+   synchronized void invalidate(@NonNull String datasetId) {
+      ++invalidations;
+      // Later callers load the result again
+      loads.keySet().removeIf(key -> key.datasetId.equals(datasetId));
+      int discarded = 0;
+      Iterator<Map.Entry<CacheKey, CachedResult>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+         Map.Entry<CacheKey, CachedResult> entry = iterator.next();
+         if (entry.getKey().datasetId.equals(datasetId)) {
+            totalSize -= entry.getValue().size;
+            iterator.remove();
+            ++discarded;
+         }
+      }
+      if (discarded > 0) {
+         log.info("Discarded {} cached query results of dataset '{}'", discarded, datasetId);
+      }
+   }
+
+   private synchronized long getTotalSize() {
+      return totalSize;
+   }
+
+   // Guarded by this
+   private void evict() {
+      Iterator<CachedResult> iterator = entries.values().iterator();
+      while (totalSize > maxSizeBytes && iterator.hasNext()) {
+         totalSize -= iterator.next().size;
+         iterator.remove();
+         evictions.increment();
+      }
+   }
+
+   // Rough estimate of the memory retained by a query result
+   private static long estimateSize(Object value) {
+      if (value == null) {
+         return 0;
+      }
+      if (value instanceof String) {
+         return OBJECT_SIZE + 24 + 2L * ((String) value).length();
+      }
+      if (value instanceof Map) {
+         long size = 3 * OBJECT_SIZE;
+         for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            size += 2 * OBJECT_SIZE + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+         }
+         return size;
+      }
+      if (value instanceof Collection) {
+         long size = 3 * OBJECT_SIZE;
+         for (Object element : (Collection<?>) value) {
+            size += REFERENCE_SIZE + estimateSize(element);
+         }
+         return size;
+      }
+      if (value instanceof DatasetPage) {
+         DatasetPage page = (DatasetPage) value;
+         return OBJECT_SIZE + estimateSize(page.getEntries()) + estimateSize(page.getNextCursor());
+      }
+      if (value instanceof AggregationResult) {
+         AggregationResult result = (AggregationResult) value;
+         return OBJECT_SIZE + estimateSize(result.getGroup()) + estimateSize(result.getValues());
+      }
+      // Boxed primitives, ObjectIds, ...
+      return 2 * OBJECT_SIZE;
+   }
+
+   @AllArgsConstructor
+   @EqualsAndHashCode
+   @ToString
+   private static final class CacheKey {
+      private final String datasetId;
+      private final String kind;
+      private final List<?> parameters;
+   }
+
+   @AllArgsConstructor
+   private static final class CachedResult {
+      private final Object result;
+      private final long size;
+   }
+
+}
@@ -0,0 +1,77 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import jakarta.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A function computed on a column of the entries of a dataset, e.g.
+ * {@code mean(px)}.
+ *
+ * @author fandreuz
+ */
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class Aggregation {
+
+   // e.g. count, count(px), sum(px)
+   private static final Pattern SYNTAX = Pattern.compile("(\\w+)(?:\\((.*)\\))?");
+
+   @NonNull
+   private final AggregationFunction function;
+   // null for the number of entries
+   @Nullable
+   private final String column;
+
+   /**
+    * Parse an aggregation with the syntax {@code function(column)}, the column
+    * can be omitted for {@code count}.
+    *
+    * @param aggregation
+    *            the aggregation to be parsed.
+    * @return the parsed aggregation.
+    * @throws IllegalArgumentException
+    *             if the aggregation is not valid.
+    */
+   public static Aggregation parse(@NonNull String aggregation) {
+      Matcher matcher = SYNTAX.matcher(aggregation.strip());
+      if (!matcher.matches()) {
+         throw new IllegalArgumentException(String.format("Invalid aggregation: '%s'", aggregation));
+      }
+
+      AggregationFunction function;
+      try {
+         function = AggregationFunction.valueOf(matcher.group(1).toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException exception) {
+         String msg = String.format("Unknown aggregation function: '%s'", matcher.group(1));
+         throw new IllegalArgumentException(msg, exception);
+      }
+      String column = matcher.group(2) == null ? null : matcher.group(2).strip();
+      if ((column != null && column.isEmpty()) || (column == null && function.requiresColumn())) {
+         throw new IllegalArgumentException(String.format("Missing column in aggregation: '%s'", aggregation));
+      }
+      return new Aggregation(function, column);
+   }
+
+   /**
+    * Name of the aggregation in the results, e.g. {@code mean(px)}.
+    *
+    * @return the name of the aggregation.
+    */
+   public String getLabel() {
+      String name = function.name().toLowerCase(Locale.ROOT);
+      return column == null ? name : name + "(" + column + ")";
+   }
+
+   @Override
+   public String toString() {
+      return getLabel();
+   }
+}
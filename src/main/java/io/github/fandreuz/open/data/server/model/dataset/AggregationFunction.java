@@ -0,0 +1,21 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+/**
+ * Enum listing the functions which can be computed on the entries of a
+ * dataset.
+ *
+ * @author fandreuz
+ */
+public enum AggregationFunction {
+   /** Number of entries, or number of non-null values of a column. */
+   COUNT,
+   /** Sum of the numeric values of a column. */
+   SUM,
+   /** Mean of the numeric values of a column. */
+   MEAN,
+   MIN, MAX;
+
+   public boolean requiresColumn() {
+      return this != COUNT;
+   }
+}
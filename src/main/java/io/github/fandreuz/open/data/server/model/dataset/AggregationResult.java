@@ -0,0 +1,27 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Result of a {@link DatasetAggregation} for a group of entries.
+ *
+ * @author fandreuz
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class AggregationResult {
+
+   // Column -> value shared by the entries of the group, empty if not grouped
+   @NonNull
+   private final SortedMap<String, Object> group;
+   // Label of the aggregation (e.g. mean(px)) -> value, in the requested order
+   @NonNull
+   private final Map<String, Object> values;
+}
@@ -0,0 +1,45 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import jakarta.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Statistics of the values of a dataset column, computed at import-time.
+ * <p>
+ * Numeric statistics are available only for numeric columns, and ignore
+ * {@code NaN} values.
+ *
+ * @author fandreuz
+ */
+@Getter
+@Setter
+@Builder
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ColumnStatistics {
+
+   // Number of non-null values
+   private long count;
+   private long nullCount;
+   @Nullable
+   private Double min;
+   @Nullable
+   private Double max;
+   @Nullable
+   private Double mean;
+   // Population variance
+   @Nullable
+   private Double variance;
+   // Estimated via HyperLogLog, about 2% error
+   private long approximateDistinctCount;
+
+   public ColumnStatistics() {
+      // Required by the serialization layer
+   }
+}
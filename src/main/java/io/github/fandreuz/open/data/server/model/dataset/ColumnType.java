@@ -0,0 +1,34 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import lombok.NonNull;
+
+/**
+ * Enum listing the types of the values stored in a dataset column.
+ *
+ * @author fandreuz
+ */
+public enum ColumnType {
+   INT64, DOUBLE, BOOL, STRING;
+
+   /**
+    * Find the narrowest type which can represent values of both this type and the
+    * given one.
+    *
+    * @param other
+    *            the other type.
+    * @return the narrowest common type.
+    */
+   public ColumnType widen(@NonNull ColumnType other) {
+      if (this == other) {
+         return this;
+      }
+      if (isNumeric() && other.isNumeric()) {
+         return DOUBLE;
+      }
+      return STRING;
+   }
+
+   public boolean isNumeric() {
+      return this == INT64 || this == DOUBLE;
+   }
+}
@@ -0,0 +1,33 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Aggregation of the entries of a dataset, computed by the database.
+ *
+ * @author fandreuz
+ */
+@Getter
+@Builder
+@ToString
+@AllArgsConstructor
+public class DatasetAggregation {
+
+   // Entries to be aggregated, e.g. {posX: {$gt: 65}}
+   @NonNull
+   private final String filter;
+   // Columns whose values identify a group, a single group if empty
+   @NonNull
+   private final List<String> groupBy;
+   // Computed for each group
+   @NonNull
+   private final List<Aggregation> aggregations;
+   // The aggregation fails if there are more groups
+   private final int maxGroups;
+}
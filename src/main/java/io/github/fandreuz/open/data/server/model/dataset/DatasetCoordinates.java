@@ -1,11 +1,12 @@
 package io.github.fandreuz.open.data.server.model.dataset;
 
-import java.nio.file.Path;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.ToString;
 
+import java.util.function.LongConsumer;
+
 /**
  * Catalyzer for importing a new dataset in the database.
  *
@@ -21,5 +22,10 @@ import lombok.ToString;
 public class DatasetCoordinates {
 
    private final String id;
-   private final Path localFileLocation;
+   @ToString.Exclude
+   private final DatasetRecordStream records;
+   private final StorageLayout storageLayout;
+   // Receives the number of rows written, from multiple threads
+   @ToString.Exclude
+   private final LongConsumer ingestionProgressListener;
 }
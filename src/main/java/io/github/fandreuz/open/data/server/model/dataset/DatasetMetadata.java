@@ -1,6 +1,8 @@
 package io.github.fandreuz.open.data.server.model.dataset;
 
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 import io.github.fandreuz.open.data.server.model.collection.CollectionMetadata;
 import jakarta.annotation.Nullable;
@@ -23,6 +25,9 @@ import lombok.ToString;
 @AllArgsConstructor
 public class DatasetMetadata implements Comparable<DatasetMetadata> {
 
+   // Separates the ID of a dataset from the name of one of its tables
+   public static final String SUB_DATASET_SEPARATOR = "@";
+
    private static final Comparator<DatasetMetadata> COMPARATOR = Comparator.nullsLast( //
          Comparator.comparing( //
                DatasetMetadata::getDatasetId, //
@@ -44,9 +49,27 @@ public class DatasetMetadata implements Comparable<DatasetMetadata> {
    private Long numberOfColumns;
    @Nullable
    private String commaSeparatedColumnNames;
+   // Set when the dataset has been imported, sorted as the columns
+   @Nullable
+   private Map<String, ColumnType> columnTypes;
+   @Nullable
+   private Long numberOfRows;
+   // Set when the dataset has been imported, sorted as the columns
+   @Nullable
+   private Map<String, ColumnStatistics> columnStatistics;
+   // Null for datasets imported before the layout was selectable (ROW)
+   @Nullable
+   private StorageLayout storageLayout;
 
    private long importTimestamp;
 
+   // Set for the additional tables of a file, e.g. the trees of a ROOT file
+   @Nullable
+   private String parentDatasetId;
+   // Set when the file contains more than one table, sorted as in the file
+   @Nullable
+   private List<String> subDatasetIds;
+
    @Nullable
    private CollectionMetadata collectionMetadata;
 
@@ -65,7 +88,13 @@ public class DatasetMetadata implements Comparable<DatasetMetadata> {
             .sizeInBytes(datasetMetadataDO.getSizeInBytes()) //
             .numberOfColumns(datasetMetadataDO.getNumberOfColumns()) //
             .commaSeparatedColumnNames(datasetMetadataDO.getCommaSeparatedColumnNames()) //
+            .columnTypes(datasetMetadataDO.getColumnTypes()) //
+            .numberOfRows(datasetMetadataDO.getNumberOfRows()) //
+            .columnStatistics(datasetMetadataDO.getColumnStatistics()) //
+            .storageLayout(datasetMetadataDO.getStorageLayout()) //
             .importTimestamp(datasetMetadataDO.getImportTimestamp()) //
+            .parentDatasetId(datasetMetadataDO.getParentDatasetId()) //
+            .subDatasetIds(datasetMetadataDO.getSubDatasetIds()) //
             .build();
    }
 
@@ -87,32 +116,95 @@ public class DatasetMetadata implements Comparable<DatasetMetadata> {
             .sizeInBytes(datasetMetadata.getSizeInBytes()) //
             .numberOfColumns(datasetMetadata.getNumberOfColumns()) //
             .commaSeparatedColumnNames(datasetMetadata.getCommaSeparatedColumnNames()) //
+            .columnTypes(datasetMetadata.getColumnTypes()) //
+            .numberOfRows(datasetMetadata.getNumberOfRows()) //
+            .columnStatistics(datasetMetadata.getColumnStatistics()) //
+            .storageLayout(datasetMetadata.getStorageLayout()) //
             .importTimestamp(datasetMetadata.getImportTimestamp()) //
+            .parentDatasetId(datasetMetadata.getParentDatasetId()) //
+            .subDatasetIds(datasetMetadata.getSubDatasetIds()) //
             .collectionMetadata(collectionMetadata) //
             .build();
    }
 
    /**
-    * Attach the given CSV metadata to the provided dataset metadata.
+    * Attach the outcome of the import to the provided dataset metadata.
     *
     * @param datasetMetadata
     *            source dataset metadata.
-    * @param numberOfColumns
-    *            number of columns in the dataset.
-    * @param commaSeparatedColumnNames
-    *            columns of the dataset.
+    * @param ingestionSummary
+    *            summary of the import of the dataset in the database.
     * @return a shallow copy of the given dataset metadata.
     */
-   public static DatasetMetadata attachCsvMetadata(DatasetMetadata datasetMetadata, long numberOfColumns,
-         @NonNull String commaSeparatedColumnNames) {
+   public static DatasetMetadata attachIngestionSummary(DatasetMetadata datasetMetadata,
+         @NonNull IngestionSummary ingestionSummary) {
+      List<String> columnNames = ingestionSummary.getColumnNames();
       return DatasetMetadata.builder() //
             .datasetId(datasetMetadata.getDatasetId()) //
             .fileName(datasetMetadata.getFileName()) //
             .type(datasetMetadata.getType()) //
             .sizeInBytes(datasetMetadata.getSizeInBytes()) //
-            .numberOfColumns(numberOfColumns) //
-            .commaSeparatedColumnNames(commaSeparatedColumnNames) //
+            .numberOfColumns((long) columnNames.size()) //
+            .commaSeparatedColumnNames(String.join(",", columnNames)) //
+            .columnTypes(ingestionSummary.getColumnTypes()) //
+            .numberOfRows(ingestionSummary.getRowCount()) //
+            .columnStatistics(ingestionSummary.getColumnStatistics()) //
+            .storageLayout(ingestionSummary.getStorageLayout()) //
+            .importTimestamp(datasetMetadata.getImportTimestamp()) //
+            .parentDatasetId(datasetMetadata.getParentDatasetId()) //
+            .subDatasetIds(datasetMetadata.getSubDatasetIds()) //
+            .collectionMetadata(datasetMetadata.getCollectionMetadata()) //
+            .build();
+   }
+
+   /**
+    * Build the metadata of an additional table of the given dataset. The ID of
+    * the sub-dataset is the ID of the parent followed by
+    * {@value #SUB_DATASET_SEPARATOR} and by the name of the table.
+    *
+    * @param datasetMetadata
+    *            metadata of the parent dataset.
+    * @param table
+    *            name of the table.
+    * @return metadata of the sub-dataset.
+    */
+   public static DatasetMetadata subDataset(DatasetMetadata datasetMetadata, @NonNull String table) {
+      return DatasetMetadata.builder() //
+            .datasetId(datasetMetadata.getDatasetId() + SUB_DATASET_SEPARATOR + table) //
+            .fileName(datasetMetadata.getFileName()) //
+            .type(datasetMetadata.getType()) //
+            .sizeInBytes(datasetMetadata.getSizeInBytes()) //
+            .importTimestamp(datasetMetadata.getImportTimestamp()) //
+            .parentDatasetId(datasetMetadata.getDatasetId()) //
+            .collectionMetadata(datasetMetadata.getCollectionMetadata()) //
+            .build();
+   }
+
+   /**
+    * Attach the IDs of the sub-datasets to the provided dataset metadata.
+    *
+    * @param datasetMetadata
+    *            source dataset metadata.
+    * @param subDatasetIds
+    *            IDs of the sub-datasets.
+    * @return a shallow copy of the given dataset metadata.
+    */
+   public static DatasetMetadata attachSubDatasetIds(DatasetMetadata datasetMetadata,
+         @NonNull List<String> subDatasetIds) {
+      return DatasetMetadata.builder() //
+            .datasetId(datasetMetadata.getDatasetId()) //
+            .fileName(datasetMetadata.getFileName()) //
+            .type(datasetMetadata.getType()) //
+            .sizeInBytes(datasetMetadata.getSizeInBytes()) //
+            .numberOfColumns(datasetMetadata.getNumberOfColumns()) //
+            .commaSeparatedColumnNames(datasetMetadata.getCommaSeparatedColumnNames()) //
+            .columnTypes(datasetMetadata.getColumnTypes()) //
+            .numberOfRows(datasetMetadata.getNumberOfRows()) //
+            .columnStatistics(datasetMetadata.getColumnStatistics()) //
+            .storageLayout(datasetMetadata.getStorageLayout()) //
             .importTimestamp(datasetMetadata.getImportTimestamp()) //
+            .parentDatasetId(datasetMetadata.getParentDatasetId()) //
+            .subDatasetIds(List.copyOf(subDatasetIds)) //
             .collectionMetadata(datasetMetadata.getCollectionMetadata()) //
             .build();
    }
@@ -130,7 +222,13 @@ public class DatasetMetadata implements Comparable<DatasetMetadata> {
             .sizeInBytes(getSizeInBytes()) //
             .numberOfColumns(getNumberOfColumns()) //
             .commaSeparatedColumnNames(getCommaSeparatedColumnNames()) //
+            .columnTypes(getColumnTypes()) //
+            .numberOfRows(getNumberOfRows()) //
+            .columnStatistics(getColumnStatistics()) //
+            .storageLayout(getStorageLayout()) //
             .importTimestamp(getImportTimestamp()) //
+            .parentDatasetId(getParentDatasetId()) //
+            .subDatasetIds(getSubDatasetIds()) //
             .build();
    }
 
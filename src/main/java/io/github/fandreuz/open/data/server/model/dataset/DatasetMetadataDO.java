@@ -9,6 +9,9 @@ import lombok.NonNull;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Dataset metadata database object.
  *
@@ -33,7 +36,19 @@ public class DatasetMetadataDO {
    private Long numberOfColumns;
    @Nullable
    private String commaSeparatedColumnNames;
+   @Nullable
+   private Map<String, ColumnType> columnTypes;
+   @Nullable
+   private Long numberOfRows;
+   @Nullable
+   private Map<String, ColumnStatistics> columnStatistics;
+   @Nullable
+   private StorageLayout storageLayout;
    private long importTimestamp;
+   @Nullable
+   private String parentDatasetId;
+   @Nullable
+   private List<String> subDatasetIds;
 
    public DatasetMetadataDO() {
       // Required by the serialization layer
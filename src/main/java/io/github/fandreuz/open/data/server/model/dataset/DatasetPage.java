@@ -0,0 +1,34 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * A page of the entries matching a {@link DatasetQuery}. The list of entries
+ * is not modifiable, since pages may be shared.
+ *
+ * @author fandreuz
+ */
+@Getter
+@ToString
+public class DatasetPage {
+
+   // Sorted by ID
+   @NonNull
+   @ToString.Exclude
+   private final List<SortedMap<String, Object>> entries;
+   // Cursor of the next page, null if this is the last page
+   @Nullable
+   private final String nextCursor;
+
+   public DatasetPage(@NonNull List<SortedMap<String, Object>> entries, @Nullable String nextCursor) {
+      this.entries = Collections.unmodifiableList(entries);
+      this.nextCursor = nextCursor;
+   }
+}
@@ -0,0 +1,43 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import jakarta.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Query on the entries of a dataset.
+ *
+ * @author fandreuz
+ */
+@Getter
+@Builder
+@ToString
+@AllArgsConstructor
+public class DatasetQuery {
+
+   // e.g. {posX: {$gt: 65}}
+   @NonNull
+   private final String filter;
+   // Columns to be returned, all if null or empty
+   @Nullable
+   private final List<String> fields;
+   // Opaque position returned with the previous page, null for the first page
+   @Nullable
+   private final String cursor;
+   // Maximum number of entries, 0 if not bounded
+   private final int limit;
+
+   /**
+    * Check whether the entries are returned one page at a time.
+    *
+    * @return {@code true} if the query is paginated.
+    */
+   public boolean isPaginated() {
+      return limit > 0;
+   }
+}
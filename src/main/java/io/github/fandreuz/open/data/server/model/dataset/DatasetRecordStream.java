@@ -0,0 +1,40 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import jakarta.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sequential access to the records of a dataset, as they are produced by a
+ * conversion service.
+ * <p>
+ * Implementations are not expected to be thread-safe.
+ *
+ * @author fandreuz
+ */
+public interface DatasetRecordStream extends Closeable {
+
+   /**
+    * Get the names of the columns of the dataset.
+    *
+    * @return column names, sorted as the values of each record.
+    */
+   List<String> getColumnNames();
+
+   /**
+    * Read the next record.
+    * <p>
+    * Values are either textual ({@link String}, the type is inferred at
+    * import-time) or typed ({@link Long}, {@link Double}, {@link Boolean}) if the
+    * source format carries the type of the values.
+    *
+    * @return values of the next record, sorted as the column names, or
+    *         {@code null} if the stream is over.
+    * @throws IOException
+    *             if the record could not be read.
+    */
+   @Nullable
+   Object[] next() throws IOException;
+}
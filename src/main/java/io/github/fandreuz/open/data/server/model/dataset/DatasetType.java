@@ -11,7 +11,9 @@ import lombok.Getter;
 @AllArgsConstructor
 @Getter
 public enum DatasetType {
-   ROOT("root"), CSV("csv"), JSON("json");
+   ROOT("root", true), CSV("csv", false), JSON("json", false);
 
    private final String extension;
+   // Whether the file can be read only when it's completely available
+   private final boolean randomAccess;
 }
@@ -0,0 +1,32 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of the import of a dataset in the database.
+ *
+ * @author fandreuz
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class IngestionSummary {
+
+   private final long rowCount;
+   @NonNull
+   private final List<String> columnNames;
+   // Sorted as columnNames
+   @NonNull
+   private final Map<String, ColumnType> columnTypes;
+   // Sorted as columnNames
+   @NonNull
+   private final Map<String, ColumnStatistics> columnStatistics;
+   @NonNull
+   private final StorageLayout storageLayout;
+}
@@ -0,0 +1,16 @@
+package io.github.fandreuz.open.data.server.model.dataset;
+
+/**
+ * Enum listing the supported storage layouts for the records of a dataset.
+ *
+ * @author fandreuz
+ */
+public enum StorageLayout {
+   /** One document per record. */
+   ROW,
+   /**
+    * Each column is split into fixed-size chunks, one document per chunk. Faster
+    * for column extraction, does not support queries on the records.
+    */
+   COLUMNAR
+}
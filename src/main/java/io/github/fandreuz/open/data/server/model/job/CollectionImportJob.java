@@ -0,0 +1,108 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+import jakarta.annotation.Nullable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * An asynchronous import of all the datasets of a collection. Each dataset is
+ * imported by an {@link ImportJob}, failures of a dataset do not affect the
+ * others.
+ *
+ * @author fandreuz
+ */
+@Getter(AccessLevel.PACKAGE)
+@ToString
+final class CollectionImportJob {
+
+   private final String collectionImportId = UUID.randomUUID().toString();
+   private final String collectionId;
+   private final long submissionTimestamp = System.currentTimeMillis();
+   @ToString.Exclude
+   private final List<ImportJob> jobs;
+   // Jobs submitted by this import, the others were already running
+   @ToString.Exclude
+   @Getter(AccessLevel.NONE)
+   private final Set<ImportJob> ownedJobs;
+
+   CollectionImportJob(@NonNull String collectionId, @NonNull List<ImportJob> jobs,
+         @NonNull Set<ImportJob> ownedJobs) {
+      this.collectionId = collectionId;
+      this.jobs = List.copyOf(jobs);
+      this.ownedJobs = Collections.unmodifiableSet(new HashSet<>(ownedJobs));
+   }
+
+   /**
+    * Check whether the given job was submitted by this import.
+    *
+    * @param job
+    *            a job of this import.
+    * @return {@code true} if the job was submitted by this import.
+    */
+   boolean owns(@NonNull ImportJob job) {
+      return ownedJobs.contains(job);
+   }
+
+   /**
+    * Find when the last job of this import was over.
+    *
+    * @return the completion timestamp, {@code null} if some jobs are not over.
+    */
+   @Nullable
+   Long getCompletionTimestamp() {
+      long completionTimestamp = submissionTimestamp;
+      for (ImportJob job : jobs) {
+         Long jobCompletionTimestamp = job.getCompletionTimestamp();
+         if (jobCompletionTimestamp == null) {
+            return null;
+         }
+         completionTimestamp = Math.max(completionTimestamp, jobCompletionTimestamp);
+      }
+      return completionTimestamp;
+   }
+
+   /**
+    * Build a snapshot of the status of this import, aggregating the progress of
+    * its jobs.
+    *
+    * @return the status of the import.
+    */
+   CollectionImportStatus toStatus() {
+      List<ImportJobStatus> jobStatuses = jobs.stream() //
+            .map(ImportJob::toStatus) //
+            .collect(Collectors.toCollection(ArrayList::new));
+      Map<ImportPhase, Integer> jobCounts = new EnumMap<>(ImportPhase.class);
+      long totalBytes = 0;
+      long downloadedBytes = 0;
+      long ingestedRows = 0;
+      for (ImportJobStatus jobStatus : jobStatuses) {
+         jobCounts.merge(jobStatus.getPhase(), 1, Integer::sum);
+         totalBytes += jobStatus.getTotalBytes();
+         downloadedBytes += jobStatus.getDownloadedBytes();
+         ingestedRows += jobStatus.getIngestedRows();
+      }
+      return CollectionImportStatus.builder() //
+            .collectionImportId(collectionImportId) //
+            .collectionId(collectionId) //
+            .submissionTimestamp(submissionTimestamp) //
+            .completed(jobStatuses.stream().allMatch(jobStatus -> jobStatus.getPhase().isTerminal())) //
+            .jobCounts(jobCounts) //
+            .totalBytes(totalBytes) //
+            .downloadedBytes(downloadedBytes) //
+            .ingestedRows(ingestedRows) //
+            .jobs(jobStatuses) //
+            .build();
+   }
+}
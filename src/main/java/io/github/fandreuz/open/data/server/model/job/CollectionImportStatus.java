@@ -0,0 +1,43 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the status of the import of a collection.
+ *
+ * @author fandreuz
+ */
+@Getter
+@Builder
+@ToString
+@AllArgsConstructor
+public class CollectionImportStatus {
+
+   @NonNull
+   private String collectionImportId;
+   @NonNull
+   private String collectionId;
+
+   private long submissionTimestamp;
+   // True when all the jobs are over, some of them may have failed
+   private boolean completed;
+   // Number of jobs in each phase
+   @NonNull
+   private Map<ImportPhase, Integer> jobCounts;
+
+   // Sum over the jobs
+   private long totalBytes;
+   private long downloadedBytes;
+   private long ingestedRows;
+
+   @NonNull
+   @ToString.Exclude
+   private List<ImportJobStatus> jobs;
+}
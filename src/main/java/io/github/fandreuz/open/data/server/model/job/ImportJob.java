@@ -0,0 +1,98 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import jakarta.annotation.Nullable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * An asynchronous import of a dataset.
+ *
+ * @author fandreuz
+ */
+@Getter(AccessLevel.PACKAGE)
+@ToString
+final class ImportJob {
+
+   private final String jobId = UUID.randomUUID().toString();
+   private final String collectionId;
+   private final String fileName;
+   // Built without downloading the dataset
+   @ToString.Exclude
+   private final DatasetMetadata datasetMetadata;
+   private final StorageLayout storageLayout;
+   @Nullable
+   private final String userAgent;
+   private final long submissionTimestamp = System.currentTimeMillis();
+   @ToString.Exclude
+   private final ImportProgress progress = new ImportProgress();
+
+   // Set while the job is running
+   @Setter(AccessLevel.PACKAGE)
+   @Nullable
+   @ToString.Exclude
+   private volatile Thread worker;
+   @Setter(AccessLevel.PACKAGE)
+   @Nullable
+   private volatile String datasetId;
+   @Setter(AccessLevel.PACKAGE)
+   @Nullable
+   private volatile String error;
+   @Nullable
+   private volatile Long completionTimestamp;
+
+   ImportJob(@NonNull String collectionId, @NonNull DatasetMetadata datasetMetadata,
+         @NonNull StorageLayout storageLayout, @Nullable String userAgent) {
+      this.collectionId = collectionId;
+      this.fileName = datasetMetadata.getFileName();
+      this.datasetMetadata = datasetMetadata;
+      this.storageLayout = storageLayout;
+      this.userAgent = userAgent;
+      progress.setTotalBytes(datasetMetadata.getSizeInBytes());
+   }
+
+   /**
+    * Move the job to a terminal phase.
+    *
+    * @param phase
+    *            terminal phase.
+    * @return {@code true} if the job was not over yet.
+    */
+   boolean complete(@NonNull ImportPhase phase) {
+      if (!phase.isTerminal()) {
+         throw new IllegalArgumentException("Not a terminal phase: " + phase);
+      }
+      boolean updated = progress.moveTo(phase);
+      if (updated) {
+         completionTimestamp = System.currentTimeMillis();
+      }
+      return updated;
+   }
+
+   /**
+    * Build a snapshot of the status of this job.
+    *
+    * @return the status of the job.
+    */
+   ImportJobStatus toStatus() {
+      return ImportJobStatus.builder() //
+            .jobId(jobId) //
+            .collectionId(collectionId) //
+            .fileName(fileName) //
+            .phase(progress.getPhase()) //
+            .submissionTimestamp(submissionTimestamp) //
+            .totalBytes(progress.getTotalBytes()) //
+            .downloadedBytes(progress.getDownloadedBytes()) //
+            .ingestedRows(progress.getIngestedRows()) //
+            .etaSeconds(progress.estimateRemainingSeconds()) //
+            .datasetId(datasetId) //
+            .error(error) //
+            .build();
+   }
+}
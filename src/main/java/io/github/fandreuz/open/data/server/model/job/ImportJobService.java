@@ -0,0 +1,359 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+import io.github.fandreuz.open.data.server.controller.filter.UserAgentContainer;
+import io.github.fandreuz.open.data.server.model.DatasetService;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Component to run dataset imports as asynchronous jobs.
+ * <p>
+ * Jobs are started by an {@link ImportScheduler}, which bounds the number of
+ * concurrent imports, favors small datasets and serves clients (identified by
+ * their User-Agent) fairly. Jobs which cannot be queued are rejected.
+ * Submitting the import of a dataset which is already being imported returns
+ * the existing job. Completed jobs are discarded after a retention period.
+ * <p>
+ * All the datasets of a collection can be imported at once, each dataset is
+ * imported by its own job. The jobs go through the same scheduler, thus
+ * downloads, conversions and ingestions of different datasets overlap, and
+ * the collection does not delay the imports of other clients. The number of
+ * collections imported at the same time is bounded.
+ *
+ * @author fandreuz
+ */
+@Singleton
+@Slf4j
+public final class ImportJobService {
+
+   private static final String WORKERS_KEY = "dataset.import.workers";
+   private static final int WORKERS = Math.max(1, Integer.getInteger(WORKERS_KEY, 2));
+   private static final String QUEUE_CAPACITY_KEY = "dataset.import.queue.capacity";
+   private static final int QUEUE_CAPACITY = Math.max(1, Integer.getInteger(QUEUE_CAPACITY_KEY, 16));
+   private static final String MAX_WAIT_SECONDS_KEY = "dataset.import.max.wait.seconds";
+   private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS
+         .toMillis(Math.max(0, Integer.getInteger(MAX_WAIT_SECONDS_KEY, 600)));
+   private static final String RETENTION_MINUTES_KEY = "dataset.import.job.retention.minutes";
+   private static final long RETENTION_MILLIS = TimeUnit.MINUTES
+         .toMillis(Math.max(0, Integer.getInteger(RETENTION_MINUTES_KEY, 60)));
+   private static final String MAX_ACTIVE_COLLECTIONS_KEY = "dataset.import.collection.max.active";
+   private static final int MAX_ACTIVE_COLLECTIONS = Math.max(1, Integer.getInteger(MAX_ACTIVE_COLLECTIONS_KEY, 2));
+
+   @Inject
+   private DatasetService datasetService;
+
+   @Inject
+   private UserAgentContainer userAgentContainer;
+
+   // The scheduler never submits more than WORKERS tasks at the same time
+   private final ExecutorService importExecutor = Executors.newFixedThreadPool(WORKERS);
+   private final ImportScheduler importScheduler = new ImportScheduler(WORKERS, QUEUE_CAPACITY, MAX_WAIT_MILLIS,
+         importExecutor);
+
+   private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+   // Jobs which are not over, by dataset. Guarded by this
+   private final Map<String, ImportJob> activeJobs = new HashMap<>();
+   private final Map<String, CollectionImportJob> collectionImports = new ConcurrentHashMap<>();
+
+   /**
+    * Submit the import of a dataset.
+    *
+    * @param collectionId
+    *            unique ID of the collection.
+    * @param file
+    *            name of the file to be imported.
+    * @param storageLayout
+    *            layout of the records in the database, {@link StorageLayout#ROW}
+    *            if {@code null}.
+    * @return the status of the job, which may be a job submitted previously for
+    *         the same dataset.
+    */
+   public ImportJobStatus submit(@NonNull String collectionId, @NonNull String file,
+         @Nullable StorageLayout storageLayout) {
+      String datasetKey = buildDatasetKey(collectionId, file);
+      ImportJobStatus activeJobStatus = findActiveJobStatus(datasetKey);
+      if (activeJobStatus != null) {
+         return activeJobStatus;
+      }
+
+      // The size of the dataset is needed for scheduling, this is a cheap request
+      DatasetMetadata datasetMetadata = datasetService.fetchDatasetMetadata(collectionId, file);
+      String userAgent = userAgentContainer.getUserAgent();
+      synchronized (this) {
+         activeJobStatus = findActiveJobStatus(datasetKey);
+         if (activeJobStatus != null) {
+            return activeJobStatus;
+         }
+         return schedule(datasetKey, new ImportJob(collectionId, datasetMetadata,
+               storageLayout == null ? StorageLayout.ROW : storageLayout, userAgent), false);
+      }
+   }
+
+   /**
+    * Submit the import of all the datasets in a collection. Datasets which are
+    * already being imported are not submitted again, their jobs are tracked by
+    * the import of the collection.
+    *
+    * @param collectionId
+    *            unique ID of the collection.
+    * @param storageLayout
+    *            layout of the records in the database, {@link StorageLayout#ROW}
+    *            if {@code null}.
+    * @return the status of the import of the collection.
+    */
+   public CollectionImportStatus submitCollection(@NonNull String collectionId,
+         @Nullable StorageLayout storageLayout) {
+      List<DatasetMetadata> datasets = datasetService.fetchCollectionDatasets(collectionId);
+      String userAgent = userAgentContainer.getUserAgent();
+      synchronized (this) {
+         evictCompletedJobs();
+         long activeCollections = collectionImports.values().stream() //
+               .filter(collectionImport -> collectionImport.getCompletionTimestamp() == null) //
+               .count();
+         if (activeCollections >= MAX_ACTIVE_COLLECTIONS) {
+            throw new ImportRejectedException("Too many collections being imported, retry later");
+         }
+
+         List<ImportJob> collectionJobs = new ArrayList<>();
+         Set<ImportJob> ownedJobs = new HashSet<>();
+         for (DatasetMetadata datasetMetadata : datasets) {
+            String datasetKey = buildDatasetKey(collectionId, datasetMetadata.getFileName());
+            ImportJob job = activeJobs.get(datasetKey);
+            if (job == null) {
+               job = new ImportJob(collectionId, datasetMetadata,
+                     storageLayout == null ? StorageLayout.ROW : storageLayout, userAgent);
+               schedule(datasetKey, job, true);
+               ownedJobs.add(job);
+            }
+            collectionJobs.add(job);
+         }
+
+         CollectionImportJob collectionImport = new CollectionImportJob(collectionId, collectionJobs, ownedJobs);
+         collectionImports.put(collectionImport.getCollectionImportId(), collectionImport);
+         log.info("Submitted {} with {} datasets ({} new jobs)", collectionImport, collectionJobs.size(),
+               ownedJobs.size());
+         return collectionImport.toStatus();
+      }
+   }
+
+   /**
+    * Get the status of the import of a collection.
+    *
+    * @param collectionImportId
+    *            ID of the import of the collection.
+    * @return the status of the import.
+    */
+   public CollectionImportStatus getCollectionImport(@NonNull String collectionImportId) {
+      return findCollectionImport(collectionImportId).toStatus();
+   }
+
+   /**
+    * List the status of all the imports of collections which were not discarded
+    * yet.
+    *
+    * @return status of the imports, sorted by submission time.
+    */
+   public List<CollectionImportStatus> getCollectionImports() {
+      return collectionImports.values().stream() //
+            .map(CollectionImportJob::toStatus) //
+            .sorted(Comparator.comparingLong(CollectionImportStatus::getSubmissionTimestamp)) //
+            .collect(Collectors.toUnmodifiableList());
+   }
+
+   /**
+    * Cancel the import of a collection. The jobs submitted by the import are
+    * cancelled, jobs which were already running when the import was submitted
+    * are left untouched. Completed datasets are kept.
+    *
+    * @param collectionImportId
+    *            ID of the import of the collection.
+    * @return the status of the import.
+    */
+   public synchronized CollectionImportStatus cancelCollectionImport(@NonNull String collectionImportId) {
+      CollectionImportJob collectionImport = findCollectionImport(collectionImportId);
+      log.info("Cancelling {}", collectionImport);
+      for (ImportJob job : collectionImport.getJobs()) {
+         if (collectionImport.owns(job)) {
+            cancel(job);
+         }
+      }
+      return collectionImport.toStatus();
+   }
+
+   /**
+    * Get the status of a job.
+    *
+    * @param jobId
+    *            ID of the job.
+    * @return the status of the job.
+    */
+   public ImportJobStatus getJob(@NonNull String jobId) {
+      return findJob(jobId).toStatus();
+   }
+
+   /**
+    * List the status of all the jobs which were not discarded yet.
+    *
+    * @return status of the jobs, sorted by submission time.
+    */
+   public List<ImportJobStatus> getJobs() {
+      return jobs.values().stream() //
+            .map(ImportJob::toStatus) //
+            .sorted(Comparator.comparingLong(ImportJobStatus::getSubmissionTimestamp)) //
+            .collect(Collectors.toUnmodifiableList());
+   }
+
+   /**
+    * Cancel a job. The records ingested so far are removed from the database.
+    * Cancelling a job which is already over has no effect.
+    *
+    * @param jobId
+    *            ID of the job.
+    * @return the status of the job.
+    */
+   public synchronized ImportJobStatus cancel(@NonNull String jobId) {
+      ImportJob job = findJob(jobId);
+      cancel(job);
+      return job.toStatus();
+   }
+
+   private void cancel(ImportJob job) {
+      if (job.complete(ImportPhase.CANCELLED)) {
+         log.info("Cancelling {}", job);
+         Thread worker = job.getWorker();
+         if (worker != null) {
+            worker.interrupt();
+         } else if (importScheduler.unschedule(job)) {
+            activeJobs.remove(buildDatasetKey(job.getCollectionId(), job.getFileName()), job);
+         }
+      }
+   }
+
+   @PreDestroy
+   void cleanUp() {
+      importExecutor.shutdownNow();
+   }
+
+   private void runJob(ImportJob job) {
+      synchronized (this) {
+         if (job.getProgress().getPhase().isTerminal()) {
+            // Cancelled after being dequeued by the scheduler
+            activeJobs.remove(buildDatasetKey(job.getCollectionId(), job.getFileName()), job);
+            return;
+         }
+         job.setWorker(Thread.currentThread());
+      }
+
+      // Request scoped beans (e.g. the User-Agent) are used during the import
+      ManagedContext requestContext = Arc.container().requestContext();
+      requestContext.activate();
+      try {
+         userAgentContainer.setUserAgent(job.getUserAgent());
+         DatasetMetadata datasetMetadata = datasetService.createDataset(job.getCollectionId(),
+               job.getDatasetMetadata(), job.getStorageLayout(), job.getProgress());
+         job.setDatasetId(datasetMetadata.getDatasetId());
+         job.complete(ImportPhase.COMPLETED);
+         log.info("Completed {}", job);
+      } catch (Exception exception) {
+         if (job.complete(ImportPhase.FAILED)) {
+            log.error("An error occurred while running {}", job, exception);
+            job.setError(describe(exception));
+         } else {
+            log.info("Cancelled {}", job);
+         }
+      } finally {
+         requestContext.terminate();
+         synchronized (this) {
+            job.setWorker(null);
+            activeJobs.remove(buildDatasetKey(job.getCollectionId(), job.getFileName()), job);
+            // Do not leak the cancellation to the next job
+            Thread.interrupted();
+         }
+      }
+   }
+
+   @Nullable
+   private synchronized ImportJobStatus findActiveJobStatus(String datasetKey) {
+      evictCompletedJobs();
+      ImportJob activeJob = activeJobs.get(datasetKey);
+      if (activeJob == null) {
+         return null;
+      }
+      log.info("Dataset '{}' is already being imported by job {}", datasetKey, activeJob.getJobId());
+      return activeJob.toStatus();
+   }
+
+   private ImportJobStatus schedule(String datasetKey, ImportJob job, boolean bulk) {
+      try {
+         importScheduler.schedule(job, () -> runJob(job), bulk);
+      } catch (RejectedExecutionException exception) {
+         throw new ImportRejectedException("Too many pending imports, retry later", exception);
+      }
+      jobs.put(job.getJobId(), job);
+      activeJobs.put(datasetKey, job);
+      log.info("Submitted {}", job);
+      return job.toStatus();
+   }
+
+   private ImportJob findJob(@NonNull String jobId) {
+      ImportJob job = jobs.get(jobId);
+      if (job == null) {
+         throw new JobNotFoundException(String.format("Job with ID=%s not found", jobId));
+      }
+      return job;
+   }
+
+   private CollectionImportJob findCollectionImport(@NonNull String collectionImportId) {
+      CollectionImportJob collectionImport = collectionImports.get(collectionImportId);
+      if (collectionImport == null) {
+         throw new JobNotFoundException(String.format("Collection import with ID=%s not found", collectionImportId));
+      }
+      return collectionImport;
+   }
+
+   private void evictCompletedJobs() {
+      long threshold = System.currentTimeMillis() - RETENTION_MILLIS;
+      jobs.values().removeIf(job -> {
+         Long completionTimestamp = job.getCompletionTimestamp();
+         return completionTimestamp != null && completionTimestamp < threshold;
+      });
+      collectionImports.values().removeIf(collectionImport -> {
+         Long completionTimestamp = collectionImport.getCompletionTimestamp();
+         return completionTimestamp != null && completionTimestamp < threshold;
+      });
+   }
+
+   private static String describe(Exception exception) {
+      StringBuilder builder = new StringBuilder(String.valueOf(exception.getMessage()));
+      for (Throwable cause = exception.getCause(); cause != null; cause = cause.getCause()) {
+         builder.append(": ").append(cause.getMessage());
+      }
+      return builder.toString();
+   }
+
+   private static String buildDatasetKey(@NonNull String collectionId, @NonNull String file) {
+      return collectionId + "-" + file;
+   }
+}
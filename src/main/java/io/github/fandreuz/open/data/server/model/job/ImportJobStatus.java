@@ -0,0 +1,43 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+import jakarta.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Snapshot of the status of an import job.
+ *
+ * @author fandreuz
+ */
+@Getter
+@Builder
+@ToString
+@AllArgsConstructor
+public class ImportJobStatus {
+
+   @NonNull
+   private String jobId;
+   @NonNull
+   private String collectionId;
+   @NonNull
+   private String fileName;
+   @NonNull
+   private ImportPhase phase;
+
+   private long submissionTimestamp;
+   private long totalBytes;
+   private long downloadedBytes;
+   private long ingestedRows;
+   @Nullable
+   private Long etaSeconds;
+
+   // Set when the job is completed
+   @Nullable
+   private String datasetId;
+   // Set when the job failed
+   @Nullable
+   private String error;
+}
@@ -0,0 +1,19 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+/**
+ * Enum listing the phases of an import job.
+ *
+ * @author fandreuz
+ */
+public enum ImportPhase {
+   QUEUED, FETCHING_METADATA, DOWNLOADING, INGESTING, COMPLETED, FAILED, CANCELLED;
+
+   /**
+    * Check if a job in this phase is over.
+    *
+    * @return {@code true} if the phase is terminal.
+    */
+   public boolean isTerminal() {
+      return this == COMPLETED || this == FAILED || this == CANCELLED;
+   }
+}
@@ -0,0 +1,92 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Progress of an import job. Updated by the thread running the import (and by
+ * its ingestion writers), read by clients. This class is thread-safe.
+ *
+ * @author fandreuz
+ */
+public final class ImportProgress {
+
+   private final AtomicReference<ImportPhase> phase = new AtomicReference<>(ImportPhase.QUEUED);
+   private final AtomicLong downloadedBytes = new AtomicLong();
+   private final AtomicLong ingestedRows = new AtomicLong();
+   // 0 if unknown
+   private volatile long totalBytes = 0;
+   private volatile long startNanos = 0;
+
+   /**
+    * Move to the given phase, unless the current phase is terminal.
+    *
+    * @param newPhase
+    *            the new phase.
+    * @return {@code true} if the phase was updated.
+    */
+   public boolean moveTo(@NonNull ImportPhase newPhase) {
+      ImportPhase current;
+      do {
+         current = phase.get();
+         if (current.isTerminal()) {
+            return false;
+         }
+      } while (!phase.compareAndSet(current, newPhase));
+
+      if (current == ImportPhase.QUEUED) {
+         startNanos = System.nanoTime();
+      }
+      return true;
+   }
+
+   public void setTotalBytes(long totalBytes) {
+      this.totalBytes = totalBytes;
+   }
+
+   public void addDownloadedBytes(long bytes) {
+      downloadedBytes.addAndGet(bytes);
+   }
+
+   public void addIngestedRows(long rows) {
+      ingestedRows.addAndGet(rows);
+   }
+
+   public ImportPhase getPhase() {
+      return phase.get();
+   }
+
+   public long getTotalBytes() {
+      return totalBytes;
+   }
+
+   public long getDownloadedBytes() {
+      return downloadedBytes.get();
+   }
+
+   public long getIngestedRows() {
+      return ingestedRows.get();
+   }
+
+   /**
+    * Estimate the remaining time from the download rate. Since records are
+    * ingested while they're downloaded, the download rate is a good proxy of the
+    * import rate.
+    *
+    * @return the estimated number of seconds to completion, or {@code null} if
+    *         not available (e.g. the size of the dataset is unknown).
+    */
+   @Nullable
+   public Long estimateRemainingSeconds() {
+      long total = totalBytes;
+      long downloaded = downloadedBytes.get();
+      if (phase.get().isTerminal() || total <= 0 || downloaded <= 0 || downloaded >= total) {
+         return null;
+      }
+      double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+      return Math.round(elapsedSeconds * (total - downloaded) / downloaded);
+   }
+}
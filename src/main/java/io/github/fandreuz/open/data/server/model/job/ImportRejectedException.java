@@ -0,0 +1,19 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+/**
+ * Marks an import which could not be accepted since the server is overloaded.
+ *
+ * @author fandreuz
+ */
+public class ImportRejectedException extends RuntimeException {
+
+   private static final long serialVersionUID = 0L;
+
+   public ImportRejectedException(String message) {
+      super(message);
+   }
+
+   public ImportRejectedException(String message, Throwable cause) {
+      super(message, cause);
+   }
+}
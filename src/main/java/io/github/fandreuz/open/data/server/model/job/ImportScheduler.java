@@ -0,0 +1,200 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Decides when queued imports start.
+ * <p>
+ * At most {@code maxConcurrentImports} imports run at the same time. Pending
+ * imports are grouped by User-Agent, and User-Agents take turns (round-robin),
+ * so that a client submitting many imports does not delay the others. Among
+ * the imports of the same User-Agent, the smallest dataset goes first. Imports
+ * waiting for more than {@code maxWaitMillis} go first regardless of their
+ * size, so that large datasets are not starved.
+ * <p>
+ * Imports belonging to a bulk submission (e.g. a whole collection) are not
+ * bounded by {@code queueCapacity}, the submission is bounded as a whole by
+ * the caller.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author fandreuz
+ */
+@Slf4j
+final class ImportScheduler {
+
+   private static final String UNKNOWN_USER_AGENT = "";
+
+   private final int maxConcurrentImports;
+   private final int queueCapacity;
+   private final long maxWaitMillis;
+   private final Executor executor;
+
+   // Guarded by this
+   private final Map<String, List<PendingImport>> pendingImports = new HashMap<>();
+   // User-Agents with pending imports, the next one to be served is the first
+   private final Deque<String> userAgentTurns = new ArrayDeque<>();
+   // Bulk imports are not counted
+   private int pendingCount = 0;
+   private int runningCount = 0;
+   private long sequence = 0;
+
+   ImportScheduler(int maxConcurrentImports, int queueCapacity, long maxWaitMillis, @NonNull Executor executor) {
+      this.maxConcurrentImports = maxConcurrentImports;
+      this.queueCapacity = queueCapacity;
+      this.maxWaitMillis = maxWaitMillis;
+      this.executor = executor;
+   }
+
+   /**
+    * Queue an import.
+    *
+    * @param job
+    *            the job of the import.
+    * @param task
+    *            the import, executed when scheduled.
+    * @param bulk
+    *            {@code true} if the import belongs to a bulk submission.
+    * @throws RejectedExecutionException
+    *             if the queue is full.
+    */
+   synchronized void schedule(@NonNull ImportJob job, @NonNull Runnable task, boolean bulk) {
+      if (!bulk && pendingCount >= queueCapacity) {
+         throw new RejectedExecutionException("The import queue is full");
+      }
+      String userAgent = userAgentOf(job);
+      List<PendingImport> userAgentImports = pendingImports.computeIfAbsent(userAgent, key -> new ArrayList<>());
+      if (userAgentImports.isEmpty()) {
+         userAgentTurns.addLast(userAgent);
+      }
+      userAgentImports.add(new PendingImport(job, task, bulk, sequence++));
+      if (!bulk) {
+         ++pendingCount;
+      }
+      dispatch();
+   }
+
+   /**
+    * Remove an import from the queue.
+    *
+    * @param job
+    *            the job of the import.
+    * @return {@code true} if the import was still queued.
+    */
+   synchronized boolean unschedule(@NonNull ImportJob job) {
+      String userAgent = userAgentOf(job);
+      List<PendingImport> userAgentImports = pendingImports.get(userAgent);
+      PendingImport pendingImport = userAgentImports == null ? null
+            : userAgentImports.stream().filter(candidate -> candidate.job == job).findFirst().orElse(null);
+      if (pendingImport == null) {
+         return false;
+      }
+      userAgentImports.remove(pendingImport);
+      if (!pendingImport.bulk) {
+         --pendingCount;
+      }
+      if (userAgentImports.isEmpty()) {
+         pendingImports.remove(userAgent);
+         userAgentTurns.remove(userAgent);
+      }
+      return true;
+   }
+
+   private void dispatch() {
+      while (runningCount < maxConcurrentImports && !userAgentTurns.isEmpty()) {
+         String userAgent = userAgentTurns.pollFirst();
+         List<PendingImport> userAgentImports = pendingImports.get(userAgent);
+         PendingImport next = userAgentImports.remove(selectNext(userAgentImports));
+         if (userAgentImports.isEmpty()) {
+            pendingImports.remove(userAgent);
+         } else {
+            userAgentTurns.addLast(userAgent);
+         }
+         if (!next.bulk) {
+            --pendingCount;
+         }
+
+         ++runningCount;
+         try {
+            executor.execute(() -> run(next));
+         } catch (RejectedExecutionException exception) {
+            // Happens only during the shutdown
+            --runningCount;
+            log.warn("Could not start {}", next.job, exception);
+            return;
+         }
+      }
+   }
+
+   private void run(PendingImport pendingImport) {
+      try {
+         pendingImport.task.run();
+      } finally {
+         synchronized (this) {
+            --runningCount;
+            dispatch();
+         }
+      }
+   }
+
+   private int selectNext(List<PendingImport> candidates) {
+      long now = System.currentTimeMillis();
+      int selected = 0;
+      for (int i = 1; i < candidates.size(); ++i) {
+         if (comparePriority(candidates.get(i), candidates.get(selected), now) < 0) {
+            selected = i;
+         }
+      }
+      return selected;
+   }
+
+   // Negative if the first import should go first
+   private int comparePriority(PendingImport first, PendingImport second, long now) {
+      boolean firstStarving = now - first.job.getSubmissionTimestamp() > maxWaitMillis;
+      boolean secondStarving = now - second.job.getSubmissionTimestamp() > maxWaitMillis;
+      if (firstStarving != secondStarving) {
+         return firstStarving ? -1 : 1;
+      }
+      if (!firstStarving) {
+         int bySize = Long.compare(first.sizeInBytes(), second.sizeInBytes());
+         if (bySize != 0) {
+            return bySize;
+         }
+      }
+      return Long.compare(first.sequence, second.sequence);
+   }
+
+   private static String userAgentOf(ImportJob job) {
+      return job.getUserAgent() == null ? UNKNOWN_USER_AGENT : job.getUserAgent();
+   }
+
+   private static final class PendingImport {
+      private final ImportJob job;
+      private final Runnable task;
+      private final boolean bulk;
+      private final long sequence;
+
+      private PendingImport(ImportJob job, Runnable task, boolean bulk, long sequence) {
+         this.job = job;
+         this.task = task;
+         this.bulk = bulk;
+         this.sequence = sequence;
+      }
+
+      // Datasets whose size is unknown go last
+      private long sizeInBytes() {
+         long sizeInBytes = job.getProgress().getTotalBytes();
+         return sizeInBytes > 0 ? sizeInBytes : Long.MAX_VALUE;
+      }
+   }
+}
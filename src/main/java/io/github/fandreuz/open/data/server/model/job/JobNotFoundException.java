@@ -0,0 +1,16 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+/**
+ * Marks a request about a job which does not exist, or which was discarded
+ * after its completion.
+ *
+ * @author fandreuz
+ */
+public class JobNotFoundException extends RuntimeException {
+
+   private static final long serialVersionUID = 0L;
+
+   public JobNotFoundException(String message) {
+      super(message);
+   }
+}
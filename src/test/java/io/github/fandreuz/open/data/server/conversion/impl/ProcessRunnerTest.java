@@ -0,0 +1,35 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests {@link ProcessRunner}.
+ *
+ * @author fandreuz
+ */
+class ProcessRunnerTest {
+
+   @TempDir
+   Path directory;
+
+   @Test
+   void testArgumentsAreNotInterpreted() {
+      ProcessRunner processRunner = new ProcessRunner("/bin", Duration.ofMinutes(1), new SimpleMeterRegistry());
+      // A tree name taken from a ROOT file
+      String argument = "events'; touch injected; echo '";
+
+      String output = processRunner.runCommand(List.of("echo", argument), directory, "echo.err");
+      assertEquals(argument + "\n", output);
+      assertFalse(Files.exists(directory.resolve("injected")));
+   }
+}
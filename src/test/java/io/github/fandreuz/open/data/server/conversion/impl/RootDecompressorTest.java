@@ -0,0 +1,115 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link RootDecompressor}.
+ *
+ * @author fandreuz
+ */
+class RootDecompressorTest {
+
+   // 20 repetitions of "px=", long runs of literals and of matches
+   private static final String LZ4_CONTENT = "ROOT basket: " + "px=".repeat(20) + "0123456789abcdefghij"
+         + "z".repeat(40) + " end of basket";
+   // LZ4_CONTENT compressed by lz4-java 1.8.0 (high compression), raw block
+   private static final String LZ4_BLOCK = "ff01524f4f54206261736b65743a2070783d030026ff06303132333435363738396162"
+         + "636465666768696a7a010014e020656e64206f66206261736b6574";
+   // XXH64 of LZ4_BLOCK, big-endian
+   private static final String LZ4_CHECKSUM = "f80425ac3d9b7a08";
+
+   private static final byte[] CONTENT = "x,y\n".repeat(100).getBytes(StandardCharsets.US_ASCII);
+
+   @Test
+   void testUncompressedPayload() throws RootFormatException {
+      assertSame(CONTENT, RootDecompressor.decompress(CONTENT, CONTENT.length));
+   }
+
+   @Test
+   void testLz4Block() throws RootFormatException {
+      byte[] content = LZ4_CONTENT.getBytes(StandardCharsets.US_ASCII);
+      byte[] block = RootFileWriter.concat(hex(LZ4_CHECKSUM), hex(LZ4_BLOCK));
+      byte[] payload = RootFileWriter.concat(RootFileWriter.blockHeader("L4", 1, block.length, content.length),
+            block);
+
+      assertArrayEquals(content, RootDecompressor.decompress(payload, content.length));
+   }
+
+   @Test
+   void testZlibBlock() throws RootFormatException {
+      byte[] compressed = RootFileWriter.deflate(CONTENT);
+      byte[] payload = RootFileWriter.concat(RootFileWriter.blockHeader("ZL", 8, compressed.length, CONTENT.length),
+            compressed);
+
+      assertArrayEquals(CONTENT, RootDecompressor.decompress(payload, CONTENT.length));
+   }
+
+   @Test
+   void testLzmaBlock() throws RootFormatException {
+      byte[] compressed = RootFileWriter.xz(CONTENT);
+      byte[] payload = RootFileWriter.concat(RootFileWriter.blockHeader("XZ", 0, compressed.length, CONTENT.length),
+            compressed);
+
+      assertArrayEquals(CONTENT, RootDecompressor.decompress(payload, CONTENT.length));
+   }
+
+   @Test
+   void testBlocksOfDifferentAlgorithms() throws RootFormatException {
+      byte[] lz4Content = LZ4_CONTENT.getBytes(StandardCharsets.US_ASCII);
+      byte[] lz4Block = RootFileWriter.concat(hex(LZ4_CHECKSUM), hex(LZ4_BLOCK));
+      byte[] zlibBlock = RootFileWriter.deflate(CONTENT);
+      byte[] payload = RootFileWriter.concat( //
+            RootFileWriter.blockHeader("ZL", 8, zlibBlock.length, CONTENT.length), zlibBlock, //
+            RootFileWriter.blockHeader("L4", 1, lz4Block.length, lz4Content.length), lz4Block);
+
+      byte[] expected = RootFileWriter.concat(CONTENT, lz4Content);
+      assertArrayEquals(expected, RootDecompressor.decompress(payload, expected.length));
+   }
+
+   @Test
+   void testMalformedLz4Block() {
+      byte[] content = LZ4_CONTENT.getBytes(StandardCharsets.US_ASCII);
+      byte[] block = RootFileWriter.concat(hex(LZ4_CHECKSUM), hex(LZ4_BLOCK));
+      // The first match (after a token, a length byte and 16 literals) points
+      // before the beginning of the output
+      block[LZ4_CHECKSUM.length() / 2 + 2 + 16] = (byte) 0xFF;
+      byte[] payload = RootFileWriter.concat(RootFileWriter.blockHeader("L4", 1, block.length, content.length),
+            block);
+
+      assertThrows(RootFormatException.class, () -> RootDecompressor.decompress(payload, content.length));
+   }
+
+   @Test
+   void testTruncatedPayload() {
+      byte[] compressed = RootFileWriter.deflate(CONTENT);
+      byte[] payload = RootFileWriter.concat(RootFileWriter.blockHeader("ZL", 8, compressed.length, CONTENT.length),
+            compressed);
+
+      RootFormatException exception = assertThrows(RootFormatException.class,
+            () -> RootDecompressor.decompress(Arrays.copyOf(payload, payload.length - 1), CONTENT.length));
+      assertEquals("Invalid size of compressed block", exception.getMessage());
+   }
+
+   @Test
+   void testUnsupportedAlgorithm() {
+      byte[] payload = RootFileWriter.concat(RootFileWriter.blockHeader("ZS", 1, 1, CONTENT.length), new byte[1]);
+
+      assertThrows(RootFormatException.class, () -> RootDecompressor.decompress(payload, CONTENT.length));
+   }
+
+   private static byte[] hex(String value) {
+      byte[] bytes = new byte[value.length() / 2];
+      for (int i = 0; i < bytes.length; ++i) {
+         bytes[i] = (byte) Integer.parseInt(value.substring(2 * i, 2 * i + 2), 16);
+      }
+      return bytes;
+   }
+}
@@ -0,0 +1,500 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes small ROOT files with flat trees, following the layout of the ROOT
+ * file format: file header, top directory, list of keys, {@code TTree} (version
+ * 20) with {@code TBranch} (version 13) and scalar {@code TLeaf} objects, and
+ * baskets. Only the members read by {@link RootFile} and {@link RootTree} carry
+ * meaningful values.
+ *
+ * @author fandreuz
+ */
+final class RootFileWriter {
+
+   /** Compression of the baskets. */
+   enum Compression {
+      NONE, ZLIB, LZMA
+   }
+
+   private static final int FILE_VERSION = 62800;
+   private static final int BEGIN = 100;
+   private static final int NAME_SIZE = 32;
+   private static final int DIRECTORY_SIZE = 42;
+   private static final short KEY_VERSION = 4;
+   private static final int BYTE_COUNT_MASK = 0x40000000;
+   private static final int NEW_CLASS_TAG = 0xFFFFFFFF;
+   // fVersion, fBufferSize, fNevBufSize, fNevBuf, fLast, flag
+   private static final int BASKET_HEADER_SIZE = Short.BYTES + 4 * Integer.BYTES + 1;
+
+   private final ByteArrayOutputStream file = new ByteArrayOutputStream();
+   // Keys of the top directory
+   private final List<byte[]> keys = new ArrayList<>();
+
+   RootFileWriter() {
+      file.writeBytes(new byte[BEGIN + NAME_SIZE + DIRECTORY_SIZE]);
+   }
+
+   /**
+    * Leaf of a branch.
+    *
+    * @param name
+    *            name of the leaf.
+    * @param leafClass
+    *            class of the leaf (e.g. {@code TLeafD}).
+    * @param unsigned
+    *            {@code true} if the values are unsigned.
+    * @param values
+    *            one value per entry ({@link Number} or {@link Boolean}).
+    * @return the leaf.
+    */
+   static Leaf leaf(String name, String leafClass, boolean unsigned, Object... values) {
+      return new Leaf(name, leafClass, unsigned, Arrays.asList(values));
+   }
+
+   /**
+    * Write a tree.
+    *
+    * @param name
+    *            name of the tree.
+    * @param cycle
+    *            cycle of the key of the tree.
+    * @param entriesPerBasket
+    *            number of entries in each basket.
+    * @param compression
+    *            compression of the baskets.
+    * @param branches
+    *            one branch for each array of leaves, named after its first leaf.
+    * @return this writer.
+    */
+   RootFileWriter tree(String name, int cycle, int entriesPerBasket, Compression compression, Leaf[]... branches) {
+      long entries = branches[0][0].values.size();
+      List<byte[]> serializedBranches = new ArrayList<>();
+      for (Leaf[] leaves : branches) {
+         String branchName = leaves[0].name;
+         List<Integer> basketSizes = new ArrayList<>();
+         List<Long> basketSeeks = new ArrayList<>();
+         List<Long> basketFirstEntries = new ArrayList<>();
+         for (int first = 0; first < entries; first += entriesPerBasket) {
+            int end = (int) Math.min(entries, first + entriesPerBasket);
+            byte[] basket = basket(branchName, name, leaves, first, end, compression);
+            basketSeeks.add((long) file.size());
+            basketSizes.add(basket.length);
+            basketFirstEntries.add((long) first);
+            file.writeBytes(basket);
+         }
+         serializedBranches.add(branch(branchName, leaves, entries, basketSizes, basketSeeks, basketFirstEntries));
+      }
+
+      byte[] payload = tree(name, entries, serializedBranches);
+      int seek = file.size();
+      byte[] header = keyHeader(payload.length, payload.length, 0, cycle, seek, "TTree", name);
+      byte[] key = concat(keyHeader(header.length + payload.length, payload.length, header.length, cycle, seek,
+            "TTree", name), payload);
+      file.writeBytes(key);
+      keys.add(Arrays.copyOf(key, header.length));
+      return this;
+   }
+
+   /**
+    * Write the file.
+    *
+    * @param path
+    *            target file.
+    */
+   void write(Path path) throws IOException {
+      int keysSeek = file.size();
+      byte[] keysList = new Serializer() //
+            .bytes(keyHeader(0, 0, 0, 1, keysSeek, "TFile", "fixture.root")) //
+            .putInt(keys.size()) //
+            .bytes(keys.toArray(new byte[0][])) //
+            .toByteArray();
+      file.writeBytes(keysList);
+
+      ByteBuffer content = ByteBuffer.wrap(file.toByteArray());
+      content.put("root".getBytes(StandardCharsets.US_ASCII));
+      content.putInt(FILE_VERSION);
+      content.putInt(BEGIN);
+      // fEND, fSeekFree, fNbytesFree, nfree, fNbytesName
+      content.putInt(content.capacity()).putInt(0).putInt(0).putInt(0).putInt(NAME_SIZE);
+      content.position(BEGIN + NAME_SIZE);
+      // Version, fDatimeC, fDatimeM, fNbytesKeys, fNbytesName, fSeekDir,
+      // fSeekParent, fSeekKeys
+      content.putShort((short) 5).putInt(0).putInt(0).putInt(keysList.length).putInt(NAME_SIZE).putInt(BEGIN)
+            .putInt(0).putInt(keysSeek);
+      Files.write(path, content.array());
+   }
+
+   private static byte[] basket(String branchName, String treeName, Leaf[] leaves, int first, int end,
+         Compression compression) {
+      Serializer values = new Serializer();
+      for (int entry = first; entry < end; ++entry) {
+         for (Leaf leaf : leaves) {
+            leaf.write(values, entry);
+         }
+      }
+      byte[] uncompressed = values.toByteArray();
+      byte[] payload = compress(uncompressed, compression);
+      byte[] basketHeader = new byte[BASKET_HEADER_SIZE];
+      int headerLength = keyHeader(0, 0, 0, 1, 0, "TBasket", branchName, treeName).length + basketHeader.length;
+      return new Serializer() //
+            .bytes(keyHeader(headerLength + payload.length, uncompressed.length, headerLength, 1, 0, "TBasket",
+                  branchName, treeName)) //
+            .bytes(basketHeader) //
+            .bytes(payload) //
+            .toByteArray();
+   }
+
+   private static byte[] tree(String name, long entries, List<byte[]> branches) {
+      Serializer body = new Serializer() //
+            .bytes(named(name, "fixture")) //
+            // TAttLine, TAttFill, TAttMarker
+            .bytes(versioned(2, new byte[6]), versioned(2, new byte[4]), versioned(2, new byte[8])) //
+            .putLong(entries) //
+            // fTotBytes, fZipBytes, fSavedBytes, fFlushedBytes, fWeight
+            .putLong(0).putLong(0).putLong(0).putLong(0).putDouble(1) //
+            // fTimerInterval, fScanField, fUpdate, fDefaultEntryOffsetLen
+            .putInt(0).putInt(25).putInt(5).putInt(1000) //
+            // fNClusterRange
+            .putInt(0) //
+            // fMaxEntries, fMaxEntryLoop, fMaxVirtualSize, fAutoSave, fAutoFlush,
+            // fEstimate
+            .putLong(0).putLong(0).putLong(0).putLong(0).putLong(0).putLong(0) //
+            // fClusterRangeEnd, fClusterSize (empty arrays)
+            .putByte(0).putByte(0) //
+            // fIOFeatures
+            .bytes(versioned(1, new byte[1])) //
+            .bytes(objArray(branches)) //
+            // fLeaves, not read
+            .bytes(objArray(List.of()));
+      return versioned(20, body.toByteArray());
+   }
+
+   private static byte[] branch(String name, Leaf[] leaves, long entries, List<Integer> basketSizes,
+         List<Long> basketSeeks, List<Long> basketFirstEntries) {
+      int writeBasket = basketSizes.size();
+      // Arrays are larger than the number of baskets, as in ROOT
+      int maxBaskets = writeBasket + 2;
+      List<byte[]> serializedLeaves = new ArrayList<>();
+      for (Leaf leaf : leaves) {
+         serializedLeaves.add(objectAny(leaf.leafClass, leaf.serialize()));
+      }
+
+      Serializer body = new Serializer() //
+            .bytes(named(name, name)) //
+            // TAttFill
+            .bytes(versioned(2, new byte[4])) //
+            // fCompress, fBasketSize, fEntryOffsetLen
+            .putInt(101).putInt(32000).putInt(0) //
+            .putInt(writeBasket) //
+            // fEntryNumber
+            .putLong(entries) //
+            // fIOFeatures
+            .bytes(versioned(1, new byte[1])) //
+            // fOffset
+            .putInt(0) //
+            .putInt(maxBaskets) //
+            // fSplitLevel
+            .putInt(0) //
+            .putLong(entries) //
+            // fFirstEntry, fTotBytes, fZipBytes
+            .putLong(0).putLong(0).putLong(0) //
+            .bytes(objArray(List.of())) //
+            .bytes(objArray(serializedLeaves)) //
+            .bytes(objArray(List.of()));
+      body.putByte(1);
+      for (int i = 0; i < maxBaskets; ++i) {
+         body.putInt(i < writeBasket ? basketSizes.get(i) : 0);
+      }
+      body.putByte(1);
+      for (int i = 0; i < maxBaskets; ++i) {
+         body.putLong(i < writeBasket ? basketFirstEntries.get(i) : i == writeBasket ? entries : 0);
+      }
+      body.putByte(1);
+      for (int i = 0; i < maxBaskets; ++i) {
+         body.putLong(i < writeBasket ? basketSeeks.get(i) : 0);
+      }
+      return objectAny("TBranch", versioned(13, body.toByteArray()));
+   }
+
+   private static byte[] keyHeader(int size, int objectLength, int keyLength, int cycle, int seek,
+         String className, String name) {
+      return keyHeader(size, objectLength, keyLength, cycle, seek, className, name, "");
+   }
+
+   private static byte[] keyHeader(int size, int objectLength, int keyLength, int cycle, int seek,
+         String className, String name, String title) {
+      return new Serializer() //
+            .putInt(size) //
+            .putShort(KEY_VERSION) //
+            .putInt(objectLength) //
+            // fDatime
+            .putInt(0) //
+            .putShort(keyLength) //
+            .putShort(cycle) //
+            .putInt(seek) //
+            // fSeekPdir
+            .putInt(BEGIN) //
+            .putString(className) //
+            .putString(name) //
+            .putString(title) //
+            .toByteArray();
+   }
+
+   private static byte[] compress(byte[] data, Compression compression) {
+      String algorithm;
+      int method;
+      byte[] compressed;
+      switch (compression) {
+         case ZLIB :
+            algorithm = "ZL";
+            method = Deflater.DEFLATED;
+            compressed = deflate(data);
+            break;
+         case LZMA :
+            algorithm = "XZ";
+            method = 0;
+            compressed = xz(data);
+            break;
+         default :
+            return data;
+      }
+      return concat(blockHeader(algorithm, method, compressed.length, data.length), compressed);
+   }
+
+   /**
+    * Header of a compressed block.
+    *
+    * @param algorithm
+    *            two-letter code of the algorithm (e.g. {@code ZL}).
+    * @param method
+    *            method of the algorithm.
+    * @param compressedSize
+    *            size of the compressed block.
+    * @param uncompressedSize
+    *            size of the uncompressed block.
+    * @return the 9-byte header.
+    */
+   static byte[] blockHeader(String algorithm, int method, int compressedSize, int uncompressedSize) {
+      byte[] header = new byte[9];
+      header[0] = (byte) algorithm.charAt(0);
+      header[1] = (byte) algorithm.charAt(1);
+      header[2] = (byte) method;
+      for (int i = 0; i < 3; ++i) {
+         header[3 + i] = (byte) (compressedSize >>> (8 * i));
+         header[6 + i] = (byte) (uncompressedSize >>> (8 * i));
+      }
+      return header;
+   }
+
+   static byte[] deflate(byte[] data) {
+      Deflater deflater = new Deflater();
+      try {
+         deflater.setInput(data);
+         deflater.finish();
+         ByteArrayOutputStream output = new ByteArrayOutputStream();
+         byte[] chunk = new byte[1024];
+         while (!deflater.finished()) {
+            output.write(chunk, 0, deflater.deflate(chunk));
+         }
+         return output.toByteArray();
+      } finally {
+         deflater.end();
+      }
+   }
+
+   static byte[] xz(byte[] data) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      try (XZOutputStream xz = new XZOutputStream(output, new LZMA2Options())) {
+         xz.write(data);
+      } catch (IOException exception) {
+         throw new UncheckedIOException(exception);
+      }
+      return output.toByteArray();
+   }
+
+   static byte[] concat(byte[]... arrays) {
+      return new Serializer().bytes(arrays).toByteArray();
+   }
+
+   // Object with byte count and version
+   private static byte[] versioned(int version, byte[] body) {
+      return new Serializer() //
+            .putInt((body.length + Short.BYTES) | BYTE_COUNT_MASK) //
+            .putShort(version) //
+            .bytes(body) //
+            .toByteArray();
+   }
+
+   private static byte[] named(String name, String title) {
+      return versioned(1, new Serializer() //
+            // TObject: version, fUniqueID, fBits (kNotDeleted)
+            .putShort(1).putInt(0).putInt(0x02000000) //
+            .putString(name) //
+            .putString(title) //
+            .toByteArray());
+   }
+
+   private static byte[] objArray(List<byte[]> elements) {
+      Serializer body = new Serializer() //
+            // TObject
+            .putShort(1).putInt(0).putInt(0x02000000) //
+            // fName
+            .putString("") //
+            .putInt(elements.size()) //
+            // fLowerBound
+            .putInt(0);
+      elements.forEach(body::bytes);
+      return versioned(3, body.toByteArray());
+   }
+
+   // Pointer to an object of a class written for the first time
+   private static byte[] objectAny(String className, byte[] object) {
+      byte[] classTag = new Serializer().putInt(NEW_CLASS_TAG).putCString(className).toByteArray();
+      return new Serializer() //
+            .putInt((classTag.length + object.length) | BYTE_COUNT_MASK) //
+            .bytes(classTag) //
+            .bytes(object) //
+            .toByteArray();
+   }
+
+   /** Scalar leaf and its values. */
+   static final class Leaf {
+      private final String name;
+      private final String leafClass;
+      private final boolean unsigned;
+      private final List<Object> values;
+
+      private Leaf(String name, String leafClass, boolean unsigned, List<Object> values) {
+         this.name = name;
+         this.leafClass = leafClass;
+         this.unsigned = unsigned;
+         this.values = values;
+      }
+
+      private byte[] serialize() {
+         Serializer leaf = new Serializer() //
+               .bytes(named(name, name)) //
+               // fLen
+               .putInt(1) //
+               // fLenType, fOffset, fIsRange
+               .putInt(0).putInt(0).putByte(0) //
+               .putByte(unsigned ? 1 : 0) //
+               // fLeafCount (null)
+               .putInt(0);
+         // fMinimum, fMaximum are not read
+         return versioned(1, concat(versioned(2, leaf.toByteArray()), new byte[16]));
+      }
+
+      private void write(Serializer serializer, int entry) {
+         Object value = values.get(entry);
+         switch (leafClass) {
+            case "TLeafB" :
+               serializer.putByte(((Number) value).intValue());
+               break;
+            case "TLeafS" :
+               serializer.putShort(((Number) value).intValue());
+               break;
+            case "TLeafI" :
+               serializer.putInt(((Number) value).intValue());
+               break;
+            case "TLeafL" :
+               serializer.putLong(((Number) value).longValue());
+               break;
+            case "TLeafF" :
+               serializer.putFloat(((Number) value).floatValue());
+               break;
+            case "TLeafD" :
+               serializer.putDouble(((Number) value).doubleValue());
+               break;
+            case "TLeafO" :
+               serializer.putByte((Boolean) value ? 1 : 0);
+               break;
+            default :
+               throw new IllegalArgumentException("Unsupported leaf class: " + leafClass);
+         }
+      }
+   }
+
+   // Big-endian serialization, as in ROOT files
+   private static final class Serializer {
+      private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      private final DataOutputStream output = new DataOutputStream(bytes);
+
+      private Serializer bytes(byte[]... arrays) {
+         for (byte[] array : arrays) {
+            bytes.writeBytes(array);
+         }
+         return this;
+      }
+
+      private Serializer putByte(int value) {
+         bytes.write(value);
+         return this;
+      }
+
+      private Serializer putShort(int value) {
+         return write(() -> output.writeShort(value));
+      }
+
+      private Serializer putInt(int value) {
+         return write(() -> output.writeInt(value));
+      }
+
+      private Serializer putLong(long value) {
+         return write(() -> output.writeLong(value));
+      }
+
+      private Serializer putFloat(float value) {
+         return write(() -> output.writeFloat(value));
+      }
+
+      private Serializer putDouble(double value) {
+         return write(() -> output.writeDouble(value));
+      }
+
+      // TString, names used here are shorter than 255 bytes
+      private Serializer putString(String value) {
+         byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+         return putByte(encoded.length).bytes(encoded);
+      }
+
+      private Serializer putCString(String value) {
+         return bytes(value.getBytes(StandardCharsets.US_ASCII)).putByte(0);
+      }
+
+      private Serializer write(IoAction action) {
+         try {
+            action.run();
+            output.flush();
+         } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+         }
+         return this;
+      }
+
+      private byte[] toByteArray() {
+         return bytes.toByteArray();
+      }
+   }
+
+   @FunctionalInterface
+   private interface IoAction {
+      void run() throws IOException;
+   }
+}
@@ -0,0 +1,134 @@
+package io.github.fandreuz.open.data.server.conversion.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.github.fandreuz.open.data.server.conversion.impl.RootFileWriter.leaf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link RootRecordStream} against small files written by
+ * {@link RootFileWriter}.
+ *
+ * @author fandreuz
+ */
+class RootRecordStreamTest {
+
+   @TempDir
+   Path directory;
+
+   @Test
+   void testTypedColumns() throws IOException {
+      Path file = directory.resolve("typed.root");
+      new RootFileWriter() //
+            .tree("events", 1, 2, RootFileWriter.Compression.NONE, //
+                  new RootFileWriter.Leaf[] { leaf("px", "TLeafD", false, 1.5, -2.25, 3.0) }, //
+                  new RootFileWriter.Leaf[] { leaf("py", "TLeafF", false, 0.1f, 2.5f, -1f) }, //
+                  new RootFileWriter.Leaf[] { leaf("run", "TLeafI", false, 7, -8, 9) }, //
+                  new RootFileWriter.Leaf[] { leaf("hits", "TLeafS", true, -1, 2, 3) }, //
+                  new RootFileWriter.Leaf[] { leaf("flag", "TLeafB", false, -1, 0, 1) }, //
+                  new RootFileWriter.Leaf[] { leaf("id", "TLeafL", true, -1L, 2L, 3L) }, //
+                  new RootFileWriter.Leaf[] { leaf("ok", "TLeafO", false, true, false, true) }) //
+            .write(file);
+
+      List<Object[]> rows = readAll(file, null);
+      assertEquals(List.of("px", "py", "run", "hits", "flag", "id", "ok"), columnNames(file));
+      assertEquals(3, rows.size());
+      assertArrayEquals(new Object[] { 1.5, (double) 0.1f, 7L, 65535L, -1L, 1.8446744073709552E19, true },
+            rows.get(0));
+      assertArrayEquals(new Object[] { -2.25, 2.5, -8L, 2L, 0L, 2L, false }, rows.get(1));
+      assertArrayEquals(new Object[] { 3.0, -1.0, 9L, 3L, 1L, 3L, true }, rows.get(2));
+   }
+
+   @Test
+   void testLeafListIsFlattened() throws IOException {
+      Path file = directory.resolve("leaf-list.root");
+      new RootFileWriter() //
+            .tree("points", 1, 10, RootFileWriter.Compression.NONE, //
+                  new RootFileWriter.Leaf[] { leaf("x", "TLeafD", false, 1.0, 2.0),
+                        leaf("y", "TLeafI", false, 3, 4) }) //
+            .write(file);
+
+      assertEquals(List.of("x", "y"), columnNames(file));
+      List<Object[]> rows = readAll(file, null);
+      assertArrayEquals(new Object[] { 1.0, 3L }, rows.get(0));
+      assertArrayEquals(new Object[] { 2.0, 4L }, rows.get(1));
+   }
+
+   @Test
+   void testCompressedBaskets() throws IOException {
+      for (RootFileWriter.Compression compression : RootFileWriter.Compression.values()) {
+         Path file = directory.resolve(compression + ".root");
+         Object[] values = new Object[1000];
+         for (int i = 0; i < values.length; ++i) {
+            values[i] = (long) i * i;
+         }
+         // The last basket is not full
+         new RootFileWriter() //
+               .tree("events", 1, 300, compression,
+                     new RootFileWriter.Leaf[] { leaf("square", "TLeafL", false, values) }) //
+               .write(file);
+
+         List<Object[]> rows = readAll(file, null);
+         assertEquals(values.length, rows.size(), compression.name());
+         for (int i = 0; i < values.length; ++i) {
+            assertEquals(values[i], rows.get(i)[0], compression.name());
+         }
+      }
+   }
+
+   @Test
+   void testTreesAndCycles() throws IOException {
+      Path file = directory.resolve("cycles.root");
+      new RootFileWriter() //
+            .tree("first", 1, 10, RootFileWriter.Compression.NONE,
+                  new RootFileWriter.Leaf[] { leaf("a", "TLeafI", false, 1) }) //
+            .tree("second", 1, 10, RootFileWriter.Compression.NONE,
+                  new RootFileWriter.Leaf[] { leaf("b", "TLeafI", false, 2) }) //
+            .tree("second", 2, 10, RootFileWriter.Compression.NONE,
+                  new RootFileWriter.Leaf[] { leaf("b", "TLeafI", false, 3) }) //
+            .write(file);
+
+      try (RootFile rootFile = RootFile.open(file)) {
+         assertEquals(List.of("first", "second"), rootFile.listTrees());
+      }
+      // The first tree by default, the latest cycle of each tree
+      assertArrayEquals(new Object[] { 1L }, readAll(file, null).get(0));
+      assertArrayEquals(new Object[] { 3L }, readAll(file, "second").get(0));
+      assertThrows(RootFormatException.class, () -> readAll(file, "third"));
+   }
+
+   @Test
+   void testNotARootFile() throws IOException {
+      Path file = directory.resolve("data.root");
+      Files.writeString(file, "a,b\n1,2\n".repeat(20));
+
+      assertThrows(RootFormatException.class, () -> readAll(file, null));
+   }
+
+   private static List<String> columnNames(Path file) throws IOException {
+      try (RootRecordStream stream = RootRecordStream.open(file, null)) {
+         return stream.getColumnNames();
+      }
+   }
+
+   private static List<Object[]> readAll(Path file, String treeName) throws IOException {
+      List<Object[]> rows = new ArrayList<>();
+      try (RootRecordStream stream = RootRecordStream.open(file, treeName)) {
+         Object[] row;
+         while ((row = stream.next()) != null) {
+            rows.add(Arrays.copyOf(row, row.length));
+         }
+      }
+      return rows;
+   }
+}
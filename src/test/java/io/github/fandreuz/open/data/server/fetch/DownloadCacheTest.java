@@ -0,0 +1,212 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link DownloadCache} against a local stub server. Each file served by
+ * the stub has a distinct ETag.
+ *
+ * @author fandreuz
+ */
+class DownloadCacheTest {
+
+   private static final int LENGTH = 100_000;
+   private static final Duration TIMEOUT = Duration.ofSeconds(30);
+   private static final LongConsumer IGNORE_PROGRESS = ignored -> {
+   };
+
+   @TempDir
+   Path directory;
+
+   // Ranged requests of the content, by file name
+   private final Map<String, AtomicInteger> contentRequests = new ConcurrentHashMap<>();
+   // Requests of the content of these files wait for the latch
+   private final Map<String, CountDownLatch> stalledFiles = new ConcurrentHashMap<>();
+
+   private ExecutorService serverExecutor;
+   private HttpServer server;
+
+   @BeforeEach
+   void startServer() throws IOException {
+      serverExecutor = Executors.newCachedThreadPool();
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+      server.setExecutor(serverExecutor);
+      server.createContext("/files/", this::respond);
+      server.start();
+   }
+
+   @AfterEach
+   void stopServer() {
+      stalledFiles.values().forEach(CountDownLatch::countDown);
+      server.stop(0);
+      serverExecutor.shutdownNow();
+   }
+
+   @Test
+   void testConcurrentAcquiresShareOneDownload() {
+      DownloadCache cache = new DownloadCache(directory, 10L * LENGTH);
+      // The download completes after both threads looked for the entry
+      CountDownLatch bothLooking = new CountDownLatch(2);
+      stalledFiles.put("shared", bothLooking);
+      ExecutorService clients = Executors.newFixedThreadPool(2);
+      try {
+         assertTimeoutPreemptively(TIMEOUT, () -> {
+            Future<Path> first = clients.submit(() -> {
+               bothLooking.countDown();
+               return cache.acquire(url("shared"), IGNORE_PROGRESS);
+            });
+            Future<Path> second = clients.submit(() -> {
+               bothLooking.countDown();
+               return cache.acquire(url("shared"), IGNORE_PROGRESS);
+            });
+
+            assertEquals(first.get(), second.get());
+            assertArrayEquals(content("shared"), Files.readAllBytes(first.get()));
+            assertEquals(1, contentRequests.get("shared").get());
+         });
+      } finally {
+         clients.shutdownNow();
+      }
+   }
+
+   @Test
+   void testDifferentEntriesDoNotWaitForEachOther() {
+      DownloadCache cache = new DownloadCache(directory, 10L * LENGTH);
+      CountDownLatch otherDownloaded = new CountDownLatch(1);
+      stalledFiles.put("slow", otherDownloaded);
+      ExecutorService clients = Executors.newSingleThreadExecutor();
+      try {
+         assertTimeoutPreemptively(TIMEOUT, () -> {
+            Future<Path> slow = clients.submit(() -> cache.acquire(url("slow"), IGNORE_PROGRESS));
+            // Would wait forever if the downloads were serialized
+            Path fast = cache.acquire(url("fast"), IGNORE_PROGRESS);
+            otherDownloaded.countDown();
+
+            assertArrayEquals(content("fast"), Files.readAllBytes(fast));
+            assertArrayEquals(content("slow"), Files.readAllBytes(slow.get()));
+         });
+      } finally {
+         clients.shutdownNow();
+      }
+   }
+
+   @Test
+   void testEntryIsReused() throws IOException {
+      DownloadCache cache = new DownloadCache(directory, 10L * LENGTH);
+      cache.release(cache.acquire(url("reused"), IGNORE_PROGRESS));
+      AtomicLong progress = new AtomicLong();
+      Path entry = cache.acquire(url("reused"), progress::addAndGet);
+
+      assertArrayEquals(content("reused"), Files.readAllBytes(entry));
+      assertEquals(1, contentRequests.get("reused").get());
+      // A hit reports the whole file
+      assertEquals(LENGTH, progress.get());
+   }
+
+   @Test
+   void testLeastRecentlyUsedEntryIsEvicted() throws IOException {
+      DownloadCache cache = new DownloadCache(directory, (long) (2.5 * LENGTH));
+      Path first = cache.acquire(url("first"), IGNORE_PROGRESS);
+      cache.release(first);
+      Path second = cache.acquire(url("second"), IGNORE_PROGRESS);
+      cache.release(second);
+      long past = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+      Files.setLastModifiedTime(first, FileTime.fromMillis(past));
+      Files.setLastModifiedTime(second, FileTime.fromMillis(past + 1000));
+      // A hit makes the first entry the most recently used
+      cache.release(cache.acquire(url("first"), IGNORE_PROGRESS));
+
+      Path third = cache.acquire(url("third"), IGNORE_PROGRESS);
+
+      assertTrue(Files.exists(first));
+      assertFalse(Files.exists(second));
+      assertTrue(Files.exists(third));
+   }
+
+   @Test
+   void testEntriesInUseAreNotEvicted() {
+      DownloadCache cache = new DownloadCache(directory, (long) (1.5 * LENGTH));
+      Path first = cache.acquire(url("first"), IGNORE_PROGRESS);
+      Path second = cache.acquire(url("second"), IGNORE_PROGRESS);
+      assertTrue(Files.exists(first));
+      assertTrue(Files.exists(second));
+
+      cache.release(first);
+      assertFalse(Files.exists(first));
+      assertTrue(Files.exists(second));
+   }
+
+   private void respond(HttpExchange exchange) throws IOException {
+      String name = exchange.getRequestURI().getPath().substring("/files/".length());
+      byte[] content = content(name);
+      exchange.getResponseHeaders().add("ETag", "\"" + name + "\"");
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+         exchange.getResponseHeaders().add("Content-Length", Integer.toString(content.length));
+         exchange.sendResponseHeaders(200, -1);
+         exchange.close();
+         return;
+      }
+
+      String[] bounds = exchange.getRequestHeaders().getFirst("Range").substring("bytes=".length()).split("-");
+      int start = Integer.parseInt(bounds[0]);
+      int end = Integer.parseInt(bounds[1]) + 1;
+      if (end - start > 1) {
+         contentRequests.computeIfAbsent(name, ignored -> new AtomicInteger()).incrementAndGet();
+         CountDownLatch latch = stalledFiles.get(name);
+         try {
+            if (latch != null && !latch.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+               throw new IOException("The latch of " + name + " timed out");
+            }
+         } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException(exception);
+         }
+      }
+      exchange.getResponseHeaders().add("Content-Range", String.format("bytes %s-%s/%s", start, end - 1, LENGTH));
+      exchange.sendResponseHeaders(206, end - start);
+      try (OutputStream body = exchange.getResponseBody()) {
+         body.write(Arrays.copyOfRange(content, start, end));
+      }
+   }
+
+   private String url(String name) {
+      return "http://127.0.0.1:" + server.getAddress().getPort() + "/files/" + name;
+   }
+
+   private static byte[] content(String name) {
+      byte[] content = new byte[LENGTH];
+      Arrays.fill(content, (byte) name.hashCode());
+      return content;
+   }
+}
@@ -0,0 +1,87 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link DownloadState}.
+ *
+ * @author fandreuz
+ */
+class DownloadStateTest {
+
+   private static final String URL = "http://example.com/data.bin";
+   private static final String VALIDATOR = "\"v1\"";
+   private static final long LENGTH = 100;
+
+   @TempDir
+   Path directory;
+
+   @Test
+   void testRangesAreMerged() throws IOException {
+      DownloadState state = DownloadState.load(localFile(), URL, VALIDATOR, LENGTH);
+      state.complete(10, 20);
+      state.complete(30, 40);
+      // Adjacent to the first range, overlapping the second one
+      state.complete(20, 35);
+      state.complete(90, 100);
+
+      assertEquals(new TreeMap<>(Map.of(0L, 10L, 40L, 90L)), state.getMissingRanges());
+      assertEquals(40, state.getCompletedBytes());
+   }
+
+   @Test
+   void testStateIsPersisted() throws IOException {
+      Path localFile = localFile();
+      DownloadState state = DownloadState.load(localFile, URL, VALIDATOR, LENGTH);
+      state.complete(0, 50);
+      state.save();
+      assertTrue(DownloadState.exists(localFile));
+
+      DownloadState loaded = DownloadState.load(localFile, URL, VALIDATOR, LENGTH);
+      assertEquals(new TreeMap<>(Map.of(50L, LENGTH)), loaded.getMissingRanges());
+
+      loaded.delete();
+      assertFalse(DownloadState.exists(localFile));
+   }
+
+   @Test
+   void testStaleStateIsDiscarded() throws IOException {
+      Path localFile = localFile();
+      DownloadState state = DownloadState.load(localFile, URL, VALIDATOR, LENGTH);
+      state.complete(0, 50);
+      state.save();
+
+      assertEquals(0, DownloadState.load(localFile, URL, "\"v2\"", LENGTH).getCompletedBytes());
+      assertEquals(0, DownloadState.load(localFile, URL + "?v=2", VALIDATOR, LENGTH).getCompletedBytes());
+      // The local file does not match the length of the remote file
+      Files.write(localFile, new byte[(int) LENGTH + 1]);
+      assertEquals(0, DownloadState.load(localFile, URL, VALIDATOR, LENGTH + 1).getCompletedBytes());
+   }
+
+   @Test
+   void testStateWithoutValidatorIsNotPersisted() throws IOException {
+      Path localFile = localFile();
+      DownloadState state = DownloadState.load(localFile, URL, null, LENGTH);
+      state.complete(0, 50);
+      state.save();
+
+      assertFalse(DownloadState.exists(localFile));
+   }
+
+   private Path localFile() throws IOException {
+      Path localFile = directory.resolve("data.bin");
+      Files.write(localFile, new byte[(int) LENGTH]);
+      return localFile;
+   }
+}
@@ -0,0 +1,272 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the ranged, resumable downloads of {@link DownloadUtils} against a
+ * local stub server.
+ *
+ * @author fandreuz
+ */
+class DownloadUtilsTest {
+
+   private static final int LENGTH = 100_000;
+   private static final String PROBE = "bytes=0-0";
+   private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+   @TempDir
+   Path directory;
+
+   private final AtomicLong progress = new AtomicLong();
+   // Range header of each request, "none" if missing
+   private final Queue<String> ranges = new ConcurrentLinkedQueue<>();
+   // Status of each response of the ranged endpoint
+   private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+
+   private volatile byte[] content = randomContent(1);
+   private volatile String etag = "\"v1\"";
+   // The remote file changes right after the next probe
+   private volatile boolean changeAfterProbe;
+   // The next request of this range fails
+   private volatile String failingRange;
+   // Requests of this range stall halfway until a request failed
+   private volatile String stallingRange;
+   private final CountDownLatch failureSent = new CountDownLatch(1);
+
+   private ExecutorService serverExecutor;
+   private HttpServer server;
+
+   @BeforeEach
+   void startServer() throws IOException {
+      serverExecutor = Executors.newCachedThreadPool();
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+      server.setExecutor(serverExecutor);
+      server.createContext("/ranged/data.bin", this::respondRanged);
+      server.createContext("/plain/data.bin", exchange -> {
+         ranges.add(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+         respond(exchange, 200, content);
+      });
+      server.start();
+   }
+
+   @AfterEach
+   void stopServer() {
+      server.stop(0);
+      serverExecutor.shutdownNow();
+   }
+
+   @Test
+   void testRangedDownload() throws IOException {
+      Path file = DownloadUtils.download(url("/ranged/data.bin"), directory.resolve("data.bin"),
+            progress::addAndGet);
+
+      assertArrayEquals(content, Files.readAllBytes(file));
+      assertEquals(List.of(PROBE, "bytes=0-" + (LENGTH - 1)), new ArrayList<>(ranges));
+      assertEquals(LENGTH, progress.get());
+      assertFalse(DownloadState.exists(file));
+   }
+
+   @Test
+   void testDownloadWithoutRanges() throws IOException {
+      Path file = DownloadUtils.download(url("/plain/data.bin"), directory.resolve("data.bin"),
+            progress::addAndGet);
+
+      assertArrayEquals(content, Files.readAllBytes(file));
+      // The probe, then a plain request
+      assertEquals(List.of(PROBE, "null"), new ArrayList<>(ranges));
+      assertEquals(LENGTH, progress.get());
+   }
+
+   @Test
+   void testDownloadIsResumed() throws IOException {
+      Path file = directory.resolve("data.bin");
+      // A previous import downloaded the first and the last part of the file
+      byte[] partial = Arrays.copyOf(content, LENGTH);
+      Arrays.fill(partial, 40_000, 60_000, (byte) 0);
+      Files.write(file, partial);
+      DownloadState state = DownloadState.load(file, url("/ranged/data.bin"), etag, LENGTH);
+      state.complete(0, 40_000);
+      state.complete(60_000, LENGTH);
+      state.save();
+
+      DownloadUtils.download(url("/ranged/data.bin"), file, progress::addAndGet);
+
+      assertArrayEquals(content, Files.readAllBytes(file));
+      assertEquals(List.of(PROBE, "bytes=40000-59999"), new ArrayList<>(ranges));
+      // Resumed bytes are reported as well
+      assertEquals(LENGTH, progress.get());
+      assertFalse(DownloadState.exists(file));
+   }
+
+   @Test
+   void testStalePartialDownloadIsDiscarded() throws IOException {
+      Path file = directory.resolve("data.bin");
+      Files.write(file, new byte[LENGTH]);
+      DownloadState state = DownloadState.load(file, url("/ranged/data.bin"), "\"v0\"", LENGTH);
+      state.complete(0, 40_000);
+      state.save();
+
+      DownloadUtils.download(url("/ranged/data.bin"), file, progress::addAndGet);
+
+      assertArrayEquals(content, Files.readAllBytes(file));
+      assertEquals(List.of(PROBE, "bytes=0-" + (LENGTH - 1)), new ArrayList<>(ranges));
+   }
+
+   @Test
+   void testFileChangedDuringTheDownload() throws IOException {
+      byte[] oldContent = content;
+      changeAfterProbe = true;
+
+      Path file = DownloadUtils.download(url("/ranged/data.bin"), directory.resolve("data.bin"),
+            progress::addAndGet);
+
+      // If-Range did not match, the whole file was sent and rejected, then the
+      // next attempt downloaded the new file
+      assertFalse(Arrays.equals(oldContent, content));
+      assertArrayEquals(content, Files.readAllBytes(file));
+      assertEquals(List.of(206, 200, 206, 206), new ArrayList<>(statuses));
+      assertFalse(DownloadState.exists(file));
+   }
+
+   @Test
+   void testFailedSegmentKeepsTheOtherSegments() throws IOException {
+      Path file = directory.resolve("data.bin");
+      Files.write(file, new byte[LENGTH]);
+      byte[] written = Files.readAllBytes(file);
+      System.arraycopy(content, 20_000, written, 20_000, 20_000);
+      System.arraycopy(content, 60_000, written, 60_000, 20_000);
+      Files.write(file, written);
+      DownloadState state = DownloadState.load(file, url("/ranged/data.bin"), etag, LENGTH);
+      state.complete(20_000, 40_000);
+      state.complete(60_000, 80_000);
+      state.save();
+      failingRange = "bytes=40000-59999";
+      stallingRange = "bytes=0-19999";
+
+      DownloadUtils.download(url("/ranged/data.bin"), file, progress::addAndGet);
+
+      assertArrayEquals(content, Files.readAllBytes(file));
+      List<String> requested = new ArrayList<>(ranges);
+      // The first attempt, then the retry
+      assertEquals(List.of(PROBE, PROBE), List.of(requested.get(0), requested.get(4)));
+      List<String> retried = requested.subList(5, requested.size());
+      assertTrue(retried.contains("bytes=40000-59999"), retried.toString());
+      // The other segments stopped at their next read, the retry requests only
+      // what they did not write
+      for (String range : retried) {
+         String[] bounds = range.substring("bytes=".length()).split("-");
+         long start = Long.parseLong(bounds[0]);
+         long end = Long.parseLong(bounds[1]) + 1;
+         assertTrue(end <= 20_000 || (start >= 40_000 && end <= 60_000) || start >= 80_000, range);
+      }
+      assertEquals(List.of(500), statuses.stream().filter(status -> status == 500).collect(Collectors.toList()));
+   }
+
+   @Test
+   void testMissingFile() {
+      Path file = directory.resolve("missing.bin");
+
+      assertThrows(FetchException.class,
+            () -> DownloadUtils.download(url("/missing/missing.bin"), file, progress::addAndGet));
+      assertFalse(Files.exists(file));
+      assertTrue(ranges.isEmpty());
+   }
+
+   private void respondRanged(HttpExchange exchange) throws IOException {
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+      ranges.add(String.valueOf(range));
+      byte[] currentContent = content;
+      String currentEtag = etag;
+      if (PROBE.equals(range) && changeAfterProbe) {
+         changeAfterProbe = false;
+         content = randomContent(2);
+         etag = "\"v2\"";
+      }
+
+      if (range != null && range.equals(failingRange)) {
+         failingRange = null;
+         statuses.add(500);
+         exchange.sendResponseHeaders(500, -1);
+         exchange.close();
+         failureSent.countDown();
+         return;
+      }
+
+      exchange.getResponseHeaders().add("ETag", currentEtag);
+      if (range == null || (ifRange != null && !ifRange.equals(currentEtag))) {
+         statuses.add(200);
+         respond(exchange, 200, currentContent);
+         return;
+      }
+      String[] bounds = range.substring("bytes=".length()).split("-");
+      int start = Integer.parseInt(bounds[0]);
+      int end = Integer.parseInt(bounds[1]) + 1;
+      exchange.getResponseHeaders().add("Content-Range",
+            String.format("bytes %s-%s/%s", start, end - 1, currentContent.length));
+      statuses.add(206);
+      if (!range.equals(stallingRange)) {
+         respond(exchange, 206, Arrays.copyOfRange(currentContent, start, end));
+         return;
+      }
+      stallingRange = null;
+      int half = (start + end) / 2;
+      exchange.sendResponseHeaders(206, end - start);
+      try (OutputStream output = exchange.getResponseBody()) {
+         output.write(currentContent, start, half - start);
+         output.flush();
+         failureSent.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+         output.write(currentContent, half, end - half);
+      } catch (InterruptedException exception) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private String url(String path) {
+      return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+   }
+
+   private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+         output.write(body);
+      }
+   }
+
+   private static byte[] randomContent(long seed) {
+      byte[] bytes = new byte[LENGTH];
+      new Random(seed).nextBytes(bytes);
+      return bytes;
+   }
+}
@@ -0,0 +1,227 @@
+package io.github.fandreuz.open.data.server.fetch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link HttpFetchClient} against a local stub server, which speaks
+ * HTTP/1.1 only.
+ *
+ * @author fandreuz
+ */
+class HttpFetchClientTest {
+
+   private static final byte[] CONTENT = "a,b\n1,2\n".getBytes(StandardCharsets.UTF_8);
+   private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+   private final AtomicInteger activeRequests = new AtomicInteger();
+   private final AtomicInteger maxActiveRequests = new AtomicInteger();
+   private final CountDownLatch arrivedRequests = new CountDownLatch(HttpFetchClient.MAX_REQUESTS_PER_HOST);
+   private final CountDownLatch releaseRequests = new CountDownLatch(1);
+
+   private ExecutorService serverExecutor;
+   private HttpServer server;
+
+   @BeforeEach
+   void startServer() throws IOException {
+      serverExecutor = Executors.newCachedThreadPool();
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+      server.setExecutor(serverExecutor);
+      server.createContext("/file", exchange -> respond(exchange, CONTENT));
+      server.createContext("/moved", exchange -> {
+         exchange.getResponseHeaders().add("Location", "/file");
+         exchange.sendResponseHeaders(302, -1);
+         exchange.close();
+      });
+      server.createContext("/blocking", exchange -> {
+         maxActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+         arrivedRequests.countDown();
+         try {
+            releaseRequests.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+         } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+         }
+         activeRequests.decrementAndGet();
+         respond(exchange, CONTENT);
+      });
+      server.createContext("/stalled", exchange -> {
+         // Half of the body, then nothing
+         exchange.sendResponseHeaders(200, 2L * CONTENT.length);
+         OutputStream body = exchange.getResponseBody();
+         body.write(CONTENT);
+         body.flush();
+         try {
+            releaseRequests.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+         } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+         }
+         exchange.close();
+      });
+      server.start();
+   }
+
+   @AfterEach
+   void stopServer() {
+      releaseRequests.countDown();
+      server.stop(0);
+      serverExecutor.shutdownNow();
+   }
+
+   @Test
+   void testRequestsPerHostAreBounded() {
+      int requests = 2 * HttpFetchClient.MAX_REQUESTS_PER_HOST;
+      ExecutorService clients = Executors.newFixedThreadPool(requests);
+      try {
+         assertTimeoutPreemptively(TIMEOUT, () -> {
+            List<Future<String>> responses = new ArrayList<>(requests);
+            for (int i = 0; i < requests; ++i) {
+               responses.add(clients.submit(() -> read("/blocking")));
+            }
+
+            // The requests within the limit reached the server, the others wait
+            // for a slot, thus none of them can reach the server
+            arrivedRequests.await();
+            while (HttpFetchClient.countWaitingRequests(uri("/blocking")) < requests
+                  - HttpFetchClient.MAX_REQUESTS_PER_HOST) {
+               Thread.onSpinWait();
+            }
+            assertEquals(HttpFetchClient.MAX_REQUESTS_PER_HOST, maxActiveRequests.get());
+
+            releaseRequests.countDown();
+            for (Future<String> response : responses) {
+               assertEquals(new String(CONTENT, StandardCharsets.UTF_8), response.get());
+            }
+            assertEquals(HttpFetchClient.MAX_REQUESTS_PER_HOST, maxActiveRequests.get());
+         });
+      } finally {
+         clients.shutdownNow();
+      }
+   }
+
+   @Test
+   void testSlotsAreReleased() {
+      // Would wait forever for a slot if the closed responses kept theirs
+      assertTimeoutPreemptively(TIMEOUT, () -> {
+         for (int i = 0; i <= 2 * HttpFetchClient.MAX_REQUESTS_PER_HOST; ++i) {
+            fetch("/file").body().close();
+            HttpFetchClient.sendDiscarding(HttpFetchClient.newRequest(uri("/file")) //
+                  .method("HEAD", HttpRequest.BodyPublishers.noBody()) //
+                  .build());
+         }
+      });
+   }
+
+   @Test
+   void testStreamsHaveTheirOwnSlots() {
+      List<InputStream> bodies = new ArrayList<>();
+      assertTimeoutPreemptively(TIMEOUT, () -> {
+         try {
+            // All the request slots are taken, streams can still be opened
+            for (int i = 0; i < HttpFetchClient.MAX_REQUESTS_PER_HOST; ++i) {
+               bodies.add(fetch("/file").body());
+            }
+            for (int i = 0; i < HttpFetchClient.MAX_STREAMS_PER_HOST; ++i) {
+               bodies.add(HttpFetchClient.sendStream(HttpFetchClient.newRequest(uri("/file")).build()).body());
+            }
+            bodies.remove(0).close();
+
+            // All the stream slots are taken, requests can still be sent
+            assertEquals(new String(CONTENT, StandardCharsets.UTF_8), read("/file"));
+         } finally {
+            for (InputStream body : bodies) {
+               body.close();
+            }
+         }
+      });
+   }
+
+   @Test
+   void testStalledBodyTimesOut() {
+      assertTimeoutPreemptively(TIMEOUT, () -> {
+         HttpResponse<InputStream> response = HttpFetchClient
+               .send(HttpFetchClient.newRequest(uri("/stalled")).GET().build(), Duration.ofSeconds(1));
+         try (InputStream body = response.body()) {
+            IOException exception = assertThrows(IOException.class, body::readAllBytes);
+            assertEquals("No data received for 1 seconds", exception.getMessage());
+         }
+         // The slot was released
+         for (int i = 0; i <= HttpFetchClient.MAX_REQUESTS_PER_HOST; ++i) {
+            read("/file");
+         }
+      });
+   }
+
+   @Test
+   void testRedirectIsFollowed() throws Exception {
+      HttpResponse<InputStream> response = fetch("/moved");
+      try (InputStream body = response.body()) {
+         assertEquals(200, response.statusCode());
+         assertEquals("/file", response.uri().getPath());
+         assertEquals(new String(CONTENT, StandardCharsets.UTF_8),
+               new String(body.readAllBytes(), StandardCharsets.UTF_8));
+      }
+   }
+
+   @Test
+   void testFallbackToHttp11() throws Exception {
+      HttpResponse<InputStream> response = fetch("/file");
+      try (InputStream body = response.body()) {
+         assertEquals(HttpClient.Version.HTTP_1_1, response.version());
+         assertTrue(body.readAllBytes().length > 0);
+      }
+   }
+
+   private HttpResponse<InputStream> fetch(String path) throws IOException, InterruptedException {
+      return HttpFetchClient.send(HttpFetchClient.newRequest(uri(path)).GET().build());
+   }
+
+   private String read(String path) throws IOException, InterruptedException {
+      try (InputStream body = fetch(path).body()) {
+         return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+      }
+   }
+
+   private URI uri(String path) {
+      return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+   }
+
+   private static void respond(HttpExchange exchange, byte[] content) throws IOException {
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+         exchange.sendResponseHeaders(200, -1);
+         exchange.close();
+         return;
+      }
+      exchange.sendResponseHeaders(200, content.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+         body.write(content);
+      }
+   }
+}
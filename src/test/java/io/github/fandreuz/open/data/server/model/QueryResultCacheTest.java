@@ -0,0 +1,210 @@
+package io.github.fandreuz.open.data.server.model;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Tests {@link QueryResultCache}. Results are strings of {@value #LENGTH}
+ * characters, whose estimated size is {@value #SIZE} bytes.
+ *
+ * @author fandreuz
+ */
+class QueryResultCacheTest {
+
+   private static final int LENGTH = 100;
+   private static final long SIZE = 240;
+   private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+   // Number of results loaded
+   private final AtomicInteger loads = new AtomicInteger();
+
+   private ExecutorService callers;
+
+   @BeforeEach
+   void startCallers() {
+      callers = Executors.newCachedThreadPool();
+   }
+
+   @AfterEach
+   void stopCallers() {
+      callers.shutdownNow();
+   }
+
+   @Test
+   void testResultIsCached() {
+      QueryResultCache cache = newCache(10 * SIZE);
+      String first = get(cache, "dataset", "a");
+      assertSame(first, get(cache, "dataset", "a"));
+      assertEquals(1, loads.get());
+
+      // Different parameters
+      get(cache, "dataset", "b");
+      assertEquals(2, loads.get());
+   }
+
+   @Test
+   void testLeastRecentlyUsedResultIsEvicted() {
+      QueryResultCache cache = newCache(2 * SIZE);
+      get(cache, "dataset", "a");
+      get(cache, "dataset", "b");
+      // "a" becomes the most recently used
+      get(cache, "dataset", "a");
+      get(cache, "dataset", "c");
+      assertEquals(3, loads.get());
+
+      get(cache, "dataset", "a");
+      assertEquals(3, loads.get());
+      get(cache, "dataset", "b");
+      assertEquals(4, loads.get());
+   }
+
+   @Test
+   void testTooLargeResultIsNotCached() {
+      QueryResultCache cache = newCache(SIZE - 1);
+      get(cache, "dataset", "a");
+      get(cache, "dataset", "a");
+      assertEquals(2, loads.get());
+   }
+
+   @Test
+   void testInvalidation() {
+      QueryResultCache cache = newCache(10 * SIZE);
+      get(cache, "dataset", "a");
+      get(cache, "other", "a");
+
+      cache.invalidate("dataset");
+      get(cache, "dataset", "a");
+      get(cache, "other", "a");
+      assertEquals(3, loads.get());
+   }
+
+   @Test
+   void testConcurrentMissesShareOneLoad() {
+      QueryResultCache cache = newCache(10 * SIZE);
+      CountDownLatch loading = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicReference<Thread> waiter = new AtomicReference<>();
+
+      assertTimeoutPreemptively(TIMEOUT, () -> {
+         Future<String> first = callers.submit(() -> cache.get("dataset", "kind", List.of("a"),
+               blockingLoader(loading, release)));
+         loading.await();
+         Future<String> second = callers.submit(() -> {
+            waiter.set(Thread.currentThread());
+            return get(cache, "dataset", "a");
+         });
+         awaitWaiting(waiter);
+         release.countDown();
+
+         assertSame(first.get(), second.get());
+         assertEquals(1, loads.get());
+      });
+   }
+
+   @Test
+   void testFailedLoadIsNotShared() {
+      QueryResultCache cache = newCache(10 * SIZE);
+      CountDownLatch loading = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicReference<Thread> waiter = new AtomicReference<>();
+
+      assertTimeoutPreemptively(TIMEOUT, () -> {
+         Future<String> first = callers.submit(() -> cache.get("dataset", "kind", List.of("a"), () -> {
+            blockingLoader(loading, release).get();
+            throw new IllegalStateException("The load failed");
+         }));
+         loading.await();
+         Future<String> second = callers.submit(() -> {
+            waiter.set(Thread.currentThread());
+            return get(cache, "dataset", "a");
+         });
+         awaitWaiting(waiter);
+         release.countDown();
+
+         // The waiting caller gets the failure, the next one loads again
+         for (Future<String> result : List.of(first, second)) {
+            Exception exception = assertThrows(Exception.class, result::get);
+            assertEquals(IllegalStateException.class, exception.getCause().getClass());
+         }
+         get(cache, "dataset", "a");
+         assertEquals(2, loads.get());
+      });
+   }
+
+   @Test
+   void testResultLoadedDuringInvalidationIsNotCached() {
+      QueryResultCache cache = newCache(10 * SIZE);
+      CountDownLatch loading = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+
+      assertTimeoutPreemptively(TIMEOUT, () -> {
+         Future<String> stale = callers.submit(() -> cache.get("dataset", "kind", List.of("a"),
+               blockingLoader(loading, release)));
+         loading.await();
+         cache.invalidate("dataset");
+
+         // Does not wait for the stale load
+         String fresh = get(cache, "dataset", "a");
+         release.countDown();
+         stale.get();
+         assertEquals(2, loads.get());
+
+         // The fresh result is cached, the stale one did not replace it
+         assertSame(fresh, get(cache, "dataset", "a"));
+         assertEquals(2, loads.get());
+      });
+   }
+
+   private QueryResultCache newCache(long maxSizeBytes) {
+      QueryResultCache cache = new QueryResultCache(maxSizeBytes, new SimpleMeterRegistry());
+      cache.registerMetrics();
+      return cache;
+   }
+
+   private String get(QueryResultCache cache, String datasetId, String parameter) {
+      return cache.get(datasetId, "kind", List.of(parameter), this::load);
+   }
+
+   private String load() {
+      loads.incrementAndGet();
+      return new String(new char[LENGTH]);
+   }
+
+   private Supplier<String> blockingLoader(CountDownLatch loading, CountDownLatch release) {
+      return () -> {
+         String result = load();
+         loading.countDown();
+         try {
+            release.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+         } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+         }
+         return result;
+      };
+   }
+
+   // Waits until the thread is parked, e.g. waiting for the result of a load
+   private static void awaitWaiting(AtomicReference<Thread> thread) {
+      while (thread.get() == null || thread.get().getState() != Thread.State.WAITING) {
+         Thread.onSpinWait();
+      }
+   }
+}
@@ -0,0 +1,140 @@
+package io.github.fandreuz.open.data.server.model.job;
+
+import io.github.fandreuz.open.data.server.model.dataset.DatasetMetadata;
+import io.github.fandreuz.open.data.server.model.dataset.DatasetType;
+import io.github.fandreuz.open.data.server.model.dataset.StorageLayout;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the order in which {@link ImportScheduler} starts the imports. Started
+ * imports are queued by the executor and run one at a time by the test, thus
+ * the order is deterministic.
+ *
+ * @author fandreuz
+ */
+class ImportSchedulerTest {
+
+   private static final long NEVER_STARVING = Long.MAX_VALUE / 2;
+
+   // Started by the scheduler, not run yet
+   private final Deque<Runnable> started = new ArrayDeque<>();
+   // File names of the imports which ran, in order
+   private final List<String> ran = new ArrayList<>();
+
+   @Test
+   void testRunningImportsAreBounded() {
+      ImportScheduler scheduler = new ImportScheduler(2, 10, NEVER_STARVING, started::add);
+      for (int i = 0; i < 3; ++i) {
+         schedule(scheduler, job("file" + i, "agent", 100), false);
+      }
+      assertEquals(2, started.size());
+
+      runNext();
+      assertEquals(2, started.size());
+      runAll();
+      assertEquals(List.of("file0", "file1", "file2"), ran);
+   }
+
+   @Test
+   void testUserAgentsTakeTurns() {
+      ImportScheduler scheduler = new ImportScheduler(1, 10, NEVER_STARVING, started::add);
+      // Keeps the only slot busy while the others are queued
+      schedule(scheduler, job("blocker", "other", 100), false);
+      schedule(scheduler, job("a1", "a", 100), false);
+      schedule(scheduler, job("a2", "a", 100), false);
+      schedule(scheduler, job("a3", "a", 100), false);
+      schedule(scheduler, job("b1", "b", 100), false);
+
+      runAll();
+      assertEquals(List.of("blocker", "a1", "b1", "a2", "a3"), ran);
+   }
+
+   @Test
+   void testSmallestDatasetFirst() {
+      ImportScheduler scheduler = new ImportScheduler(1, 10, NEVER_STARVING, started::add);
+      schedule(scheduler, job("blocker", "agent", 1), false);
+      schedule(scheduler, job("large", "agent", 300), false);
+      schedule(scheduler, job("unknown", "agent", 0), false);
+      schedule(scheduler, job("small", "agent", 100), false);
+      schedule(scheduler, job("medium", "agent", 200), false);
+
+      runAll();
+      assertEquals(List.of("blocker", "small", "medium", "large", "unknown"), ran);
+   }
+
+   @Test
+   void testStarvingImportsGoInSubmissionOrder() {
+      // Every import waited for too long, their size does not matter
+      ImportScheduler scheduler = new ImportScheduler(1, 10, -1, started::add);
+      schedule(scheduler, job("blocker", "agent", 1), false);
+      schedule(scheduler, job("large", "agent", 300), false);
+      schedule(scheduler, job("small", "agent", 100), false);
+
+      runAll();
+      assertEquals(List.of("blocker", "large", "small"), ran);
+   }
+
+   @Test
+   void testQueueCapacity() {
+      ImportScheduler scheduler = new ImportScheduler(1, 1, NEVER_STARVING, started::add);
+      schedule(scheduler, job("running", "agent", 100), false);
+      schedule(scheduler, job("queued", "agent", 100), false);
+      assertThrows(RejectedExecutionException.class,
+            () -> schedule(scheduler, job("rejected", "agent", 100), false));
+      // Bulk imports are bounded by the caller
+      schedule(scheduler, job("bulk", "agent", 100), true);
+
+      runAll();
+      assertEquals(List.of("running", "queued", "bulk"), ran);
+   }
+
+   @Test
+   void testUnscheduledImportDoesNotRun() {
+      ImportScheduler scheduler = new ImportScheduler(1, 10, NEVER_STARVING, started::add);
+      ImportJob running = job("running", "agent", 100);
+      ImportJob cancelled = job("cancelled", "agent", 100);
+      schedule(scheduler, running, false);
+      schedule(scheduler, cancelled, false);
+
+      assertFalse(scheduler.unschedule(running));
+      assertTrue(scheduler.unschedule(cancelled));
+      assertFalse(scheduler.unschedule(cancelled));
+      runAll();
+      assertEquals(List.of("running"), ran);
+   }
+
+   private void schedule(ImportScheduler scheduler, ImportJob job, boolean bulk) {
+      scheduler.schedule(job, () -> ran.add(job.getFileName()), bulk);
+   }
+
+   private void runNext() {
+      started.removeFirst().run();
+   }
+
+   private void runAll() {
+      while (!started.isEmpty()) {
+         runNext();
+      }
+   }
+
+   private static ImportJob job(String fileName, String userAgent, long sizeInBytes) {
+      DatasetMetadata datasetMetadata = DatasetMetadata.builder() //
+            .datasetId("collection:" + fileName) //
+            .fileName(fileName) //
+            .type(DatasetType.CSV) //
+            .sizeInBytes(sizeInBytes) //
+            .build();
+      return new ImportJob("collection", datasetMetadata, StorageLayout.ROW, userAgent);
+   }
+}